@@ -5,10 +5,13 @@ import net.neoforged.api.distmarker.Dist;
 import net.neoforged.bus.api.SubscribeEvent;
 import net.neoforged.fml.common.EventBusSubscriber;
 import net.neoforged.neoforge.client.event.ClientTickEvent;
+import net.neoforged.neoforge.client.event.RegisterGuiLayersEvent;
 import net.neoforged.neoforge.client.event.RegisterKeyMappingsEvent;
+import net.neoforged.neoforge.client.gui.VanillaGuiLayers;
 
 import org.selfabandonment.ncmplayer.NcmPlayer;
 import org.selfabandonment.ncmplayer.client.audio.MusicController;
+import org.selfabandonment.ncmplayer.client.hud.NowPlayingHud;
 import org.selfabandonment.ncmplayer.client.input.KeyMappings;
 import org.selfabandonment.ncmplayer.client.screen.MusicScreen;
 import org.selfabandonment.ncmplayer.config.ModConfig;
@@ -32,6 +35,14 @@ public final class NcmPlayerClient {
         event.register(KeyMappings.OPEN_MUSIC_UI);
     }
 
+    /**
+     * 注册正在播放 HUD（聊天栏之下）
+     */
+    @SubscribeEvent
+    public static void onRegisterGuiLayers(RegisterGuiLayersEvent event) {
+        event.registerBelow(VanillaGuiLayers.CHAT, NowPlayingHud.ID, new NowPlayingHud());
+    }
+
     /**
      * 客户端 Tick 事件处理
      */
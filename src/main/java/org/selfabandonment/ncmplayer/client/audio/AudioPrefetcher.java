@@ -0,0 +1,136 @@
+package org.selfabandonment.ncmplayer.client.audio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * 下一首音频开头预取
+ *
+ * 当前歌曲快结束时，在后台下载下一首的开头若干字节，
+ * 切歌时播放器先解码本地字节，剩余部分再走网络。
+ * 同一时间只保留一首，内存不超过预算。
+ *
+ * @author SelfAbandonment
+ */
+final class AudioPrefetcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("ncmplayer");
+
+    /**
+     * 预取结果
+     *
+     * @param songId        歌曲 ID
+     * @param url           下载所用的 URL
+     * @param bytes         文件开头的字节
+     * @param contentLength 文件总大小，未知时为 0
+     */
+    record Head(long songId, String url, byte[] bytes, long contentLength) {}
+
+    private final HttpClient http;
+
+    private volatile long budgetBytes = 0;
+    private long pendingSongId = -1;
+    private Head head;
+
+    AudioPrefetcher() {
+        this.http = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    /**
+     * 设置预取字节预算，0 表示禁用
+     */
+    void setBudget(long bytes) {
+        this.budgetBytes = Math.max(0, bytes);
+    }
+
+    /**
+     * 后台预取指定歌曲的开头（URL 在后台线程解析）
+     */
+    synchronized void prefetch(long songId, Callable<String> urlSupplier) {
+        long budget = budgetBytes;
+        if (budget <= 0) return;
+        if (pendingSongId == songId || (head != null && head.songId() == songId)) return;
+
+        pendingSongId = songId;
+        head = null;
+
+        Thread worker = new Thread(() -> {
+            try {
+                String url = urlSupplier.call();
+                byte[] bytes;
+                long total;
+
+                HttpRequest req = HttpRequest.newBuilder(URI.create(url))
+                        .timeout(Duration.ofSeconds(30))
+                        .header("User-Agent", "Mozilla/5.0 (Minecraft NeoForge Mod)")
+                        .header("Range", "bytes=0-" + (budget - 1))
+                        .GET()
+                        .build();
+                HttpResponse<InputStream> resp = http.send(req, HttpResponse.BodyHandlers.ofInputStream());
+                int code = resp.statusCode();
+                if (code != 200 && code != 206) {
+                    resp.body().close();
+                    throw new IOException("HTTP " + code + " for " + url);
+                }
+
+                try (InputStream in = resp.body()) {
+                    // 服务器忽略 Range 时返回 200，只读预算内的部分
+                    bytes = in.readNBytes((int) Math.min(budget, Integer.MAX_VALUE));
+                }
+                total = code == 206
+                        ? parseTotal(resp.headers().firstValue("Content-Range").orElse(""))
+                        : resp.headers().firstValueAsLong("Content-Length").orElse(0);
+
+                synchronized (this) {
+                    if (pendingSongId == songId) {
+                        head = new Head(songId, url, bytes, total);
+                        pendingSongId = -1;
+                        LOGGER.debug("Prefetched {} bytes of songId={}", bytes.length, songId);
+                    }
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Audio prefetch failed for songId={}: {}", songId, e.getMessage());
+                synchronized (this) {
+                    if (pendingSongId == songId) pendingSongId = -1;
+                }
+            }
+        }, "ncm-audio-prefetch");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 取出预取结果（歌曲和 URL 都必须匹配），取出后不再保留
+     */
+    synchronized Head take(long songId, String url) {
+        Head h = head;
+        if (h == null || h.songId() != songId || !h.url().equals(url)) {
+            return null;
+        }
+        head = null;
+        return h;
+    }
+
+    private static long parseTotal(String contentRange) {
+        // 格式: bytes 0-1234/5678
+        int slashIdx = contentRange.lastIndexOf('/');
+        if (slashIdx < 0) return 0;
+        try {
+            return Long.parseLong(contentRange.substring(slashIdx + 1).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.selfabandonment.ncmplayer.client.audio;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 音频输出
+ *
+ * 模型与 OpenAL 源相同：固定数量的缓冲区排队播放，
+ * 播放完的缓冲区需要回收后才能再次入队，队列耗尽时进入 STOPPED。
+ * 除构造外所有方法都在同一线程（客户端 tick）调用。
+ *
+ * @author SelfAbandonment
+ */
+public interface AudioSink {
+
+    /** 默认缓冲区数量 */
+    int DEFAULT_BUFFER_COUNT = 6;
+
+    enum SourceState { INITIAL, PLAYING, PAUSED, STOPPED }
+
+    /**
+     * 分配输出资源，失败时抛出异常
+     */
+    void open() throws Exception;
+
+    boolean isOpen();
+
+    void setGain(float gain);
+
+    /**
+     * 入队一段 16 位小端 PCM（调用方保证有空闲缓冲区）
+     */
+    void queue(ByteBuffer pcm, int sampleRate, int channels);
+
+    /**
+     * 回收已播放完的缓冲区，返回回收数量
+     */
+    int reclaim();
+
+    /**
+     * 可入队的空闲缓冲区数量
+     */
+    int freeBuffers();
+
+    /**
+     * 已入队且尚未回收的缓冲区数量（含已播放完的）
+     */
+    int queuedBuffers();
+
+    /**
+     * 已播放完但尚未回收的缓冲区数量
+     */
+    int processedBuffers();
+
+    SourceState state();
+
+    void play();
+
+    void pause();
+
+    /**
+     * 输出延迟（毫秒）：源已经播放到、但还没从设备发出声音的部分，未知时返回 0
+     */
+    default long outputLatencyMs() {
+        return 0;
+    }
+
+    /**
+     * 停止并释放资源，之后可以再次 open
+     */
+    void close();
+}
@@ -8,12 +8,15 @@ import org.selfabandonment.ncmplayer.config.ModConfig;
 import org.selfabandonment.ncmplayer.ncm.CookieSanitizer;
 import org.selfabandonment.ncmplayer.ncm.NcmApiClient;
 import org.selfabandonment.ncmplayer.ncm.SessionStore;
+import org.selfabandonment.ncmplayer.ncm.SongMetaStore;
 import org.selfabandonment.ncmplayer.ncm.SongUrlProvider;
 import org.selfabandonment.ncmplayer.util.I18n;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 音乐播放控制器
@@ -24,12 +27,30 @@ public final class MusicController {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(NcmPlayer.MODID);
     private static final StreamingMp3Player PLAYER = new StreamingMp3Player();
+    private static final AudioPrefetcher PREFETCHER = new AudioPrefetcher();
 
     private static SongUrlProvider provider;
     private static boolean volumeInitialized = false;
     private static boolean wasPlaying = false;
     private static boolean manualStop = false;  // 标记是否是手动停止（不触发自动下一首）
 
+    /** 预取 URL 的后续歌曲数量 */
+    private static final int URL_PREFETCH_COUNT = 3;
+
+    /** 距离结束多久开始预取下一首音频开头（毫秒） */
+    private static final long AUDIO_PREFETCH_LEAD_MS = 20_000;
+
+    private static long audioPrefetchedFor = -1;  // 已为哪首歌触发过下一首预取
+
+    /** 播放中记录播放位置的间隔（毫秒） */
+    private static final long POSITION_SAVE_INTERVAL_MS = 5_000;
+
+    private static long positionSavedAt = 0;
+    private static long pendingSeekMs = 0;  // 恢复的播放位置，开始播放后跳转过去
+
+    /** 歌词校准偏移的范围（毫秒），与配置项一致 */
+    private static final int LYRIC_OFFSET_LIMIT_MS = 5000;
+
     private MusicController() {
     }
 
@@ -49,14 +70,23 @@ public final class MusicController {
             try {
                 float defaultVol = ModConfig.COMMON.musicDefaultVolume.get().floatValue();
                 PLAYER.setVolume(defaultVol);
+                PLAYER.setPcmCacheBudget(ModConfig.COMMON.pcmCacheSizeMb.get() * 1024L * 1024L);
+                PREFETCHER.setBudget(ModConfig.COMMON.audioPrefetchKb.get() * 1024L);
+                SongMetaStore.preload();
+                SessionStore.preload();
+                Playlist.restore();
                 volumeInitialized = true;
             } catch (Exception ignored) {
             }
         }
         PLAYER.tick();
+        maybePrefetchNextAudio();
+        Playlist.tick();
 
         // 检测播放结束，自动播放下一首
         var state = PLAYER.getState();
+        maybeResumePosition(state);
+        maybeSavePosition(state);
 
         // 当前是否在播放
         boolean isPlaying = (state == StreamingMp3Player.State.PLAYING || state == StreamingMp3Player.State.BUFFERING);
@@ -84,53 +114,66 @@ public final class MusicController {
         // 暂停状态不改变 wasPlaying
     }
 
+    /**
+     * 恢复的歌曲开始播放后，跳转到上次的位置
+     */
+    private static void maybeResumePosition(StreamingMp3Player.State state) {
+        if (pendingSeekMs <= 0 || state != StreamingMp3Player.State.PLAYING || !PLAYER.canSeek()) return;
+        PLAYER.seek(pendingSeekMs);
+        pendingSeekMs = 0;
+    }
+
+    /**
+     * 播放中定期记录播放位置，重启后从这里继续
+     */
+    private static void maybeSavePosition(StreamingMp3Player.State state) {
+        if (state != StreamingMp3Player.State.PLAYING || pendingSeekMs > 0) return;
+        long now = System.currentTimeMillis();
+        if (now - positionSavedAt < POSITION_SAVE_INTERVAL_MS) return;
+
+        positionSavedAt = now;
+        Playlist.savePosition(PLAYER.getPlayedMs());
+    }
+
+    /**
+     * 当前歌曲进入最后一段时，预取下一首的音频开头
+     */
+    private static void maybePrefetchNextAudio() {
+        if (provider == null || PLAYER.getState() != StreamingMp3Player.State.PLAYING) return;
+
+        var current = Playlist.getCurrentSong();
+        if (current == null || audioPrefetchedFor == current.id()) return;
+
+        long duration = PLAYER.getDurationMs();
+        if (duration <= 0 || duration - PLAYER.getPlayedMs() > AUDIO_PREFETCH_LEAD_MS) return;
+        audioPrefetchedFor = current.id();
+
+        var upcoming = Playlist.peekUpcoming(1);
+        if (upcoming.isEmpty()) return;
+
+        long nextId = upcoming.get(0).id();
+        SongUrlProvider p = provider;
+        PREFETCHER.prefetch(nextId, () -> p.getPlayableMp3Url(nextId));
+    }
+
     /**
      * 自动播放下一首
      */
     private static void autoPlayNext() {
-        if (Playlist.size() <= 0) {
+        var playlist = Playlist.snapshot();
+        if (playlist.isEmpty()) {
             LOGGER.info("autoPlayNext: playlist is empty");
             return;
         }
 
-        var repeatMode = Playlist.getRepeatMode();
-        boolean shuffle = Playlist.isShuffle();
-        int currentIdx = Playlist.getCurrentIndex();
-        int size = Playlist.size();
-
-        LOGGER.info("autoPlayNext: repeatMode={}, shuffle={}, currentIdx={}, size={}", repeatMode, shuffle, currentIdx, size);
+        LOGGER.info("autoPlayNext: repeatMode={}, shuffle={}, currentIdx={}, size={}",
+                playlist.repeatMode(), playlist.isShuffle(), playlist.currentIndex(), playlist.size());
 
-        if (repeatMode == Playlist.RepeatMode.ONE) {
-            // 单曲循环：重新播放当前歌曲
-            if (currentIdx >= 0 && currentIdx < size) {
-                LOGGER.info("autoPlayNext: single repeat, playing index {}", currentIdx);
-                Playlist.playAt(currentIdx);
-            }
-        } else if (shuffle) {
-            // 随机播放：随机选择一首歌（排除当前歌曲）
-            int nextIdx;
-            if (size == 1) {
-                nextIdx = 0;
-            } else {
-                // 从除当前歌曲外的歌曲中随机选择
-                int randomOffset = (int) (Math.random() * (size - 1));
-                nextIdx = (currentIdx + 1 + randomOffset) % size;
-            }
-            LOGGER.info("autoPlayNext: shuffle, playing index {}", nextIdx);
-            Playlist.playAt(nextIdx);
-        } else if (repeatMode == Playlist.RepeatMode.ALL) {
-            // 列表循环：播放下一首（自动循环到第一首）
-            int nextIdx = (currentIdx + 1) % size;
-            LOGGER.info("autoPlayNext: list repeat, playing index {}", nextIdx);
-            Playlist.playAt(nextIdx);
+        // 单曲循环、随机、列表循环的选择与手动切歌一致，在播放列表的一次修改中完成
+        if (Playlist.next()) {
+            LOGGER.info("autoPlayNext: playing index {}", Playlist.getCurrentIndex());
         } else {
-            // 不循环：还有下一首就播放
-            if (currentIdx < size - 1) {
-                LOGGER.info("autoPlayNext: no repeat, playing index {}", currentIdx + 1);
-                Playlist.playAt(currentIdx + 1);
-            } else {
-                LOGGER.info("autoPlayNext: no repeat, reached end of playlist");
-            }
+            LOGGER.info("autoPlayNext: reached end of playlist");
         }
     }
 
@@ -218,6 +261,32 @@ public final class MusicController {
         return PLAYER.getPlayedMs();
     }
 
+    /**
+     * 获取平滑的播放位置（毫秒），在两次 tick 之间外推，用于进度等渲染
+     */
+    public static long getPositionMs() {
+        return PLAYER.getPositionMs();
+    }
+
+    /**
+     * 获取用户实际听到的位置（毫秒），用于歌词对齐
+     * 平滑播放位置减去输出设备延迟，再加上用户校准偏移（正数表示歌词提前）
+     */
+    public static long getHeardPositionMs() {
+        long t = PLAYER.getPositionMs() - PLAYER.getOutputLatencyMs() + ModConfig.COMMON.lyricOffsetMs.get();
+        return Math.max(0, t);
+    }
+
+    /**
+     * 调整歌词校准偏移并保存到配置
+     */
+    public static void adjustLyricOffset(int deltaMs) {
+        var offset = ModConfig.COMMON.lyricOffsetMs;
+        int next = Math.max(-LYRIC_OFFSET_LIMIT_MS, Math.min(LYRIC_OFFSET_LIMIT_MS, offset.get() + deltaMs));
+        offset.set(next);
+        offset.save();
+    }
+
     /**
      * 获取预估总时长（毫秒）
      */
@@ -277,18 +346,36 @@ public final class MusicController {
         long totalSeconds = ms / 1000;
         long minutes = totalSeconds / 60;
         long seconds = totalSeconds % 60;
-        return String.format("%d:%02d", minutes, seconds);
+        return minutes + (seconds < 10 ? ":0" : ":") + seconds;
     }
 
     /**
      * 播放指定歌曲（带时长）
      */
     public static void playSongId(long songId, long durationMs) {
+        pendingSeekMs = Playlist.takeResumePosition(songId);
+        if (durationMs <= 0) {
+            durationMs = SongMetaStore.durationMs(songId);
+        }
         try {
+            // 当前曲目已完整缓存（单曲循环、重新点击同一首），直接回放
+            if (PLAYER.replay(songId)) {
+                if (durationMs > 0) {
+                    PLAYER.setKnownDuration(durationMs);
+                }
+                loadLyricsForSong(songId);
+                return;
+            }
+
             ensureProvider();
 
             String url = provider.getPlayableMp3Url(songId);
-            PLAYER.play(URI.create(url));
+            var head = PREFETCHER.take(songId, url);
+            if (head != null) {
+                PLAYER.play(URI.create(url), songId, head.bytes(), head.contentLength());
+            } else {
+                PLAYER.play(URI.create(url), songId);
+            }
 
             // 设置已知的精确时长
             if (durationMs > 0) {
@@ -298,6 +385,9 @@ public final class MusicController {
             // 加载歌词
             loadLyricsForSong(songId);
 
+            // 预取接下来几首的 URL，切歌时无需等待
+            prefetchUpcoming();
+
             // 不再在聊天中显示播放消息
             // sendMessage(I18n.translateString(I18n.MSG_MUSIC_PLAYING, songId));
         } catch (Exception e) {
@@ -313,56 +403,89 @@ public final class MusicController {
         playSongId(songId, 0);
     }
 
-    private static void ensureProvider() {
-        if (provider != null) {
-            return;
+    /**
+     * 按播放列表的随机/循环模式预取后续歌曲的 URL 和歌词
+     */
+    private static void prefetchUpcoming() {
+        if (provider == null) return;
+
+        var upcoming = Playlist.peekUpcoming(URL_PREFETCH_COUNT);
+        if (upcoming.isEmpty()) return;
+
+        List<Long> ids = new ArrayList<>(upcoming.size());
+        for (var song : upcoming) {
+            ids.add(song.id());
         }
+        provider.prefetch(ids);
+        LyricManager.prefetch(ids, lyricBaseUrl());
+    }
 
+    /**
+     * 按当前会话准备 provider；登录、换账号或退出后重新创建，缓存的 URL 和音质不跨账号使用
+     */
+    private static void ensureProvider() {
         SessionStore.Session session = SessionStore.loadOrNull();
         if (session == null) {
+            closeProvider();
             throw new IllegalStateException("No saved session. Do QR login first.");
         }
 
         String cookieForApi = session.cookieForApi();
         if (!CookieSanitizer.hasMusicU(cookieForApi)) {
+            closeProvider();
             throw new IllegalStateException("Session cookie missing MUSIC_U.");
         }
 
+        long userId = session.userId() != null ? session.userId() : 0;
+        if (provider != null && provider.isFor(cookieForApi, userId)) {
+            return;
+        }
+
         String baseUrl = session.baseUrl();
         if (baseUrl == null || baseUrl.isBlank()) {
             baseUrl = ModConfig.COMMON.musicApiUrl.get();
         }
 
         NcmApiClient api = new NcmApiClient(baseUrl);
-        provider = new SongUrlProvider(api, cookieForApi);
+        closeProvider();
+        provider = new SongUrlProvider(api, cookieForApi, userId);
+    }
+
+    private static void closeProvider() {
+        if (provider != null) {
+            provider.close();
+            provider = null;
+        }
     }
 
     /**
      * 加载歌词
      */
     private static void loadLyricsForSong(long songId) {
+        LyricManager.loadLyrics(songId, lyricBaseUrl());
+    }
+
+    private static String lyricBaseUrl() {
         String baseUrl = ModConfig.COMMON.musicApiUrl.get();
         SessionStore.Session session = SessionStore.loadOrNull();
         if (session != null && session.baseUrl() != null && !session.baseUrl().isBlank()) {
             baseUrl = session.baseUrl();
         }
-        LyricManager.loadLyrics(songId, baseUrl);
+        return baseUrl;
     }
 
     /**
      * 获取当前歌词
      */
     public static String getCurrentLyric() {
-        long playedMs = getPlayedMs();
-        return LyricManager.getCurrentLyric(playedMs);
+        return LyricManager.getCurrentLyric(getHeardPositionMs());
     }
 
     /**
      * 获取当前和下一行歌词
      */
     public static String[] getCurrentAndNextLyric() {
-        long playedMs = getPlayedMs();
-        return LyricManager.getCurrentAndNextLyric(playedMs);
+        return LyricManager.getCurrentAndNextLyric(getHeardPositionMs());
     }
 
     /**
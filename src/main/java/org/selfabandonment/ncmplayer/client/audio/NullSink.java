@@ -0,0 +1,154 @@
+package org.selfabandonment.ncmplayer.client.audio;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 无声音频输出（无 OpenAL 环境的基准测试 / 压力测试用）
+ *
+ * - 实时模式：按 PCM 时长消耗缓冲区，行为与真实声卡一致
+ * - 不限速模式：缓冲区入队后立即视为播放完，用于测量解码吞吐；
+ *   此时播放器的进度（按墙钟累计）不代表音频位置
+ *
+ * @author SelfAbandonment
+ */
+public class NullSink implements AudioSink {
+
+    private final int bufferCount;
+    private final boolean realTime;
+
+    private boolean open = false;
+    private SourceState state = SourceState.INITIAL;
+    private final Deque<Long> pendingNanos = new ArrayDeque<>();
+    private int processed = 0;
+    private long headStartNanos = 0;
+    private long pausedAtNanos = 0;
+    private long consumedBytes = 0;
+
+    public NullSink(boolean realTime) {
+        this(DEFAULT_BUFFER_COUNT, realTime);
+    }
+
+    public NullSink(int bufferCount, boolean realTime) {
+        this.bufferCount = bufferCount;
+        this.realTime = realTime;
+    }
+
+    /**
+     * 累计入队的 PCM 字节数
+     */
+    public long consumedBytes() {
+        return consumedBytes;
+    }
+
+    @Override
+    public void open() throws Exception {
+        close();
+        open = true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void setGain(float gain) {
+    }
+
+    @Override
+    public void queue(ByteBuffer pcm, int sampleRate, int channels) {
+        int bytes = pcm.remaining();
+        long frames = bytes / (2L * channels);
+        pendingNanos.addLast(frames * 1_000_000_000L / sampleRate);
+        consumedBytes += bytes;
+        onQueue(pcm, sampleRate, channels);
+    }
+
+    /**
+     * 数据入队时的回调，子类可用于落盘
+     */
+    protected void onQueue(ByteBuffer pcm, int sampleRate, int channels) {
+    }
+
+    @Override
+    public int reclaim() {
+        advance();
+        int n = processed;
+        processed = 0;
+        return n;
+    }
+
+    @Override
+    public int freeBuffers() {
+        return bufferCount - queuedBuffers();
+    }
+
+    @Override
+    public int queuedBuffers() {
+        return pendingNanos.size() + processed;
+    }
+
+    @Override
+    public int processedBuffers() {
+        advance();
+        return processed;
+    }
+
+    @Override
+    public SourceState state() {
+        advance();
+        return state;
+    }
+
+    @Override
+    public void play() {
+        long now = System.nanoTime();
+        if (state == SourceState.PAUSED) {
+            headStartNanos += now - pausedAtNanos;
+        } else if (state != SourceState.PLAYING) {
+            headStartNanos = now;
+        }
+        state = SourceState.PLAYING;
+        advance();
+    }
+
+    @Override
+    public void pause() {
+        if (state != SourceState.PLAYING) return;
+        advance();
+        if (state == SourceState.PLAYING) {
+            state = SourceState.PAUSED;
+            pausedAtNanos = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        state = SourceState.INITIAL;
+        pendingNanos.clear();
+        processed = 0;
+    }
+
+    private void advance() {
+        if (state != SourceState.PLAYING) return;
+
+        if (realTime) {
+            long now = System.nanoTime();
+            while (!pendingNanos.isEmpty() && now - headStartNanos >= pendingNanos.peekFirst()) {
+                headStartNanos += pendingNanos.pollFirst();
+                processed++;
+            }
+        } else {
+            processed += pendingNanos.size();
+            pendingNanos.clear();
+        }
+
+        // 与 OpenAL 一致：队列耗尽后源停止
+        if (pendingNanos.isEmpty()) {
+            state = SourceState.STOPPED;
+        }
+    }
+}
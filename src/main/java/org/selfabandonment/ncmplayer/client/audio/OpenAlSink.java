@@ -0,0 +1,181 @@
+package org.selfabandonment.ncmplayer.client.audio;
+
+import org.lwjgl.openal.AL;
+import org.lwjgl.openal.AL10;
+import org.lwjgl.openal.SOFTSourceLatency;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * OpenAL 音频输出（游戏内使用）
+ *
+ * @author SelfAbandonment
+ */
+public final class OpenAlSink implements AudioSink {
+
+    private final int bufferCount;
+
+    private int source = 0;
+    private int[] buffers = null;
+    private final Deque<Integer> freeBuffers = new ArrayDeque<>();
+
+    // AL_SOFT_source_latency 是否可用，及查询结果 [偏移秒, 延迟秒]
+    private boolean latencySupported = false;
+    private final double[] offsetLatency = new double[2];
+
+    public OpenAlSink() {
+        this(DEFAULT_BUFFER_COUNT);
+    }
+
+    public OpenAlSink(int bufferCount) {
+        this.bufferCount = bufferCount;
+    }
+
+    @Override
+    public void open() {
+        close();
+        try {
+            source = AL10.alGenSources();
+
+            buffers = new int[bufferCount];
+            for (int i = 0; i < bufferCount; i++) {
+                buffers[i] = AL10.alGenBuffers();
+                freeBuffers.addLast(buffers[i]);
+            }
+            latencySupported = AL.getCapabilities().AL_SOFT_source_latency;
+        } catch (RuntimeException | Error e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return source != 0;
+    }
+
+    @Override
+    public void setGain(float gain) {
+        AL10.alSourcef(source, AL10.AL_GAIN, gain);
+    }
+
+    @Override
+    public void queue(ByteBuffer pcm, int sampleRate, int channels) {
+        int buf = freeBuffers.removeFirst();
+        AL10.alBufferData(buf, toAlFormat(channels), pcm, sampleRate);
+        AL10.alSourceQueueBuffers(source, buf);
+    }
+
+    @Override
+    public int reclaim() {
+        int processed = AL10.alGetSourcei(source, AL10.AL_BUFFERS_PROCESSED);
+        for (int i = 0; i < processed; i++) {
+            int unqueued = AL10.alSourceUnqueueBuffers(source);
+            freeBuffers.addLast(unqueued);
+        }
+        return processed;
+    }
+
+    @Override
+    public int freeBuffers() {
+        return freeBuffers.size();
+    }
+
+    @Override
+    public int queuedBuffers() {
+        return AL10.alGetSourcei(source, AL10.AL_BUFFERS_QUEUED);
+    }
+
+    @Override
+    public int processedBuffers() {
+        return AL10.alGetSourcei(source, AL10.AL_BUFFERS_PROCESSED);
+    }
+
+    @Override
+    public SourceState state() {
+        return switch (AL10.alGetSourcei(source, AL10.AL_SOURCE_STATE)) {
+            case AL10.AL_PLAYING -> SourceState.PLAYING;
+            case AL10.AL_PAUSED -> SourceState.PAUSED;
+            case AL10.AL_STOPPED -> SourceState.STOPPED;
+            default -> SourceState.INITIAL;
+        };
+    }
+
+    @Override
+    public void play() {
+        AL10.alSourcePlay(source);
+    }
+
+    @Override
+    public void pause() {
+        AL10.alSourcePause(source);
+    }
+
+    /**
+     * 通过 AL_SOFT_source_latency 查询设备输出延迟，不支持时返回 0
+     */
+    @Override
+    public long outputLatencyMs() {
+        if (!latencySupported) return 0;
+        SOFTSourceLatency.alGetSourcedvSOFT(source, SOFTSourceLatency.AL_SEC_OFFSET_LATENCY_SOFT, offsetLatency);
+        return Math.max(0, Math.round(offsetLatency[1] * 1000));
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (source != 0) {
+                // 先停止源
+                AL10.alSourceStop(source);
+
+                // 等待一小段时间让 OpenAL 处理
+                try { Thread.sleep(10); } catch (InterruptedException ignored) {}
+
+                // 先回收所有已处理的缓冲区
+                int processed = AL10.alGetSourcei(source, AL10.AL_BUFFERS_PROCESSED);
+                for (int i = 0; i < processed; i++) {
+                    try {
+                        AL10.alSourceUnqueueBuffers(source);
+                    } catch (Throwable ignored) {}
+                }
+
+                // 再尝试回收剩余的队列缓冲区
+                int queued = AL10.alGetSourcei(source, AL10.AL_BUFFERS_QUEUED);
+                for (int i = 0; i < queued; i++) {
+                    try {
+                        AL10.alSourceUnqueueBuffers(source);
+                    } catch (Throwable ignored) {}
+                }
+
+                // 删除源
+                try {
+                    AL10.alDeleteSources(source);
+                } catch (Throwable ignored) {}
+            }
+        } catch (Throwable ignored) {
+        } finally {
+            source = 0;
+        }
+
+        try {
+            if (buffers != null) {
+                for (int b : buffers) {
+                    try { AL10.alDeleteBuffers(b); } catch (Throwable ignored) {}
+                }
+            }
+        } finally {
+            buffers = null;
+            freeBuffers.clear();
+        }
+    }
+
+    private static int toAlFormat(int channels) {
+        return switch (channels) {
+            case 1 -> AL10.AL_FORMAT_MONO16;
+            case 2 -> AL10.AL_FORMAT_STEREO16;
+            default -> throw new IllegalArgumentException("Unsupported channels: " + channels);
+        };
+    }
+}
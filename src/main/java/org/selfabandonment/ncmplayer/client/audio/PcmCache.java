@@ -0,0 +1,147 @@
+package org.selfabandonment.ncmplayer.client.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 解码后 PCM 缓存
+ *
+ * 只保存当前曲目的 PCM 数据（从文件开头连续解码得到的前缀），
+ * 单曲循环和向后跳转时可以直接回放，无需重新下载和解码。
+ * 超出字节预算时整段丢弃，本曲目不再记录。
+ *
+ * @author SelfAbandonment
+ */
+final class PcmCache {
+
+    private long trackId = -1;
+    private long budgetBytes = 0;
+    private long usedBytes = 0;
+    private boolean recording = false;
+    private boolean complete = false;
+
+    private final List<StreamingMp3Player.PcmChunk> chunks = new ArrayList<>();
+    private long[] startMs = new long[64];
+    private long cachedUntilMs = 0;
+
+    /**
+     * 切换到新曲目，清空旧数据
+     *
+     * @param trackId     曲目 ID，小于 0 表示不缓存
+     * @param budgetBytes 字节预算，0 表示禁用
+     */
+    synchronized void reset(long trackId, long budgetBytes) {
+        release();
+        this.trackId = trackId;
+        this.budgetBytes = budgetBytes;
+        this.recording = trackId >= 0 && budgetBytes > 0;
+    }
+
+    /**
+     * 是否正在为指定曲目记录
+     */
+    synchronized boolean isRecording(long trackId) {
+        return recording && this.trackId == trackId;
+    }
+
+    /**
+     * 停止记录（保留已缓存的前缀）
+     */
+    synchronized void stopRecording() {
+        recording = false;
+    }
+
+    /**
+     * 追加一个 chunk，返回紧凑拷贝（调用方应使用返回值入队）
+     * 超出预算时丢弃全部缓存并返回原 chunk
+     */
+    synchronized StreamingMp3Player.PcmChunk append(StreamingMp3Player.PcmChunk chunk) {
+        if (!recording) return chunk;
+
+        int size = chunk.pcm.remaining();
+        if (usedBytes + size > budgetBytes) {
+            release();
+            recording = false;
+            return chunk;
+        }
+
+        ByteBuffer copy = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+        copy.put(chunk.pcm.duplicate());
+        copy.flip();
+        StreamingMp3Player.PcmChunk compact = new StreamingMp3Player.PcmChunk(
+                copy, chunk.sampleRate, chunk.channels, chunk.durationMs, chunk.bitRate);
+
+        if (chunks.size() == startMs.length) {
+            startMs = Arrays.copyOf(startMs, startMs.length * 2);
+        }
+        startMs[chunks.size()] = cachedUntilMs;
+        chunks.add(compact);
+        cachedUntilMs += chunk.durationMs;
+        usedBytes += size;
+        return compact;
+    }
+
+    /**
+     * 标记解码已到达文件末尾，缓存完整
+     */
+    synchronized void markComplete() {
+        if (recording && !chunks.isEmpty()) {
+            complete = true;
+        }
+        recording = false;
+    }
+
+    /**
+     * 缓存是否包含整首曲目
+     */
+    synchronized boolean isComplete(long trackId) {
+        return complete && this.trackId == trackId && trackId >= 0;
+    }
+
+    /**
+     * 缓存是否覆盖指定位置
+     */
+    synchronized boolean covers(long trackId, long positionMs) {
+        return this.trackId == trackId && trackId >= 0 && !chunks.isEmpty() && positionMs < cachedUntilMs;
+    }
+
+    /**
+     * 缓存的时长（毫秒）
+     */
+    synchronized long cachedUntilMs() {
+        return cachedUntilMs;
+    }
+
+    /**
+     * 查找包含指定位置的 chunk 下标
+     */
+    synchronized int indexAt(long positionMs) {
+        int idx = Arrays.binarySearch(startMs, 0, chunks.size(), positionMs);
+        if (idx < 0) idx = -idx - 2;
+        return Math.max(0, idx);
+    }
+
+    /**
+     * 获取指定下标的 chunk，越界或已被丢弃时返回 null
+     */
+    synchronized StreamingMp3Player.PcmChunk get(int index) {
+        return index >= 0 && index < chunks.size() ? chunks.get(index) : null;
+    }
+
+    /**
+     * 当前占用字节数
+     */
+    synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    private void release() {
+        chunks.clear();
+        usedBytes = 0;
+        cachedUntilMs = 0;
+        complete = false;
+    }
+}
@@ -1,23 +1,29 @@
 package org.selfabandonment.ncmplayer.client.audio;
 
 import org.selfabandonment.ncmplayer.ncm.NcmApiClient;
+import org.selfabandonment.ncmplayer.util.LongIntHashMap;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
  * 播放列表管理器
  *
+ * 歌曲按列存储在 {@link SongTable} 中，判重和按 ID 查找为 O(1)，适合很长的队列。
+ * 对外仍以 {@link NcmApiClient.SearchSong} 读写，读取时按需组装。
+ * 每次修改记入 {@link PlaylistStore}，重启后恢复队列、当前歌曲、播放位置和随机顺序。
+ *
+ * 线程模型：所有修改在写锁内串行执行，完成后发布一个不可变的 {@link Snapshot}；
+ * 读取方法只读最新快照，不加锁，也不会看到改了一半的状态。
+ * 需要多次读取保持一致时（如先取大小再按下标取歌曲），先调用 {@link #snapshot()}。
+ * {@link #peekUpcoming(int)} 可能生成随机顺序，在写锁内执行。
+ * 开始/停止播放在锁外进行。
+ *
  * @author SelfAbandonment
  */
 public final class Playlist {
 
-    private static final List<NcmApiClient.SearchSong> songs = new ArrayList<>();
-    private static int currentIndex = -1;
-    private static boolean shuffle = false;
-    private static RepeatMode repeatMode = RepeatMode.NONE;
-
     /**
      * 循环模式
      */
@@ -27,22 +33,236 @@ public final class Playlist {
         ONE         // 单曲循环
     }
 
+    /**
+     * 播放列表的不可变快照，可在任意线程读取
+     */
+    public static final class Snapshot {
+
+        private static final Snapshot EMPTY = new Snapshot(SongTable.View.EMPTY, -1, false, false, RepeatMode.NONE, 0);
+
+        private final SongTable.View songs;
+        private final int currentIndex;
+        private final NcmApiClient.SearchSong currentSong;
+        private final boolean shuffle;
+        private final boolean shuffleHasNext;
+        private final RepeatMode repeatMode;
+        private final long version;
+
+        // songId -> 下标，第一次按 ID 查找时建立
+        private volatile LongIntHashMap index;
+
+        private Snapshot(SongTable.View songs, int currentIndex, boolean shuffle, boolean shuffleHasNext,
+                         RepeatMode repeatMode, long version) {
+            this.songs = songs;
+            this.currentIndex = currentIndex;
+            this.currentSong = currentIndex >= 0 && currentIndex < songs.size() ? songs.get(currentIndex) : null;
+            this.shuffle = shuffle;
+            this.shuffleHasNext = shuffleHasNext;
+            this.repeatMode = repeatMode;
+            this.version = version;
+        }
+
+        public int size() {
+            return songs.size();
+        }
+
+        public boolean isEmpty() {
+            return songs.size() == 0;
+        }
+
+        /**
+         * 指定位置的歌曲（当前歌曲返回同一个对象，其余每次组装）
+         */
+        public NcmApiClient.SearchSong get(int index) {
+            if (index < 0 || index >= songs.size()) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + songs.size());
+            }
+            return index == currentIndex ? currentSong : songs.get(index);
+        }
+
+        public int currentIndex() {
+            return currentIndex;
+        }
+
+        /**
+         * 歌曲所在的下标，不存在时返回 -1
+         */
+        public int indexOf(long songId) {
+            LongIntHashMap idx = index;
+            if (idx == null) {
+                // 快照内容不变，建好的索引一直有效；并发时可能重复建立，结果相同
+                idx = new LongIntHashMap(songs.size());
+                for (int row = 0; row < songs.size(); row++) {
+                    idx.put(songs.idAt(row), row);
+                }
+                index = idx;
+            }
+            int row = idx.get(songId);
+            return row == LongIntHashMap.MISSING ? -1 : row;
+        }
+
+        public boolean contains(long songId) {
+            return indexOf(songId) >= 0;
+        }
+
+        /**
+         * 当前歌曲，没有时返回 null
+         */
+        public NcmApiClient.SearchSong currentSong() {
+            return currentSong;
+        }
+
+        public boolean isShuffle() {
+            return shuffle;
+        }
+
+        public RepeatMode repeatMode() {
+            return repeatMode;
+        }
+
+        /**
+         * 版本号，每次修改递增
+         */
+        public long version() {
+            return version;
+        }
+
+        /**
+         * 只读列表视图（元素在访问时组装）
+         */
+        public List<NcmApiClient.SearchSong> asList() {
+            return new AbstractList<>() {
+                @Override
+                public NcmApiClient.SearchSong get(int index) {
+                    return Snapshot.this.get(index);
+                }
+
+                @Override
+                public int size() {
+                    return songs.size();
+                }
+            };
+        }
+    }
+
+    // 写锁：所有修改串行执行
+    private static final Object LOCK = new Object();
+
+    // 以下字段只在持有 LOCK 时访问
+    private static final SongTable songs = new SongTable(64);
+    private static int currentIndex = -1;
+    private static boolean shuffle = false;
+    private static RepeatMode repeatMode = RepeatMode.NONE;
+    private static long version = 0;
+
+    // 本次随机播放的顺序，开启随机后第一次需要时生成，关闭随机或清空列表时丢弃
+    private static ShuffleOrder shuffleOrder = null;
+
+    // 恢复的播放位置，下次播放该歌曲时跳转过去
+    private static long resumeSongId = -1;
+    private static long resumePositionMs = 0;
+    private static boolean restored = false;
+
+    // 最新发布的快照，读取方法只读这里
+    private static volatile Snapshot snapshot = Snapshot.EMPTY;
+
     private Playlist() {}
 
+    /**
+     * 当前快照
+     */
+    public static Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 发布修改后的状态（调用方持有 LOCK）
+     */
+    private static void publish() {
+        // 随机顺序尚未生成时，生成后游标在当前歌曲上，其余歌曲都还没播
+        boolean shuffleHasNext = shuffleOrder != null
+                ? shuffleOrder.hasNext()
+                : songs.size() > (currentIndex >= 0 ? 1 : 0);
+        snapshot = new Snapshot(songs.view(), currentIndex, shuffle, shuffleHasNext, repeatMode, ++version);
+    }
+
+    /**
+     * 恢复上次退出时的播放队列（客户端启动时调用一次，不会自动开始播放）
+     */
+    static void restore() {
+        synchronized (LOCK) {
+            if (restored) return;
+            restored = true;
+
+            var state = PlaylistStore.load(songs);
+            currentIndex = state.currentIndex();
+            shuffleOrder = state.shuffleOrder();
+            shuffle = state.shuffle();
+            repeatMode = state.repeatMode();
+            publish();
+
+            var current = snapshot.currentSong();
+            if (current != null && current.id() == state.positionSongId()) {
+                resumeSongId = current.id();
+                resumePositionMs = state.positionMs();
+            }
+        }
+    }
+
+    /**
+     * 取出恢复的播放位置（只取一次），不是该歌曲时返回 0
+     */
+    static long takeResumePosition(long songId) {
+        synchronized (LOCK) {
+            long ms = songId == resumeSongId ? resumePositionMs : 0;
+            resumeSongId = -1;
+            resumePositionMs = 0;
+            return ms;
+        }
+    }
+
+    /**
+     * 记录当前歌曲的播放位置
+     */
+    static void savePosition(long positionMs) {
+        synchronized (LOCK) {
+            var current = snapshot.currentSong();
+            if (current != null) {
+                PlaylistStore.logPosition(current.id(), positionMs);
+            }
+        }
+    }
+
+    /**
+     * 每 tick 调用：日志过大时压缩
+     */
+    static void tick() {
+        // 绝大多数 tick 无需压缩，先无锁检查
+        if (!PlaylistStore.compactionDue()) return;
+        synchronized (LOCK) {
+            PlaylistStore.compactIfNeeded(songs.view(), currentIndex, shuffleOrder, shuffle, repeatMode);
+        }
+    }
+
     /**
      * 清空播放列表
      */
     public static void clear() {
-        songs.clear();
-        currentIndex = -1;
+        synchronized (LOCK) {
+            songs.clear();
+            currentIndex = -1;
+            shuffleOrder = null;
+            PlaylistStore.logClear();
+            publish();
+        }
     }
 
     /**
      * 添加歌曲到播放列表
      */
     public static void add(NcmApiClient.SearchSong song) {
-        if (!contains(song.id())) {
-            songs.add(song);
+        synchronized (LOCK) {
+            if (addLocked(song)) publish();
         }
     }
 
@@ -50,17 +270,34 @@ public final class Playlist {
      * 添加多首歌曲
      */
     public static void addAll(List<NcmApiClient.SearchSong> newSongs) {
-        for (var song : newSongs) {
-            add(song);
+        synchronized (LOCK) {
+            boolean changed = false;
+            for (var song : newSongs) {
+                changed |= addLocked(song);
+            }
+            if (changed) publish();
         }
     }
 
+    private static boolean addLocked(NcmApiClient.SearchSong song) {
+        if (!songs.add(song)) return false;
+        int slot = shuffleOrder != null ? shuffleOrder.add(song.id()) : -1;
+        PlaylistStore.logAdd(song, slot);
+        return true;
+    }
+
     /**
      * 移除歌曲
      */
     public static void remove(int index) {
-        if (index >= 0 && index < songs.size()) {
-            boolean wasCurrentSong = (index == currentIndex);
+        boolean wasCurrentSong;
+        synchronized (LOCK) {
+            if (index < 0 || index >= songs.size()) return;
+            wasCurrentSong = (index == currentIndex);
+            if (shuffleOrder != null) {
+                shuffleOrder.remove(songs.idAt(index));
+            }
+            PlaylistStore.logRemove(index, songs.size());
             songs.remove(index);
 
             // 调整当前索引
@@ -69,14 +306,13 @@ public final class Playlist {
             } else if (currentIndex >= songs.size()) {
                 currentIndex = songs.size() - 1;
             }
+            PlaylistStore.logIndex(currentIndex);
+            publish();
+        }
 
-            // 如果移除的是当前播放的歌曲，手动停止播放（不触发自动下一首）
-            if (wasCurrentSong) {
-                MusicController.stopManually();
-                if (songs.isEmpty()) {
-                    currentIndex = -1;
-                }
-            }
+        // 如果移除的是当前播放的歌曲，手动停止播放（不触发自动下一首）
+        if (wasCurrentSong) {
+            MusicController.stopManually();
         }
     }
 
@@ -84,43 +320,54 @@ public final class Playlist {
      * 检查是否包含歌曲
      */
     public static boolean contains(long songId) {
-        return songs.stream().anyMatch(s -> s.id() == songId);
+        return snapshot.contains(songId);
     }
 
     /**
-     * 获取播放列表
+     * 获取播放列表（当前快照的只读视图）
      */
     public static List<NcmApiClient.SearchSong> getSongs() {
-        return Collections.unmodifiableList(songs);
+        return snapshot.asList();
+    }
+
+    /**
+     * 获取指定位置的歌曲
+     */
+    public static NcmApiClient.SearchSong get(int index) {
+        return snapshot.get(index);
     }
 
     /**
      * 获取列表大小
      */
     public static int size() {
-        return songs.size();
+        return snapshot.size();
     }
 
     /**
      * 是否为空
      */
     public static boolean isEmpty() {
-        return songs.isEmpty();
+        return snapshot.isEmpty();
     }
 
     /**
      * 获取当前索引
      */
     public static int getCurrentIndex() {
-        return currentIndex;
+        return snapshot.currentIndex();
     }
 
     /**
      * 设置当前索引
      */
     public static void setCurrentIndex(int index) {
-        if (index >= -1 && index < songs.size()) {
-            currentIndex = index;
+        synchronized (LOCK) {
+            if (index >= -1 && index < songs.size()) {
+                currentIndex = index;
+                PlaylistStore.logIndex(index);
+                publish();
+            }
         }
     }
 
@@ -128,157 +375,254 @@ public final class Playlist {
      * 获取当前歌曲
      */
     public static NcmApiClient.SearchSong getCurrentSong() {
-        if (currentIndex >= 0 && currentIndex < songs.size()) {
-            return songs.get(currentIndex);
-        }
-        return null;
+        return snapshot.currentSong();
     }
 
     /**
      * 播放指定索引的歌曲
      */
     public static void playAt(int index) {
-        if (index >= 0 && index < songs.size()) {
-            currentIndex = index;
-            var song = songs.get(index);
-            MusicController.playSongId(song.id(), song.durationMs());
+        NcmApiClient.SearchSong song;
+        synchronized (LOCK) {
+            song = selectLocked(index);
         }
+        start(song);
     }
 
     /**
      * 播放指定歌曲（如果不在列表中则添加）
      */
     public static void play(NcmApiClient.SearchSong song) {
-        int idx = indexOf(song.id());
-        if (idx < 0) {
-            add(song);
-            idx = songs.size() - 1;
+        NcmApiClient.SearchSong selected;
+        synchronized (LOCK) {
+            addLocked(song);
+            selected = selectLocked(songs.indexOf(song.id()));
         }
-        playAt(idx);
+        start(selected);
     }
 
     /**
      * 查找歌曲索引
      */
     public static int indexOf(long songId) {
-        for (int i = 0; i < songs.size(); i++) {
-            if (songs.get(i).id() == songId) {
-                return i;
-            }
-        }
-        return -1;
+        return snapshot.indexOf(songId);
     }
 
     /**
      * 播放下一首
+     *
+     * @return 是否开始播放（不循环且已到末尾时为 false）
      */
-    public static void next() {
-        if (songs.isEmpty()) return;
+    public static boolean next() {
+        NcmApiClient.SearchSong song;
+        synchronized (LOCK) {
+            song = selectLocked(nextIndexLocked());
+        }
+        start(song);
+        return song != null;
+    }
+
+    /**
+     * 播放上一首
+     */
+    public static void previous() {
+        NcmApiClient.SearchSong song;
+        synchronized (LOCK) {
+            song = selectLocked(previousIndexLocked());
+        }
+        start(song);
+    }
+
+    /**
+     * 设为当前歌曲并发布，返回要播放的歌曲；下标无效时返回 null（调用方持有 LOCK）
+     */
+    private static NcmApiClient.SearchSong selectLocked(int index) {
+        if (index < 0 || index >= songs.size()) return null;
+        currentIndex = index;
+        if (shuffleOrder != null) {
+            shuffleOrder.select(songs.idAt(index));
+        }
+        PlaylistStore.logSelect(index);
+        publish();
+        return snapshot.currentSong();
+    }
+
+    private static void start(NcmApiClient.SearchSong song) {
+        if (song != null) {
+            MusicController.playSongId(song.id(), song.durationMs());
+        }
+    }
+
+    private static int nextIndexLocked() {
+        if (songs.isEmpty()) return -1;
 
         if (repeatMode == RepeatMode.ONE) {
             // 单曲循环：重新播放当前歌曲
-            if (currentIndex >= 0) {
-                playAt(currentIndex);
-            }
-            return;
+            return currentIndex;
+        }
+        if (shuffle) {
+            return takeShuffleIndexLocked();
+        }
+
+        int nextIndex = currentIndex + 1;
+        if (nextIndex >= songs.size()) {
+            // 列表循环回到开头，否则播放完毕
+            return repeatMode == RepeatMode.ALL ? 0 : -1;
         }
+        return nextIndex;
+    }
+
+    private static int previousIndexLocked() {
+        if (songs.isEmpty()) return -1;
 
-        int nextIndex;
         if (shuffle) {
-            // 随机播放：随机选择一首（排除当前歌曲）
-            if (songs.size() == 1) {
-                nextIndex = 0;
-            } else {
-                // 从除当前歌曲外的歌曲中随机选择
-                int randomOffset = (int) (Math.random() * (songs.size() - 1));
-                nextIndex = (currentIndex + 1 + randomOffset) % songs.size();
-            }
-        } else {
-            nextIndex = currentIndex + 1;
-
-            // 检查是否超出范围
-            if (nextIndex >= songs.size()) {
-                if (repeatMode == RepeatMode.ALL) {
-                    nextIndex = 0;
-                } else {
-                    return; // 播放完毕
-                }
-            }
+            // 随机播放：沿播放历史返回，没有历史时重新播放当前歌曲
+            long songId = shuffleOrder().previous();
+            if (songId == ShuffleOrder.NONE) return currentIndex;
+            PlaylistStore.logShuffleStep(false);
+            return songs.indexOf(songId);
         }
 
-        playAt(nextIndex);
+        int prevIndex = currentIndex - 1;
+        if (prevIndex < 0) {
+            return repeatMode == RepeatMode.ALL ? songs.size() - 1 : 0;
+        }
+        return prevIndex;
     }
 
     /**
-     * 播放上一首
+     * 随机模式下前进到下一首，返回其索引；不循环且本轮已播完时返回 -1
+     *
+     * 列表循环时本轮播完后重新洗牌，当前歌曲不会紧接着再播一次（列表只有一首时除外）。
      */
-    public static void previous() {
-        if (songs.isEmpty()) return;
+    private static int takeShuffleIndexLocked() {
+        long songId = shuffleOrder().next();
+        if (songId == ShuffleOrder.NONE && repeatMode == RepeatMode.ALL) {
+            shuffleOrder = null;
+            songId = shuffleOrder().next();
+            if (songId == ShuffleOrder.NONE) return currentIndex;
+        }
+        if (songId != ShuffleOrder.NONE) PlaylistStore.logShuffleStep(true);
+        return songId == ShuffleOrder.NONE ? -1 : songs.indexOf(songId);
+    }
 
-        int prevIndex;
-        if (shuffle) {
-            // 随机播放：随机选择一首（排除当前歌曲）
-            if (songs.size() == 1) {
-                prevIndex = 0;
-            } else {
-                int randomOffset = (int) (Math.random() * (songs.size() - 1));
-                prevIndex = (currentIndex + 1 + randomOffset) % songs.size();
+    private static ShuffleOrder shuffleOrder() {
+        if (shuffleOrder == null) {
+            shuffleOrder = new ShuffleOrder(songs, currentIndex);
+            PlaylistStore.logShuffleOrder(shuffleOrder);
+        }
+        return shuffleOrder;
+    }
+
+    /**
+     * 按当前随机/循环模式预测接下来要播放的歌曲（不含当前歌曲）
+     *
+     * @param count 最多返回的数量
+     * @return 接下来的歌曲，单曲循环时为空
+     */
+    public static List<NcmApiClient.SearchSong> peekUpcoming(int count) {
+        synchronized (LOCK) {
+            if (songs.isEmpty() || count <= 0 || repeatMode == RepeatMode.ONE) {
+                return List.of();
             }
-        } else {
-            prevIndex = currentIndex - 1;
-
-            if (prevIndex < 0) {
-                if (repeatMode == RepeatMode.ALL) {
-                    prevIndex = songs.size() - 1;
-                } else {
-                    prevIndex = 0;
+
+            if (shuffle) {
+                // 按本轮的随机顺序；列表循环时下一轮尚未洗牌，只返回本轮剩余的
+                long[] ids = new long[count];
+                int n = shuffleOrder().peek(ids, count);
+                List<NcmApiClient.SearchSong> upcoming = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    upcoming.add(songs.get(songs.indexOf(ids[i])));
                 }
+                return upcoming;
             }
-        }
 
-        playAt(prevIndex);
+            List<NcmApiClient.SearchSong> upcoming = new ArrayList<>(count);
+            int size = songs.size();
+            for (int i = 1; i <= count; i++) {
+                int idx = currentIndex + i;
+                if (idx >= size) {
+                    // 列表循环时绕回开头，但不超过一圈
+                    if (repeatMode != RepeatMode.ALL || i >= size) break;
+                    idx %= size;
+                }
+                upcoming.add(songs.get(idx));
+            }
+            return upcoming;
+        }
     }
 
     /**
      * 是否有下一首
      */
     public static boolean hasNext() {
-        if (songs.isEmpty()) return false;
-        if (repeatMode != RepeatMode.NONE) return true;
-        return currentIndex < songs.size() - 1;
+        Snapshot s = snapshot;
+        if (s.isEmpty()) return false;
+        if (s.repeatMode() != RepeatMode.NONE) return true;
+        if (s.isShuffle()) return s.shuffleHasNext;
+        return s.currentIndex() < s.size() - 1;
     }
 
     /**
      * 是否有上一首
      */
     public static boolean hasPrevious() {
-        if (songs.isEmpty()) return false;
-        if (repeatMode != RepeatMode.NONE) return true;
-        return currentIndex > 0;
+        Snapshot s = snapshot;
+        if (s.isEmpty()) return false;
+        if (s.repeatMode() != RepeatMode.NONE) return true;
+        if (s.isShuffle()) return s.currentIndex() >= 0;
+        return s.currentIndex() > 0;
     }
 
     /**
      * 获取/设置随机播放
      */
-    public static boolean isShuffle() { return shuffle; }
-    public static void setShuffle(boolean value) { shuffle = value; }
-    public static void toggleShuffle() { shuffle = !shuffle; }
+    public static boolean isShuffle() { return snapshot.isShuffle(); }
+    public static void setShuffle(boolean value) {
+        synchronized (LOCK) {
+            setShuffleLocked(value);
+        }
+    }
+    public static void toggleShuffle() {
+        synchronized (LOCK) {
+            setShuffleLocked(!shuffle);
+        }
+    }
+
+    private static void setShuffleLocked(boolean value) {
+        if (shuffle != value) {
+            // 每次开启随机都重新洗牌
+            shuffle = value;
+            shuffleOrder = null;
+            PlaylistStore.logMode(shuffle, repeatMode);
+            publish();
+        }
+    }
 
     /**
      * 获取/设置循环模式
      */
-    public static RepeatMode getRepeatMode() { return repeatMode; }
-    public static void setRepeatMode(RepeatMode mode) { repeatMode = mode; }
+    public static RepeatMode getRepeatMode() { return snapshot.repeatMode(); }
+    public static void setRepeatMode(RepeatMode mode) {
+        synchronized (LOCK) {
+            repeatMode = mode;
+            PlaylistStore.logMode(shuffle, repeatMode);
+            publish();
+        }
+    }
 
     /**
      * 切换循环模式
      */
     public static void toggleRepeatMode() {
-        repeatMode = switch (repeatMode) {
-            case NONE -> RepeatMode.ALL;
-            case ALL -> RepeatMode.ONE;
-            case ONE -> RepeatMode.NONE;
-        };
+        synchronized (LOCK) {
+            repeatMode = switch (repeatMode) {
+                case NONE -> RepeatMode.ALL;
+                case ALL -> RepeatMode.ONE;
+                case ONE -> RepeatMode.NONE;
+            };
+            PlaylistStore.logMode(shuffle, repeatMode);
+            publish();
+        }
     }
 }
-
@@ -0,0 +1,639 @@
+package org.selfabandonment.ncmplayer.client.audio;
+
+import net.minecraft.client.Minecraft;
+import org.selfabandonment.ncmplayer.ncm.NcmApiClient;
+import org.selfabandonment.ncmplayer.util.LongIntHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 播放队列持久化
+ *
+ * 文件: config/ncmplayer_queue.dat，追加写的修改日志
+ * - 播放列表的每次修改追加一条记录（添加、删除、切歌、随机顺序、模式、播放位置），不重写整个文件
+ * - 启动时一次读入整个文件，按顺序重放；读取失败或文件来自新版本时本次不再写入，
+ *   无法识别的文件改名为 .bak 保留后重新开始，不会直接清空用户的队列
+ * - 日志超过当前内容估算大小的两倍时，写一份快照原子替换旧文件
+ *
+ * 记录由 {@link Playlist} 在写锁内编码，后台线程按提交顺序写入；压缩也在同一线程，与追加天然有序。
+ * 压缩时锁内只取不可变的歌曲表快照并复制随机顺序，整份快照在后台线程编码。
+ * 记录格式: [int 长度][byte 类型][数据]
+ *
+ * @author SelfAbandonment
+ */
+final class PlaylistStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("ncmplayer");
+
+    private static final int MAGIC = 0x4E434D51;  // "NCMQ"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+    private static final long COMPACT_MIN_BYTES = 64 * 1024;
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_CLEAR = 3;
+    private static final byte OP_INDEX = 4;
+    private static final byte OP_SELECT = 5;
+    private static final byte OP_SHUFFLE_NEXT = 6;
+    private static final byte OP_SHUFFLE_PREVIOUS = 7;
+    private static final byte OP_SHUFFLE_ORDER = 8;
+    private static final byte OP_MODE = 9;
+    private static final byte OP_POSITION = 10;
+
+    /**
+     * 恢复出的播放状态（歌曲直接写入传入的表）
+     *
+     * @param shuffleOrder 随机顺序，未生成时为 null
+     * @param positionSongId 最后记录播放位置的歌曲，-1 表示没有
+     */
+    record Restored(int currentIndex, ShuffleOrder shuffleOrder, boolean shuffle, Playlist.RepeatMode repeatMode,
+                    long positionSongId, long positionMs) {}
+
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ncm-queue-store");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // 以下字段只在持有 Playlist 写锁时访问
+    private static boolean enabled = false;
+    private static long logBytes = 0;
+    private static long songBytes = 0;
+    private static long shuffleBytes = 0;
+    private static long positionSongId = -1;
+    private static long positionMs = 0;
+
+    // 日志已超过压缩阈值：写锁内设置，每 tick 无锁读取
+    private static volatile boolean compactionDue = false;
+
+    // 以下字段只在写入线程访问
+    private static FileChannel channel;
+    private static long writePos = 0;
+
+    private PlaylistStore() {}
+
+    private static Path filePath() {
+        return Minecraft.getInstance().gameDirectory.toPath()
+                .resolve("config")
+                .resolve("ncmplayer_queue.dat");
+    }
+
+    /**
+     * 读取并重放日志（启动时调用一次），之后的修改才会写入
+     *
+     * @param songs 空的歌曲表，恢复的歌曲写入其中
+     */
+    static Restored load(SongTable songs) {
+        long start = System.nanoTime();
+        Replay replay = new Replay();
+        int valid = 0;
+        boolean writable = true;
+        boolean moveAside = false;
+
+        try {
+            Path p = filePath();
+            byte[] data = Files.exists(p) ? Files.readAllBytes(p) : new byte[0];
+            ByteBuffer buf = ByteBuffer.wrap(data);
+            if (data.length >= HEADER_SIZE && buf.getInt(0) == MAGIC && buf.getInt(4) == VERSION) {
+                int pos = HEADER_SIZE;
+                while (pos + 5 <= data.length) {
+                    int len = buf.getInt(pos);
+                    if (len < 1 || len > MAX_RECORD_SIZE || len > data.length - pos - 4) break;
+                    try {
+                        buf.limit(pos + 4 + len).position(pos + 4);
+                        replay.apply(buf, len);
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Damaged play queue record at {}: {}", pos, e.toString());
+                        break;
+                    }
+                    pos += 4 + len;
+                    buf.limit(data.length);
+                }
+                valid = pos;
+                if (valid < data.length) {
+                    LOGGER.warn("Truncating damaged play queue tail at {} (size {})", valid, data.length);
+                }
+            } else if (data.length >= HEADER_SIZE && buf.getInt(0) == MAGIC && buf.getInt(4) > VERSION) {
+                // 新版本写入的文件：本次不读也不写，留给新版本
+                LOGGER.warn("Play queue was written by a newer version ({}), not saving it this session", buf.getInt(4));
+                writable = false;
+            } else if (data.length > 0) {
+                LOGGER.warn("Unrecognized play queue file, moving it aside");
+                moveAside = true;
+            }
+        } catch (Exception e) {
+            // 可能只是暂时读不了，不能按空文件处理
+            LOGGER.warn("Failed to read play queue, not saving it this session: {}", e.getMessage());
+            writable = false;
+        }
+
+        Restored restored = replay.result(songs);
+        if (writable) {
+            final long validLength = valid;
+            final boolean backup = moveAside;
+            WRITER.execute(() -> {
+                if (!backup || moveAside()) open(validLength);
+            });
+            enabled = true;
+        }
+        logBytes = Math.max(HEADER_SIZE, valid);
+        songBytes = replay.songBytes;
+        shuffleBytes = replay.shuffleBytes;
+        positionSongId = replay.positionSongId;
+        positionMs = replay.positionMs;
+        compactionDue = enabled && overThreshold();
+
+        LOGGER.debug("Play queue restored: {} songs, {} bytes in {} ms",
+                songs.size(), valid, (System.nanoTime() - start) / 1_000_000);
+        return restored;
+    }
+
+    // ==================== 记录修改（Playlist 写锁内） ====================
+
+    static void logAdd(NcmApiClient.SearchSong song, int shuffleSlot) {
+        if (!enabled) return;
+        byte[] record = encodeAdd(song, shuffleSlot);
+        songBytes += record.length;
+        submit(record);
+    }
+
+    /**
+     * @param sizeBefore 删除前的歌曲数，用于估算剩余内容大小
+     */
+    static void logRemove(int index, int sizeBefore) {
+        if (!enabled) return;
+        songBytes -= songBytes / Math.max(1, sizeBefore);
+        submit(record(OP_REMOVE, 4).putInt(index).array());
+    }
+
+    static void logClear() {
+        if (!enabled) return;
+        songBytes = 0;
+        shuffleBytes = 0;
+        submit(record(OP_CLEAR, 0).array());
+    }
+
+    /**
+     * 直接设置当前索引（不影响随机顺序）
+     */
+    static void logIndex(int index) {
+        if (!enabled) return;
+        submit(record(OP_INDEX, 4).putInt(index).array());
+    }
+
+    /**
+     * 播放指定索引（随机模式下同时把它设为随机顺序的当前项）
+     */
+    static void logSelect(int index) {
+        if (!enabled) return;
+        submit(record(OP_SELECT, 4).putInt(index).array());
+    }
+
+    static void logShuffleStep(boolean forward) {
+        if (!enabled) return;
+        submit(record(forward ? OP_SHUFFLE_NEXT : OP_SHUFFLE_PREVIOUS, 0).array());
+    }
+
+    /**
+     * 新生成的随机顺序（整份写入，每轮随机播放一次）
+     */
+    static void logShuffleOrder(ShuffleOrder order) {
+        if (!enabled) return;
+        byte[] record = encodeShuffleOrder(order);
+        shuffleBytes = record.length;
+        submit(record);
+    }
+
+    static void logMode(boolean shuffle, Playlist.RepeatMode repeatMode) {
+        if (!enabled) return;
+        submit(encodeMode(shuffle, repeatMode));
+    }
+
+    static void logPosition(long songId, long ms) {
+        if (!enabled) return;
+        positionSongId = songId;
+        positionMs = ms;
+        submit(encodePosition(songId, ms));
+    }
+
+    /**
+     * 是否需要压缩，无需加锁（每 tick 调用）
+     */
+    static boolean compactionDue() {
+        return compactionDue;
+    }
+
+    /**
+     * 日志明显大于当前内容时写快照替换（{@link #compactionDue()} 为 true 时调用）
+     *
+     * @param songs 歌曲表的不可变快照，在写入线程编码
+     * @param order 随机顺序，锁内复制一份
+     */
+    static void compactIfNeeded(SongTable.View songs, int currentIndex, ShuffleOrder order,
+                                boolean shuffle, Playlist.RepeatMode repeatMode) {
+        compactionDue = false;
+        if (!enabled || !overThreshold()) return;
+
+        long[] orderSlots = order != null ? order.copyOrder() : null;
+        int orderCursor = order != null ? order.cursor() : -1;
+        long savedSongId = positionSongId;
+        long savedMs = positionMs;
+
+        // 快照大小按当前估算计入，之后的记录追加在快照之后
+        shuffleBytes = orderSlots != null ? 5 + 8 + orderSlots.length * 8L : 0;
+        logBytes = HEADER_SIZE + songBytes + shuffleBytes;
+        long estimate = logBytes;
+
+        WRITER.execute(() -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE, estimate + 64));
+            out.writeBytes(encodeMode(shuffle, repeatMode));
+            for (int row = 0; row < songs.size(); row++) {
+                out.writeBytes(encodeAdd(songs.get(row), -1));
+            }
+            if (orderSlots != null) {
+                out.writeBytes(encodeShuffleOrder(orderSlots, orderCursor));
+            }
+            out.writeBytes(record(OP_INDEX, 4).putInt(currentIndex).array());
+            if (savedSongId >= 0) {
+                out.writeBytes(encodePosition(savedSongId, savedMs));
+            }
+            replace(out.toByteArray());
+        });
+    }
+
+    private static void submit(byte[] record) {
+        logBytes += record.length;
+        if (!compactionDue && overThreshold()) compactionDue = true;
+        WRITER.execute(() -> write(record));
+    }
+
+    private static boolean overThreshold() {
+        long live = HEADER_SIZE + songBytes + shuffleBytes;
+        return logBytes > COMPACT_MIN_BYTES && logBytes > live * 2;
+    }
+
+    // ==================== 文件操作（写入线程） ====================
+
+    private static void open(long validLength) {
+        try {
+            Path p = filePath();
+            Files.createDirectories(p.getParent());
+            channel = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (validLength < HEADER_SIZE) {
+                // 新文件或格式不符：重新开始
+                channel.truncate(0);
+                channel.write(header(), 0);
+                writePos = HEADER_SIZE;
+            } else {
+                if (channel.size() > validLength) {
+                    channel.truncate(validLength);
+                }
+                writePos = validLength;
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Play queue store unavailable: {}", e.getMessage());
+            closeQuietly();
+        }
+    }
+
+    private static void write(byte[] record) {
+        if (channel == null) return;
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(record);
+            while (buf.hasRemaining()) {
+                writePos += channel.write(buf, writePos);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write play queue: {}", e.getMessage());
+        }
+    }
+
+    private static void replace(byte[] snapshot) {
+        Path p = filePath();
+        Path tmp = p.resolveSibling(p.getFileName() + ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                out.write(header());
+                ByteBuffer buf = ByteBuffer.wrap(snapshot);
+                while (buf.hasRemaining()) {
+                    out.write(buf);
+                }
+                out.force(true);
+            }
+            closeQuietly();
+            Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(p, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            writePos = channel.size();
+            LOGGER.debug("Play queue compacted to {} bytes", writePos);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to compact play queue: {}", e.getMessage());
+            // 旧文件没有被替换，接着追加
+            if (channel == null) open(writePos);
+        }
+    }
+
+    /**
+     * 把无法识别的文件改名保留；失败时返回 false，不再写入
+     */
+    private static boolean moveAside() {
+        Path p = filePath();
+        try {
+            Files.move(p, p.resolveSibling(p.getFileName() + ".bak"), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to move unrecognized play queue aside: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private static void closeQuietly() {
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+    // ==================== 编解码 ====================
+
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+    }
+
+    /**
+     * 分配一条记录并写好长度和类型
+     */
+    private static ByteBuffer record(byte op, int payload) {
+        return ByteBuffer.allocate(5 + payload).putInt(1 + payload).put(op);
+    }
+
+    private static byte[] encodeAdd(NcmApiClient.SearchSong song, int shuffleSlot) {
+        byte[] name = utf8(song.name());
+        byte[] artist = utf8(song.artist());
+        return record(OP_ADD, 8 + 8 + 4 + name.length + 4 + artist.length + 4)
+                .putLong(song.id())
+                .putLong(song.durationMs())
+                .putInt(name.length).put(name)
+                .putInt(artist.length).put(artist)
+                .putInt(shuffleSlot)
+                .array();
+    }
+
+    private static byte[] encodeShuffleOrder(ShuffleOrder order) {
+        return encodeShuffleOrder(order.copyOrder(), order.cursor());
+    }
+
+    private static byte[] encodeShuffleOrder(long[] slots, int cursor) {
+        ByteBuffer buf = record(OP_SHUFFLE_ORDER, 8 + slots.length * 8)
+                .putInt(cursor)
+                .putInt(slots.length);
+        for (long slot : slots) {
+            buf.putLong(slot);
+        }
+        return buf.array();
+    }
+
+    private static byte[] encodeMode(boolean shuffle, Playlist.RepeatMode repeatMode) {
+        return record(OP_MODE, 2).put((byte) (shuffle ? 1 : 0)).put((byte) repeatMode.ordinal()).array();
+    }
+
+    private static byte[] encodePosition(long songId, long ms) {
+        return record(OP_POSITION, 16).putLong(songId).putLong(ms).array();
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int len = buf.getInt();
+        if (len < 0 || len > buf.remaining()) throw new IllegalStateException("bad string length " + len);
+        String s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+        buf.position(buf.position() + len);
+        return s;
+    }
+
+    /**
+     * 按顺序重放日志，与 {@link Playlist} 中对应操作的效果一致
+     */
+    private static final class Replay {
+        private final ReplayRows songs = new ReplayRows();
+        private int currentIndex = -1;
+        private ShuffleOrder order = null;
+        private boolean shuffle = false;
+        private Playlist.RepeatMode repeatMode = Playlist.RepeatMode.NONE;
+        private long positionSongId = -1;
+        private long positionMs = 0;
+        private long songBytes = 0;
+        private long shuffleBytes = 0;
+
+        void apply(ByteBuffer buf, int size) {
+            switch (buf.get()) {
+                case OP_ADD -> {
+                    long id = buf.getLong();
+                    long durationMs = buf.getLong();
+                    String name = readString(buf);
+                    String artist = readString(buf);
+                    int slot = buf.getInt();
+                    if (songs.add(id, name, artist, durationMs)) {
+                        songBytes += 4 + size;
+                        if (order != null) order.insert(id, slot);
+                    }
+                }
+                case OP_REMOVE -> {
+                    int index = buf.getInt();
+                    if (index >= 0 && index < songs.size()) {
+                        songBytes -= songBytes / songs.size();
+                        long id = songs.remove(index);
+                        if (order != null) order.remove(id);
+                    }
+                }
+                case OP_CLEAR -> {
+                    songs.clear();
+                    order = null;
+                    currentIndex = -1;
+                    songBytes = 0;
+                    shuffleBytes = 0;
+                }
+                case OP_INDEX -> currentIndex = buf.getInt();
+                case OP_SELECT -> {
+                    currentIndex = buf.getInt();
+                    if (order != null && currentIndex >= 0 && currentIndex < songs.size()) {
+                        order.select(songs.idAt(currentIndex));
+                    }
+                }
+                case OP_SHUFFLE_NEXT -> {
+                    if (order != null) order.next();
+                }
+                case OP_SHUFFLE_PREVIOUS -> {
+                    if (order != null) order.previous();
+                }
+                case OP_SHUFFLE_ORDER -> {
+                    int cursor = buf.getInt();
+                    int length = buf.getInt();
+                    if (length < 0 || length > buf.remaining() / 8) throw new IllegalStateException("bad order length " + length);
+                    long[] ids = new long[Math.max(16, length)];
+                    for (int i = 0; i < length; i++) {
+                        ids[i] = buf.getLong();
+                    }
+                    order = new ShuffleOrder(ids, length, cursor);
+                    shuffleBytes = 4 + size;
+                }
+                case OP_MODE -> {
+                    boolean value = buf.get() != 0;
+                    int repeat = buf.get();
+                    if (value != shuffle) order = null;
+                    shuffle = value;
+                    Playlist.RepeatMode[] modes = Playlist.RepeatMode.values();
+                    repeatMode = repeat >= 0 && repeat < modes.length ? modes[repeat] : Playlist.RepeatMode.NONE;
+                }
+                case OP_POSITION -> {
+                    positionSongId = buf.getLong();
+                    positionMs = buf.getLong();
+                }
+                default -> {
+                    // 未知类型（新版本写入），跳过
+                }
+            }
+        }
+
+        /**
+         * 把重放出的歌曲写入表，返回恢复的状态
+         */
+        Restored result(SongTable table) {
+            songs.copyTo(table);
+            int index = currentIndex >= -1 && currentIndex < table.size() ? currentIndex : -1;
+            return new Restored(index, shuffle ? order : null, shuffle, repeatMode, positionSongId, positionMs);
+        }
+    }
+
+    /**
+     * 重放用的歌曲行
+     *
+     * 删除只做标记，用树状数组按“第 k 个未删除的行”定位，增删都是 O(log n)；
+     * 重放结束后按顺序一次写入 {@link SongTable}。恢复时还没有快照，
+     * 不需要 SongTable 删除时的写时复制，也不用每次删除都前移后面的行。
+     */
+    private static final class ReplayRows {
+        private long[] ids = new long[64];
+        private long[] durations = new long[64];
+        private String[] names = new String[64];
+        private String[] artists = new String[64];
+        private boolean[] removed = new boolean[64];
+        // 树状数组（下标从 1 开始），统计未删除的行数
+        private int[] tree = new int[65];
+        private int count;
+        private int live;
+
+        // songId -> 行，只含未删除的行
+        private final LongIntHashMap rows = new LongIntHashMap(64);
+
+        int size() {
+            return live;
+        }
+
+        boolean add(long id, String name, String artist, long durationMs) {
+            if (rows.containsKey(id)) return false;
+            if (count == ids.length) grow();
+            ids[count] = id;
+            durations[count] = durationMs;
+            names[count] = name;
+            artists[count] = artist;
+            removed[count] = false;
+            rows.put(id, count);
+            increment(count + 1, 1);
+            count++;
+            live++;
+            return true;
+        }
+
+        long idAt(int index) {
+            return ids[find(index)];
+        }
+
+        /**
+         * 删除第 index 个未删除的行，返回其 songId
+         */
+        long remove(int index) {
+            int row = find(index);
+            removed[row] = true;
+            rows.remove(ids[row]);
+            increment(row + 1, -1);
+            live--;
+            return ids[row];
+        }
+
+        void clear() {
+            Arrays.fill(tree, 0);
+            Arrays.fill(names, 0, count, null);
+            Arrays.fill(artists, 0, count, null);
+            rows.clear();
+            count = 0;
+            live = 0;
+        }
+
+        void copyTo(SongTable table) {
+            table.ensureCapacity(live);
+            for (int row = 0; row < count; row++) {
+                if (!removed[row]) {
+                    table.add(ids[row], names[row], artists[row], durations[row]);
+                }
+            }
+        }
+
+        private void grow() {
+            int cap = ids.length * 2;
+            ids = Arrays.copyOf(ids, cap);
+            durations = Arrays.copyOf(durations, cap);
+            names = Arrays.copyOf(names, cap);
+            artists = Arrays.copyOf(artists, cap);
+            removed = Arrays.copyOf(removed, cap);
+
+            // 容量变了，树状数组重新建立（O(n)）
+            tree = new int[cap + 1];
+            for (int i = 1; i <= count; i++) {
+                if (!removed[i - 1]) tree[i]++;
+                int parent = i + (i & -i);
+                if (parent <= cap) tree[parent] += tree[i];
+            }
+        }
+
+        private void increment(int i, int delta) {
+            for (; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        /**
+         * 第 index 个（从 0 开始）未删除行的位置
+         */
+        private int find(int index) {
+            int pos = 0;
+            int remaining = index + 1;
+            for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+                int next = pos + step;
+                if (next < tree.length && tree[next] < remaining) {
+                    pos = next;
+                    remaining -= tree[next];
+                }
+            }
+            return pos;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package org.selfabandonment.ncmplayer.client.audio;
+
+import org.selfabandonment.ncmplayer.util.LongIntHashMap;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 随机播放顺序
+ *
+ * 开启随机时用 Fisher–Yates 洗牌生成一次排列，游标之前是已播放的历史，之后是接下来的顺序：
+ * 一轮内每首只播放一次，“上一首”沿历史返回。
+ * 添加的歌曲插入到未播放部分的随机位置；删除只留下空位，空位过多时整体压缩，
+ * 增删均摊 O(1)，不需要重新洗牌。除随机插入位置外所有操作都是确定的，
+ * {@link PlaylistStore} 据此按日志重放出相同的顺序。只在 {@link Playlist} 的写锁内使用。
+ *
+ * @author SelfAbandonment
+ */
+final class ShuffleOrder {
+
+    /** 空位（已删除），也作为“没有下一首/上一首”的返回值 */
+    static final long NONE = Long.MIN_VALUE;
+
+    /** 空位数超过该值且多于有效项时压缩 */
+    private static final int COMPACT_THRESHOLD = 32;
+
+    private long[] order;
+    private int length;
+    private int live;
+    private int cursor = -1;
+
+    // songId -> 在排列中的位置
+    private final LongIntHashMap positions;
+
+    /**
+     * 为当前列表生成新的排列
+     *
+     * @param songs      歌曲表
+     * @param currentRow 当前歌曲的行号，排在最前并作为游标位置；-1 表示没有
+     */
+    ShuffleOrder(SongTable songs, int currentRow) {
+        int n = songs.size();
+        order = new long[Math.max(16, n)];
+        positions = new LongIntHashMap(n);
+
+        if (currentRow >= 0) {
+            append(songs.idAt(currentRow));
+        }
+        int start = length;
+        for (int row = 0; row < n; row++) {
+            if (row != currentRow) append(songs.idAt(row));
+        }
+
+        Random random = ThreadLocalRandom.current();
+        for (int i = length - 1; i > start; i--) {
+            swap(i, start + random.nextInt(i - start + 1));
+        }
+        cursor = currentRow >= 0 ? 0 : -1;
+    }
+
+    /**
+     * 从保存的原始状态恢复（含空位）
+     */
+    ShuffleOrder(long[] order, int length, int cursor) {
+        this.order = order;
+        this.length = length;
+        this.positions = new LongIntHashMap(length);
+        for (int i = 0; i < length; i++) {
+            if (order[i] != NONE) {
+                positions.put(order[i], i);
+                live++;
+            }
+        }
+        this.cursor = Math.max(-1, Math.min(cursor, length - 1));
+    }
+
+    int cursor() {
+        return cursor;
+    }
+
+    /**
+     * 原始状态的副本（含空位），用于保存
+     */
+    long[] copyOrder() {
+        return Arrays.copyOf(order, length);
+    }
+
+    /**
+     * 前进到下一首
+     *
+     * @return songId，本轮已播完时返回 {@link #NONE}（游标不动）
+     */
+    long next() {
+        int i = nextLive(cursor);
+        if (i < 0) return NONE;
+        cursor = i;
+        return order[i];
+    }
+
+    /**
+     * 沿历史后退一首
+     *
+     * @return songId，没有历史时返回 {@link #NONE}（游标不动）
+     */
+    long previous() {
+        int i = cursor - 1;
+        while (i >= 0 && order[i] == NONE) i--;
+        if (i < 0) return NONE;
+        cursor = i;
+        return order[i];
+    }
+
+    boolean hasNext() {
+        return nextLive(cursor) >= 0;
+    }
+
+    /**
+     * 接下来的最多 count 首（不移动游标）
+     */
+    int peek(long[] out, int count) {
+        int n = 0;
+        int i = cursor;
+        while (n < count && (i = nextLive(i)) >= 0) {
+            out[n++] = order[i];
+        }
+        return n;
+    }
+
+    /**
+     * 把指定歌曲设为当前播放（从列表中直接点播时）
+     *
+     * 未播放的歌曲移到游标后一位；已播放的歌曲从历史中移出，重新放到游标后一位。
+     */
+    void select(long songId) {
+        int pos = positions.get(songId);
+        if (pos == LongIntHashMap.MISSING || pos == cursor) return;
+
+        if (pos > cursor) {
+            swap(pos, cursor + 1);
+        } else {
+            clear(pos);
+            append(songId);
+            swap(length - 1, cursor + 1);
+        }
+        cursor++;
+        maybeCompact();
+    }
+
+    /**
+     * 新歌曲插入到未播放部分的随机位置
+     *
+     * @return 插入的位置（供日志重放），已存在时返回 -1
+     */
+    int add(long songId) {
+        if (positions.containsKey(songId)) return -1;
+        int from = cursor + 1;
+        int pos = from + ThreadLocalRandom.current().nextInt(length + 1 - from);
+        insert(songId, pos);
+        return pos;
+    }
+
+    /**
+     * 追加到末尾后与 pos 交换；pos 不在未播放部分时取末尾
+     */
+    void insert(long songId, int pos) {
+        if (positions.containsKey(songId)) return;
+        append(songId);
+        swap(length - 1, pos > cursor && pos < length ? pos : length - 1);
+    }
+
+    void remove(long songId) {
+        int pos = positions.get(songId);
+        if (pos == LongIntHashMap.MISSING) return;
+        clear(pos);
+        maybeCompact();
+    }
+
+    // ==================== 内部 ====================
+
+    private int nextLive(int from) {
+        int i = from + 1;
+        while (i < length && order[i] == NONE) i++;
+        return i < length ? i : -1;
+    }
+
+    private void append(long songId) {
+        if (length == order.length) {
+            order = Arrays.copyOf(order, Math.max(16, length * 2));
+        }
+        order[length] = songId;
+        positions.put(songId, length);
+        length++;
+        live++;
+    }
+
+    private void clear(int pos) {
+        positions.remove(order[pos]);
+        order[pos] = NONE;
+        live--;
+    }
+
+    private void swap(int i, int j) {
+        if (i == j) return;
+        long a = order[i];
+        long b = order[j];
+        order[i] = b;
+        order[j] = a;
+        if (b != NONE) positions.put(b, i);
+        if (a != NONE) positions.put(a, j);
+    }
+
+    /**
+     * 去掉空位；游标落在空位上时移到它前面最近的有效项
+     */
+    private void maybeCompact() {
+        int holes = length - live;
+        if (holes <= COMPACT_THRESHOLD || holes <= live) return;
+
+        int w = 0;
+        int newCursor = -1;
+        for (int i = 0; i < length; i++) {
+            long id = order[i];
+            if (id != NONE) {
+                order[w] = id;
+                positions.put(id, w);
+                w++;
+            }
+            if (i == cursor) newCursor = w - 1;
+        }
+        Arrays.fill(order, w, length, NONE);
+        length = w;
+        cursor = newCursor;
+    }
+}
@@ -0,0 +1,212 @@
+package org.selfabandonment.ncmplayer.client.audio;
+
+import org.selfabandonment.ncmplayer.ncm.NcmApiClient;
+import org.selfabandonment.ncmplayer.util.LongIntHashMap;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按列存储的歌曲表
+ *
+ * 歌曲 ID、时长、歌名引用、歌手引用各占一个数组，歌名和歌手字符串放在去重的字符串池里；
+ * songId -> 行号用 {@link LongIntHashMap} 索引，查找和判重为 O(1)，追加均摊 O(1)。
+ * 删除保持顺序：后面的行前移并更新它们的索引。
+ * 字符串池只增不减，{@link #clear()} 时一起清空。
+ *
+ * 已写入的行从不原地修改：追加只写在末尾之后，删除和清空换用新数组，
+ * 所以 {@link #view()} 无需复制即可得到不可变的快照。
+ * 修改方法非线程安全，由 {@link Playlist} 在写锁内调用；快照可在任意线程读取。
+ *
+ * @author SelfAbandonment
+ */
+final class SongTable {
+
+    private long[] ids;
+    private int[] durations;
+    private int[] nameRefs;
+    private int[] artistRefs;
+    private int size;
+
+    private final LongIntHashMap index;
+    private final StringPool strings = new StringPool();
+
+    SongTable(int initialCapacity) {
+        int cap = Math.max(16, initialCapacity);
+        ids = new long[cap];
+        durations = new int[cap];
+        nameRefs = new int[cap];
+        artistRefs = new int[cap];
+        index = new LongIntHashMap(cap);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 当前内容的不可变快照（与表共享数组，O(1)）
+     */
+    View view() {
+        return new View(ids, durations, nameRefs, artistRefs, strings.values, size);
+    }
+
+    /**
+     * 行号，不存在时返回 -1
+     */
+    int indexOf(long songId) {
+        int row = index.get(songId);
+        return row == LongIntHashMap.MISSING ? -1 : row;
+    }
+
+    boolean contains(long songId) {
+        return index.containsKey(songId);
+    }
+
+    long idAt(int row) {
+        return ids[row];
+    }
+
+    long durationAt(int row) {
+        return durations[row];
+    }
+
+    String nameAt(int row) {
+        return strings.get(nameRefs[row]);
+    }
+
+    String artistAt(int row) {
+        return strings.get(artistRefs[row]);
+    }
+
+    /**
+     * 组装为 SearchSong（每次调用新建对象）
+     */
+    NcmApiClient.SearchSong get(int row) {
+        return new NcmApiClient.SearchSong(ids[row], nameAt(row), artistAt(row), durations[row]);
+    }
+
+    /**
+     * 追加到末尾，已存在时不添加
+     *
+     * @return 是否添加
+     */
+    boolean add(NcmApiClient.SearchSong song) {
+        return add(song.id(), song.name(), song.artist(), song.durationMs());
+    }
+
+    boolean add(long id, String name, String artist, long durationMs) {
+        if (index.containsKey(id)) return false;
+        ensureCapacity(size + 1);
+        ids[size] = id;
+        durations[size] = (int) Math.min(Integer.MAX_VALUE, Math.max(0, durationMs));
+        nameRefs[size] = strings.intern(name);
+        artistRefs[size] = strings.intern(artist);
+        index.put(id, size);
+        size++;
+        return true;
+    }
+
+    /**
+     * 删除一行，后面的行前移（复制到新数组，已发布的快照不受影响）
+     */
+    void remove(int row) {
+        index.remove(ids[row]);
+        int tail = size - row - 1;
+
+        long[] newIds = new long[ids.length];
+        int[] newDurations = new int[ids.length];
+        int[] newNameRefs = new int[ids.length];
+        int[] newArtistRefs = new int[ids.length];
+        System.arraycopy(ids, 0, newIds, 0, row);
+        System.arraycopy(durations, 0, newDurations, 0, row);
+        System.arraycopy(nameRefs, 0, newNameRefs, 0, row);
+        System.arraycopy(artistRefs, 0, newArtistRefs, 0, row);
+        System.arraycopy(ids, row + 1, newIds, row, tail);
+        System.arraycopy(durations, row + 1, newDurations, row, tail);
+        System.arraycopy(nameRefs, row + 1, newNameRefs, row, tail);
+        System.arraycopy(artistRefs, row + 1, newArtistRefs, row, tail);
+        ids = newIds;
+        durations = newDurations;
+        nameRefs = newNameRefs;
+        artistRefs = newArtistRefs;
+
+        for (int i = row; i < size - 1; i++) {
+            index.put(ids[i], i);
+        }
+        size--;
+    }
+
+    void clear() {
+        int cap = 16;
+        ids = new long[cap];
+        durations = new int[cap];
+        nameRefs = new int[cap];
+        artistRefs = new int[cap];
+        size = 0;
+        index.clear();
+        strings.clear();
+    }
+
+    void ensureCapacity(int needed) {
+        if (needed <= ids.length) return;
+        int cap = Math.max(needed, ids.length * 2);
+        ids = Arrays.copyOf(ids, cap);
+        durations = Arrays.copyOf(durations, cap);
+        nameRefs = Arrays.copyOf(nameRefs, cap);
+        artistRefs = Arrays.copyOf(artistRefs, cap);
+    }
+
+    /**
+     * 不可变快照，只读取 [0, size) 范围内的行
+     */
+    record View(long[] ids, int[] durations, int[] nameRefs, int[] artistRefs, String[] strings, int size) {
+
+        static final View EMPTY = new View(new long[0], new int[0], new int[0], new int[0], new String[0], 0);
+
+        long idAt(int row) {
+            return ids[row];
+        }
+
+        NcmApiClient.SearchSong get(int row) {
+            return new NcmApiClient.SearchSong(ids[row], strings[nameRefs[row]], strings[artistRefs[row]], durations[row]);
+        }
+    }
+
+    /**
+     * 去重字符串池：相同内容只保存一份，用 int 引用
+     */
+    private static final class StringPool {
+        private String[] values = new String[64];
+        private final Map<String, Integer> refs = new HashMap<>();
+        private int count;
+
+        int intern(String s) {
+            String value = s == null ? "" : s;
+            Integer ref = refs.get(value);
+            if (ref != null) return ref;
+
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count] = value;
+            refs.put(value, count);
+            return count++;
+        }
+
+        String get(int ref) {
+            return values[ref];
+        }
+
+        void clear() {
+            values = new String[64];
+            refs.clear();
+            count = 0;
+        }
+    }
+}
@@ -1,13 +1,15 @@
 package org.selfabandonment.ncmplayer.client.audio;
 
 import javazoom.jl.decoder.*;
-import org.lwjgl.openal.AL10;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -18,15 +20,18 @@ import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 流式 MP3 播放器
  *
- * 使用 JLayer 解码，OpenAL 播放
+ * 使用 JLayer 解码，通过 {@link AudioSink} 输出（游戏内为 OpenAL）
  * - 解码线程: HTTP 流 -> JLayer -> PCM -> pcmQueue
- * - 客户端 tick 线程: OpenAL 源/缓冲区队列管理
+ * - 客户端 tick 线程: 输出缓冲区队列管理
  *
  * @author SelfAbandonment
  */
@@ -35,12 +40,12 @@ public final class StreamingMp3Player implements AutoCloseable {
 
     public enum State { IDLE, BUFFERING, PLAYING, PAUSED, STOPPING, STOPPED, ERROR }
 
-    private static final int NUM_AL_BUFFERS = 6;
     private static final int TARGET_CHUNK_MS = 150;
     private static final int PREBUFFER_COUNT = 3;
     private static final int PCM_QUEUE_CAPACITY = 24;
 
     private final HttpClient http;
+    private final AudioSink sink;
     private final BlockingQueue<PcmChunk> pcmQueue = new ArrayBlockingQueue<>(PCM_QUEUE_CAPACITY);
     private final AtomicReference<State> state = new AtomicReference<>(State.IDLE);
     private final AtomicBoolean stopRequested = new AtomicBoolean(false);
@@ -48,14 +53,24 @@ public final class StreamingMp3Player implements AutoCloseable {
     private volatile float volume = 1.0f;
     private Thread decodeWorker;
     private volatile URI currentUrl;
+    private volatile long trackId = -1;
     private volatile String lastError = "";
 
+    // 解码后 PCM 缓存（单曲循环 / 向后跳转）
+    private final PcmCache pcmCache = new PcmCache();
+    private volatile long pcmCacheBudgetBytes = 0;
+
     // 进度追踪
     private volatile long totalDecodedMs = 0;      // 已解码的总时长（毫秒）
     private volatile long playedMs = 0;            // 已播放的时长（毫秒）
     private volatile long estimatedDurationMs = 0; // 预估总时长（毫秒）
     private volatile long knownDurationMs = 0;     // 已知总时长（从 API 获取，毫秒）
-    private long lastTickTime = 0;
+    private volatile long lastTickTime = 0;
+    private volatile boolean advancing = false;    // 输出正在播放，进度随时间推进
+    private volatile long outputLatencyMs = 0;     // 输出设备延迟（毫秒），每个 tick 从输出查询
+
+    /** 渲染时在两次 tick 之间外推进度的上限（毫秒） */
+    private static final long MAX_EXTRAPOLATE_MS = 250;
 
     // Seek 支持
     private volatile long contentLength = 0;       // 文件总大小（字节）
@@ -63,15 +78,32 @@ public final class StreamingMp3Player implements AutoCloseable {
     private volatile boolean seekRequested = false;
     private volatile long seekTargetMs = 0;
 
-    // OpenAL (tick 线程)
-    private int source = 0;
-    private int[] buffers = null;
-    private final Deque<Integer> freeBuffers = new ArrayDeque<>();
-    private final Deque<Integer> queuedBuffers = new ArrayDeque<>();
+    // 播放统计（首次出声、卡顿、跳转延迟、下载字节）
+    private volatile long playStartNanos = 0;
+    private volatile long firstAudioMs = -1;
+    private volatile int rebufferCount = 0;
+    private volatile long rebufferMs = 0;
+    private long stallStartNanos = 0;
+    private volatile long seekStartNanos = 0;
+    private volatile int seekCount = 0;
+    private volatile long seekLatencyTotalMs = 0;
+    private volatile long seekLatencyMaxMs = 0;
+    private volatile long audibleMs = 0;
+    private final AtomicLong downloadedBytes = new AtomicLong();
+
+    // 输出 (tick 线程)
     private boolean playbackStarted = false;
     private int prebuffered = 0;
 
     public StreamingMp3Player() {
+        this(new OpenAlSink());
+    }
+
+    /**
+     * @param sink 音频输出，无 OpenAL 环境可使用 {@link NullSink} 或 {@link WavFileSink}
+     */
+    public StreamingMp3Player(AudioSink sink) {
+        this.sink = Objects.requireNonNull(sink, "sink");
         this.http = HttpClient.newBuilder()
                 .followRedirects(HttpClient.Redirect.NORMAL)
                 .connectTimeout(Duration.ofSeconds(10))
@@ -87,6 +119,24 @@ public final class StreamingMp3Player implements AutoCloseable {
      */
     public long getPlayedMs() { return playedMs; }
 
+    /**
+     * 获取平滑的播放位置（毫秒），用于渲染
+     * 进度只在 tick 时更新，这里按距上次 tick 经过的时间外推（最多 {@link #MAX_EXTRAPOLATE_MS}），
+     * 暂停、缓冲时与 {@link #getPlayedMs()} 相同
+     */
+    public long getPositionMs() {
+        long played = playedMs;
+        if (!advancing) return played;
+        long ahead = Math.min(MAX_EXTRAPOLATE_MS, Math.max(0, System.currentTimeMillis() - lastTickTime));
+        long duration = getDurationMs();
+        return duration > 0 ? Math.min(duration, played + ahead) : played + ahead;
+    }
+
+    /**
+     * 输出设备延迟（毫秒），即播放位置领先于实际听到声音的时间
+     */
+    public long getOutputLatencyMs() { return outputLatencyMs; }
+
     /**
      * 设置已知的总时长（从 API 获取）
      * 调用此方法后，进度条将使用精确时长
@@ -151,32 +201,101 @@ public final class StreamingMp3Player implements AutoCloseable {
     }
 
     /**
-     * 开始播放
+     * 设置 PCM 缓存字节预算，0 表示禁用
+     * 对下一次 {@link #play(URI, long)} 生效
+     */
+    public void setPcmCacheBudget(long bytes) {
+        this.pcmCacheBudgetBytes = Math.max(0, bytes);
+    }
+
+    /**
+     * 开始播放（不缓存 PCM）
      */
     public synchronized void play(URI mp3Url) {
+        play(mp3Url, -1);
+    }
+
+    /**
+     * 开始播放
+     *
+     * @param mp3Url  音频地址
+     * @param trackId 曲目 ID，用于 PCM 缓存，小于 0 表示不缓存
+     */
+    public synchronized void play(URI mp3Url, long trackId) {
+        play(mp3Url, trackId, null, 0);
+    }
+
+    /**
+     * 开始播放，先解码已预取的文件开头，剩余部分并行从网络读取
+     *
+     * @param mp3Url        音频地址
+     * @param trackId       曲目 ID，用于 PCM 缓存，小于 0 表示不缓存
+     * @param prefix        已下载的文件开头字节，可为 null
+     * @param contentLength 文件总大小（预取时得到），未知时为 0
+     */
+    public synchronized void play(URI mp3Url, long trackId, byte[] prefix, long contentLength) {
         Objects.requireNonNull(mp3Url, "mp3Url");
         stop();
 
         currentUrl = mp3Url;
+        this.trackId = trackId;
+        pcmCache.reset(trackId, pcmCacheBudgetBytes);
+        resetForStart();
+
+        // 重置 seek 相关
+        this.contentLength = contentLength;
+        bitRate = 0;
+        seekRequested = false;
+        seekTargetMs = 0;
+
+        if (prefix != null && prefix.length > 0) {
+            startWorker(() -> decodeLoopWithPrefix(mp3Url, prefix), "ncm-mp3-decode");
+        } else {
+            startWorker(() -> decodeLoop(mp3Url), "ncm-mp3-decode");
+        }
+    }
+
+    /**
+     * 从 PCM 缓存重新播放当前曲目（无网络、无解码）
+     *
+     * @param trackId 曲目 ID
+     * @return 缓存不完整或曲目不匹配时返回 false
+     */
+    public synchronized boolean replay(long trackId) {
+        if (!pcmCache.isComplete(trackId)) {
+            return false;
+        }
+        stop();
+
+        long knownMs = knownDurationMs;
+        resetForStart();
+        knownDurationMs = knownMs;
+        estimatedDurationMs = knownMs > 0 ? knownMs : pcmCache.cachedUntilMs();
+        totalDecodedMs = pcmCache.cachedUntilMs();
+
+        LOGGER.debug("Replaying trackId={} from PCM cache ({} bytes)", trackId, pcmCache.usedBytes());
+        startWorker(() -> replayLoop(0), "ncm-pcm-replay");
+        return true;
+    }
+
+    private void resetForStart() {
         lastError = "";
         state.set(State.BUFFERING);
         stopRequested.set(false);
         pcmQueue.clear();
+        resetStats();
 
         // 重置进度
         totalDecodedMs = 0;
         playedMs = 0;
+        advancing = false;
         estimatedDurationMs = 0;
         knownDurationMs = 0;
         lastTickTime = System.currentTimeMillis();
+    }
 
-        // 重置 seek 相关
-        contentLength = 0;
-        bitRate = 0;
-        seekRequested = false;
-        seekTargetMs = 0;
-
-        decodeWorker = new Thread(() -> decodeLoop(mp3Url), "ncm-mp3-decode");
+    private void startWorker(Runnable task, String name) {
+        decodeWorker = new Thread(task, name);
         decodeWorker.setDaemon(true);
         decodeWorker.start();
     }
@@ -188,6 +307,7 @@ public final class StreamingMp3Player implements AutoCloseable {
         State s = state.get();
         if (s == State.PLAYING || s == State.BUFFERING) {
             state.set(State.PAUSED);
+            advancing = false;
         }
     }
 
@@ -213,6 +333,14 @@ public final class StreamingMp3Player implements AutoCloseable {
         // 限制范围
         targetMs = Math.max(0, Math.min(targetMs, duration));
 
+        // 目标位置已在 PCM 缓存中，直接回放
+        if (pcmCache.covers(trackId, targetMs)) {
+            haltWorkerForSeek(targetMs);
+            final long fromMs = targetMs;
+            startWorker(() -> replayLoop(fromMs), "ncm-pcm-replay-seek");
+            return;
+        }
+
         // 如果没有足够信息进行跳转，只更新显示时间
         if (contentLength <= 0 || bitRate <= 0) {
             // 无法精确跳转，但可以尝试基于已知时长估算
@@ -228,6 +356,21 @@ public final class StreamingMp3Player implements AutoCloseable {
         seekTargetMs = targetMs;
         seekRequested = true;
 
+        haltWorkerForSeek(targetMs);
+
+        final long finalByteOffset = byteOffsetFor(targetMs);
+        startWorker(() -> decodeLoopWithOffset(currentUrl, finalByteOffset), "ncm-mp3-decode-seek");
+
+        seekRequested = false;
+    }
+
+    /**
+     * 停止当前解码线程并把进度移动到目标位置
+     */
+    private void haltWorkerForSeek(long targetMs) {
+        // 跳转后解码不再从头连续，停止记录 PCM 缓存（保留已有前缀）
+        pcmCache.stopRecording();
+
         // 停止当前播放
         stopRequested.set(true);
 
@@ -244,21 +387,20 @@ public final class StreamingMp3Player implements AutoCloseable {
         }
 
         // 重新开始播放，从目标位置
+        seekStartNanos = System.nanoTime();
+        stallStartNanos = 0;
         stopRequested.set(false);
         state.set(State.BUFFERING);
         playedMs = targetMs;
         lastTickTime = System.currentTimeMillis();
+    }
 
-        // 计算字节偏移
+    /**
+     * 按比特率估算时间位置对应的字节偏移
+     */
+    private long byteOffsetFor(long targetMs) {
         long byteOffset = (targetMs * bitRate) / (8 * 1000);
-        byteOffset = Math.max(0, Math.min(byteOffset, contentLength - 1));
-
-        final long finalByteOffset = byteOffset;
-        decodeWorker = new Thread(() -> decodeLoopWithOffset(currentUrl, finalByteOffset), "ncm-mp3-decode-seek");
-        decodeWorker.setDaemon(true);
-        decodeWorker.start();
-
-        seekRequested = false;
+        return Math.max(0, Math.min(byteOffset, contentLength - 1));
     }
 
     /**
@@ -281,6 +423,70 @@ public final class StreamingMp3Player implements AutoCloseable {
         return currentUrl != null && getDurationMs() > 0 && (contentLength > 0 || knownDurationMs > 0);
     }
 
+    /**
+     * 播放统计快照
+     *
+     * @param timeToFirstAudioMs  从 play 到开始出声的时间，尚未出声时为 -1
+     * @param rebufferCount       开始播放后因数据不足中断的次数
+     * @param rebufferMs          中断的总时长
+     * @param seekCount           跳转次数
+     * @param seekLatencyAvgMs    跳转到新位置数据入队的平均延迟
+     * @param seekLatencyMaxMs    跳转延迟最大值
+     * @param downloadedBytes     从网络读取的字节数
+     * @param audibleMs           实际出声的时长（不含跳过的部分）
+     */
+    public record PlaybackStats(long timeToFirstAudioMs, int rebufferCount, long rebufferMs,
+                                int seekCount, long seekLatencyAvgMs, long seekLatencyMaxMs,
+                                long downloadedBytes, long audibleMs) {
+
+        /**
+         * 卡顿占比：卡顿时长 / (出声时长 + 卡顿时长)
+         */
+        public double rebufferRatio() {
+            long total = audibleMs + rebufferMs;
+            return total <= 0 ? 0 : (double) rebufferMs / total;
+        }
+
+        /**
+         * 未被播放的下载字节（按比特率估算出声部分）
+         */
+        public long wastedBytes(int bitRate) {
+            long useful = audibleMs * bitRate / 8000;
+            return Math.max(0, downloadedBytes - useful);
+        }
+    }
+
+    /**
+     * 获取当前曲目的播放统计
+     */
+    public PlaybackStats getStats() {
+        int seeks = seekCount;
+        return new PlaybackStats(firstAudioMs, rebufferCount, rebufferMs,
+                seeks, seeks == 0 ? 0 : seekLatencyTotalMs / seeks, seekLatencyMaxMs,
+                downloadedBytes.get(), audibleMs);
+    }
+
+    /**
+     * 当前曲目的比特率（bps），未知时为 0
+     */
+    public int getBitRate() {
+        return bitRate;
+    }
+
+    private void resetStats() {
+        playStartNanos = System.nanoTime();
+        firstAudioMs = -1;
+        rebufferCount = 0;
+        rebufferMs = 0;
+        stallStartNanos = 0;
+        seekStartNanos = 0;
+        seekCount = 0;
+        seekLatencyTotalMs = 0;
+        seekLatencyMaxMs = 0;
+        audibleMs = 0;
+        downloadedBytes.set(0);
+    }
+
     /**
      * 停止播放
      */
@@ -288,9 +494,9 @@ public final class StreamingMp3Player implements AutoCloseable {
         stopRequested.set(true);
         if (state.get() != State.ERROR) state.set(State.STOPPING);
 
-        // 先清理 OpenAL 资源，防止残留音频
-        if (source != 0) {
-            cleanupAl();
+        // 先释放输出资源，防止残留音频
+        if (sink.isOpen()) {
+            sink.close();
         }
 
         // 清空 PCM 队列
@@ -314,19 +520,20 @@ public final class StreamingMp3Player implements AutoCloseable {
      * 每帧调用（客户端 tick）
      */
     public void tick() {
+        advancing = false;
         if ((state.get() == State.BUFFERING || state.get() == State.PLAYING ||
-             state.get() == State.PAUSED || state.get() == State.STOPPING) && source == 0) {
-            tryInitAl();
+             state.get() == State.PAUSED || state.get() == State.STOPPING) && !sink.isOpen()) {
+            tryOpenSink();
         }
 
-        if (source == 0) {
+        if (!sink.isOpen()) {
             return;
         }
 
-        AL10.alSourcef(source, AL10.AL_GAIN, volume);
+        sink.setGain(volume);
 
         if (stopRequested.get() || state.get() == State.STOPPING) {
-            cleanupAl();
+            sink.close();
             pcmQueue.clear();
             playbackStarted = false;
             prebuffered = 0;
@@ -335,22 +542,22 @@ public final class StreamingMp3Player implements AutoCloseable {
         }
 
         if (state.get() == State.PAUSED) {
-            AL10.alSourcePause(source);
+            sink.pause();
             reclaimProcessedBuffers();
             return;
         } else {
-            int alState = AL10.alGetSourcei(source, AL10.AL_SOURCE_STATE);
-            if (playbackStarted && alState != AL10.AL_PLAYING &&
-                AL10.alGetSourcei(source, AL10.AL_BUFFERS_QUEUED) > 0) {
-                AL10.alSourcePlay(source);
+            AudioSink.SourceState sinkState = sink.state();
+            if (playbackStarted && sinkState != AudioSink.SourceState.PLAYING && sink.queuedBuffers() > 0) {
+                sink.play();
             }
 
             // 更新播放进度
-            if (playbackStarted && alState == AL10.AL_PLAYING) {
+            if (playbackStarted && sinkState == AudioSink.SourceState.PLAYING) {
                 long now = System.currentTimeMillis();
                 long delta = now - lastTickTime;
                 if (delta > 0 && delta < 1000) {
                     playedMs += delta;
+                    audibleMs += delta;
                     // 限制不超过已知时长
                     long duration = getDurationMs();
                     if (duration > 0 && playedMs > duration) {
@@ -358,6 +565,8 @@ public final class StreamingMp3Player implements AutoCloseable {
                     }
                 }
                 lastTickTime = now;
+                advancing = true;
+                outputLatencyMs = sink.outputLatencyMs();
             } else {
                 lastTickTime = System.currentTimeMillis();
             }
@@ -365,40 +574,39 @@ public final class StreamingMp3Player implements AutoCloseable {
 
         reclaimProcessedBuffers();
 
-        int safety = NUM_AL_BUFFERS;
-        while (safety-- > 0 && !freeBuffers.isEmpty()) {
+        int safety = AudioSink.DEFAULT_BUFFER_COUNT;
+        while (safety-- > 0 && sink.freeBuffers() > 0) {
             PcmChunk chunk = pcmQueue.poll();
             if (chunk == null) break;
 
-            int buf = freeBuffers.removeFirst();
-            int alFormat = toAlFormat(chunk.channels);
-
-            AL10.alBufferData(buf, alFormat, chunk.pcm, chunk.sampleRate);
-            AL10.alSourceQueueBuffers(source, buf);
-
-            queuedBuffers.addLast(buf);
+            sink.queue(chunk.pcm, chunk.sampleRate, chunk.channels);
             prebuffered++;
+            recordSeekLatency();
 
             if (!playbackStarted && prebuffered >= PREBUFFER_COUNT) {
-                AL10.alSourcePlay(source);
+                sink.play();
                 playbackStarted = true;
                 state.set(State.PLAYING);
+                if (firstAudioMs < 0) {
+                    firstAudioMs = (System.nanoTime() - playStartNanos) / 1_000_000L;
+                }
             }
         }
 
         boolean decodeDead = decodeWorker == null || !decodeWorker.isAlive();
-        boolean nothingQueued = (AL10.alGetSourcei(source, AL10.AL_BUFFERS_QUEUED) == 0);
+        boolean nothingQueued = sink.queuedBuffers() == 0;
         boolean nothingIncoming = pcmQueue.isEmpty();
+        trackStall(playbackStarted && nothingQueued && !decodeDead);
 
         // 检查播放结束条件
         if (decodeDead && playbackStarted) {
-            int alState = AL10.alGetSourcei(source, AL10.AL_SOURCE_STATE);
-            int buffersQueued = AL10.alGetSourcei(source, AL10.AL_BUFFERS_QUEUED);
-            int buffersProcessed = AL10.alGetSourcei(source, AL10.AL_BUFFERS_PROCESSED);
+            AudioSink.SourceState sinkState = sink.state();
+            int buffersQueued = sink.queuedBuffers();
+            int buffersProcessed = sink.processedBuffers();
 
-            // OpenAL 已停止（播放完所有缓冲区）
-            if (alState == AL10.AL_STOPPED) {
-                LOGGER.info("Playback finished: OpenAL stopped");
+            // 输出已停止（播放完所有缓冲区）
+            if (sinkState == AudioSink.SourceState.STOPPED) {
+                LOGGER.info("Playback finished: output stopped");
                 finishPlayback();
                 return;
             }
@@ -429,30 +637,43 @@ public final class StreamingMp3Player implements AutoCloseable {
         }
     }
 
+    private void recordSeekLatency() {
+        long start = seekStartNanos;
+        if (start == 0) return;
+        seekStartNanos = 0;
+        long ms = (System.nanoTime() - start) / 1_000_000L;
+        seekCount++;
+        seekLatencyTotalMs += ms;
+        seekLatencyMaxMs = Math.max(seekLatencyMaxMs, ms);
+    }
+
+    /**
+     * 记录卡顿：已开始播放但没有可播放的缓冲区，且解码仍在进行
+     */
+    private void trackStall(boolean starving) {
+        if (starving && stallStartNanos == 0) {
+            stallStartNanos = System.nanoTime();
+            rebufferCount++;
+        } else if (!starving && stallStartNanos != 0) {
+            rebufferMs += (System.nanoTime() - stallStartNanos) / 1_000_000L;
+            stallStartNanos = 0;
+        }
+    }
+
     private void finishPlayback() {
         playedMs = getDurationMs();
-        cleanupAl();
+        sink.close();
         playbackStarted = false;
         prebuffered = 0;
         if (state.get() != State.ERROR) state.set(State.STOPPED);
     }
 
-    private String alStateToString(int alState) {
-        return switch (alState) {
-            case AL10.AL_INITIAL -> "INITIAL";
-            case AL10.AL_PLAYING -> "PLAYING";
-            case AL10.AL_PAUSED -> "PAUSED";
-            case AL10.AL_STOPPED -> "STOPPED";
-            default -> "UNKNOWN(" + alState + ")";
-        };
-    }
-
     @Override
     public void close() {
         stopRequested.set(true);
         stop();
-        if (source != 0) {
-            try { cleanupAl(); } catch (Throwable ignored) {}
+        if (sink.isOpen()) {
+            try { sink.close(); } catch (Throwable ignored) {}
         }
     }
 
@@ -460,61 +681,135 @@ public final class StreamingMp3Player implements AutoCloseable {
         decodeLoopWithOffset(mp3Url, 0);
     }
 
-    private void decodeLoopWithOffset(URI mp3Url, long byteOffset) {
+    /**
+     * 从 PCM 缓存回放；缓存只是前缀时，之后接着从网络解码
+     */
+    private void replayLoop(long fromMs) {
         try {
-            HttpRequest.Builder reqBuilder = HttpRequest.newBuilder(mp3Url)
-                    .timeout(Duration.ofSeconds(30))
-                    .header("User-Agent", "Mozilla/5.0 (Minecraft NeoForge Mod)")
-                    .GET();
+            int index = pcmCache.indexAt(fromMs);
+            PcmChunk chunk;
+            while (!stopRequested.get() && (chunk = pcmCache.get(index++)) != null) {
+                while (!stopRequested.get() && !pcmQueue.offer(chunk)) {
+                    Thread.sleep(10);
+                }
+            }
 
-            // 如果有偏移，添加 Range 头
-            if (byteOffset > 0) {
-                reqBuilder.header("Range", "bytes=" + byteOffset + "-");
+            if (stopRequested.get() || pcmCache.isComplete(trackId)) {
+                return;
             }
 
-            HttpResponse<InputStream> resp = http.send(reqBuilder.build(), HttpResponse.BodyHandlers.ofInputStream());
+            URI url = currentUrl;
+            long resumeMs = pcmCache.cachedUntilMs();
+            if (url == null) {
+                return;
+            }
+            if (bitRate > 0 && contentLength > 0) {
+                decodeLoopWithOffset(url, byteOffsetFor(resumeMs));
+            } else {
+                // 无法估算字节偏移：从头请求，跳过已缓存的部分
+                decodeFromNetwork(url, 0, true, resumeMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopRequested.set(true);
+        }
+    }
+
+    private void decodeLoopWithOffset(URI mp3Url, long byteOffset) {
+        decodeFromNetwork(mp3Url, byteOffset, byteOffset > 0, 0);
+    }
+
+    /**
+     * 从网络解码到队列
+     *
+     * @param isSeeking 不从开头连续解码（不累加时长、不记录缓存）
+     * @param skipMs    开头跳过的时长（只读帧头，不解码）
+     */
+    private void decodeFromNetwork(URI mp3Url, long byteOffset, boolean isSeeking, long skipMs) {
+        try {
+            HttpResponse<InputStream> resp = http.send(rangeRequest(mp3Url, byteOffset), HttpResponse.BodyHandlers.ofInputStream());
             int code = resp.statusCode();
 
             // 200 OK 或 206 Partial Content 都是成功
             if (code != 200 && code != 206) {
+                resp.body().close();
                 throw new IOException("HTTP " + code + " for " + mp3Url);
             }
+            updateContentLength(resp, byteOffset);
 
-            // 获取文件大小
-            resp.headers().firstValueAsLong("Content-Length").ifPresent(len -> {
-                if (byteOffset == 0) {
-                    contentLength = len;
-                } else {
-                    // 206 响应的 Content-Length 是剩余部分的大小
-                    contentLength = byteOffset + len;
-                }
-            });
-
-            // 尝试从 Content-Range 获取总大小
-            resp.headers().firstValue("Content-Range").ifPresent(range -> {
-                // 格式: bytes 0-1234/5678 或 bytes 1000-5677/5678
-                int slashIdx = range.lastIndexOf('/');
-                if (slashIdx > 0) {
-                    try {
-                        long total = Long.parseLong(range.substring(slashIdx + 1));
-                        if (total > 0) {
-                            contentLength = total;
-                        }
-                    } catch (NumberFormatException ignored) {}
-                }
-            });
+            try (InputStream raw = new CountingInputStream(resp.body());
+                 BufferedInputStream in = new BufferedInputStream(raw, 64 * 1024)) {
+                decodeMp3ToQueue(in, isSeeking, skipMs);
+            }
+        } catch (Exception e) {
+            onDecodeFailure(e);
+        }
+    }
 
-            try (InputStream raw = resp.body();
+    /**
+     * 先解码预取的开头字节，同时请求剩余部分
+     */
+    private void decodeLoopWithPrefix(URI mp3Url, byte[] prefix) {
+        try {
+            long total = contentLength;
+            InputStream rest = total > 0 && prefix.length >= total
+                    ? InputStream.nullInputStream()
+                    : new RemainderStream(mp3Url, prefix.length);
+
+            try (InputStream raw = new SequenceInputStream(new ByteArrayInputStream(prefix), rest);
                  BufferedInputStream in = new BufferedInputStream(raw, 64 * 1024)) {
-                decodeMp3ToQueue(in, byteOffset > 0);
+                decodeMp3ToQueue(in, false);
             }
         } catch (Exception e) {
-            if (!stopRequested.get()) {
-                lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
-                state.set(State.ERROR);
+            onDecodeFailure(e);
+        }
+    }
+
+    private HttpRequest rangeRequest(URI mp3Url, long byteOffset) {
+        HttpRequest.Builder reqBuilder = HttpRequest.newBuilder(mp3Url)
+                .timeout(Duration.ofSeconds(30))
+                .header("User-Agent", "Mozilla/5.0 (Minecraft NeoForge Mod)")
+                .GET();
+
+        // 如果有偏移，添加 Range 头
+        if (byteOffset > 0) {
+            reqBuilder.header("Range", "bytes=" + byteOffset + "-");
+        }
+        return reqBuilder.build();
+    }
+
+    private void updateContentLength(HttpResponse<?> resp, long byteOffset) {
+        // 获取文件大小
+        resp.headers().firstValueAsLong("Content-Length").ifPresent(len -> {
+            if (byteOffset == 0) {
+                contentLength = len;
+            } else {
+                // 206 响应的 Content-Length 是剩余部分的大小
+                contentLength = byteOffset + len;
             }
-            stopRequested.set(true);
+        });
+
+        // 尝试从 Content-Range 获取总大小
+        resp.headers().firstValue("Content-Range").ifPresent(range -> {
+            // 格式: bytes 0-1234/5678 或 bytes 1000-5677/5678
+            int slashIdx = range.lastIndexOf('/');
+            if (slashIdx > 0) {
+                try {
+                    long total = Long.parseLong(range.substring(slashIdx + 1));
+                    if (total > 0) {
+                        contentLength = total;
+                    }
+                } catch (NumberFormatException ignored) {}
+            }
+        });
+    }
+
+    private void onDecodeFailure(Exception e) {
+        if (!stopRequested.get()) {
+            lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+            state.set(State.ERROR);
         }
+        stopRequested.set(true);
     }
 
     private void decodeMp3ToQueue(InputStream mp3Stream) throws Exception {
@@ -522,14 +817,27 @@ public final class StreamingMp3Player implements AutoCloseable {
     }
 
     private void decodeMp3ToQueue(InputStream mp3Stream, boolean isSeeking) throws Exception {
+        decodeMp3ToQueue(mp3Stream, isSeeking, 0);
+    }
+
+    private void decodeMp3ToQueue(InputStream mp3Stream, boolean isSeeking, long skipMs) throws Exception {
         Bitstream bitstream = new Bitstream(mp3Stream);
         Decoder decoder = new Decoder();
         boolean firstFrame = true;
+        boolean record = !isSeeking && pcmCache.isRecording(trackId);
+
+        if (skipMs > 0) {
+            skipFrames(bitstream, skipMs);
+        }
 
         while (!stopRequested.get()) {
             PcmChunk chunk = readPcmChunk(bitstream, decoder, TARGET_CHUNK_MS);
             if (chunk == null) break;
 
+            if (record) {
+                chunk = pcmCache.append(chunk);
+            }
+
             // 从第一帧获取比特率
             if (firstFrame && chunk.bitRate > 0) {
                 if (bitRate == 0) {
@@ -557,10 +865,26 @@ public final class StreamingMp3Player implements AutoCloseable {
         if (!isSeeking) {
             estimatedDurationMs = totalDecodedMs;
         }
+        if (record && !stopRequested.get()) {
+            pcmCache.markComplete();
+        }
 
         try { bitstream.close(); } catch (Throwable ignored) {}
     }
 
+    /**
+     * 跳过开头 skipMs 的帧
+     */
+    private void skipFrames(Bitstream bitstream, long skipMs) throws Exception {
+        float skipped = 0;
+        while (skipped < skipMs && !stopRequested.get()) {
+            Header header = bitstream.readFrame();
+            if (header == null) return;
+            skipped += header.ms_per_frame();
+            bitstream.closeFrame();
+        }
+    }
+
     private PcmChunk readPcmChunk(Bitstream bitstream, Decoder decoder, int targetMs) throws Exception {
         ByteBuffer out = null;
         int sampleRate = -1;
@@ -618,115 +942,135 @@ public final class StreamingMp3Player implements AutoCloseable {
         return new PcmChunk(out, sampleRate, channels, chunkDurationMs, frameBitRate);
     }
 
-    private void tryInitAl() {
+    private void tryOpenSink() {
         try {
-            cleanupAl();
-            source = AL10.alGenSources();
-
-            buffers = new int[NUM_AL_BUFFERS];
-            freeBuffers.clear();
-            queuedBuffers.clear();
-
-            for (int i = 0; i < NUM_AL_BUFFERS; i++) {
-                buffers[i] = AL10.alGenBuffers();
-                freeBuffers.addLast(buffers[i]);
-            }
-
-            AL10.alSourcef(source, AL10.AL_GAIN, volume);
+            sink.open();
             playbackStarted = false;
             prebuffered = 0;
         } catch (Throwable t) {
-            lastError = "OpenAL init failed: " + t.getClass().getSimpleName() + ": " + t.getMessage();
+            lastError = "Audio output init failed: " + t.getClass().getSimpleName() + ": " + t.getMessage();
             state.set(State.ERROR);
             stopRequested.set(true);
-            cleanupAl();
+            sink.close();
         }
     }
 
     private void reclaimProcessedBuffers() {
-        int processed = AL10.alGetSourcei(source, AL10.AL_BUFFERS_PROCESSED);
-        while (processed-- > 0) {
-            int unqueued = AL10.alSourceUnqueueBuffers(source);
-            queuedBuffers.pollFirst();
-            freeBuffers.addLast(unqueued);
-        }
-
-        int queued = AL10.alGetSourcei(source, AL10.AL_BUFFERS_QUEUED);
-        int alState = AL10.alGetSourcei(source, AL10.AL_SOURCE_STATE);
+        sink.reclaim();
 
         // 只有在解码线程还活着并且有新数据要播放时才重新播放
         // 如果解码已结束，不要重新播放，让播放器自然停止
         boolean decodingActive = decodeWorker != null && decodeWorker.isAlive();
         boolean hasMoreData = !pcmQueue.isEmpty();
 
-        if (queued > 0 && state.get() != State.PAUSED && (decodingActive || hasMoreData)) {
-            if (alState != AL10.AL_PLAYING) {
-                AL10.alSourcePlay(source);
+        if (sink.queuedBuffers() > 0 && state.get() != State.PAUSED && (decodingActive || hasMoreData)) {
+            if (sink.state() != AudioSink.SourceState.PLAYING) {
+                sink.play();
             }
         }
     }
 
-    private void cleanupAl() {
-        try {
-            if (source != 0) {
-                // 先停止源
-                AL10.alSourceStop(source);
-
-                // 等待一小段时间让 OpenAL 处理
-                try { Thread.sleep(10); } catch (InterruptedException ignored) {}
-
-                // 先回收所有已处理的缓冲区
-                int processed = AL10.alGetSourcei(source, AL10.AL_BUFFERS_PROCESSED);
-                for (int i = 0; i < processed; i++) {
-                    try {
-                        AL10.alSourceUnqueueBuffers(source);
-                    } catch (Throwable ignored) {}
-                }
+    private float clamp(float v, float min, float max) {
+        return Math.max(min, Math.min(max, v));
+    }
 
-                // 再尝试回收剩余的队列缓冲区
-                int queued = AL10.alGetSourcei(source, AL10.AL_BUFFERS_QUEUED);
-                for (int i = 0; i < queued; i++) {
-                    try {
-                        AL10.alSourceUnqueueBuffers(source);
-                    } catch (Throwable ignored) {}
-                }
+    /**
+     * 预取字节之后的剩余部分
+     * 创建时立即发起 Range 请求，与解码预取字节并行；首次读取时才等待响应
+     */
+    private final class RemainderStream extends InputStream {
+        private final long offset;
+        private final CompletableFuture<HttpResponse<InputStream>> pending;
+        private InputStream body;
+
+        RemainderStream(URI mp3Url, long offset) {
+            this.offset = offset;
+            this.pending = http.sendAsync(rangeRequest(mp3Url, offset), HttpResponse.BodyHandlers.ofInputStream());
+        }
 
-                // 删除源
-                try {
-                    AL10.alDeleteSources(source);
-                } catch (Throwable ignored) {}
+        private InputStream body() throws IOException {
+            if (body != null) return body;
+
+            HttpResponse<InputStream> resp;
+            try {
+                resp = pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for response", e);
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+
+            int code = resp.statusCode();
+            if (code == 206) {
+                updateContentLength(resp, offset);
+                body = new CountingInputStream(resp.body());
+            } else if (code == 200) {
+                // 服务器不支持 Range，跳过已有的开头
+                updateContentLength(resp, 0);
+                body = new CountingInputStream(resp.body());
+                body.skipNBytes(offset);
+            } else {
+                resp.body().close();
+                throw new IOException("HTTP " + code + " for remainder at " + offset);
             }
-        } catch (Throwable ignored) {
-        } finally {
-            source = 0;
+            return body;
         }
 
-        try {
-            if (buffers != null) {
-                for (int b : buffers) {
-                    try { AL10.alDeleteBuffers(b); } catch (Throwable ignored) {}
-                }
+        @Override
+        public int read() throws IOException {
+            return body().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return body().read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (body != null) {
+                body.close();
+            } else {
+                pending.cancel(true);
+                pending.thenAccept(resp -> {
+                    try { resp.body().close(); } catch (IOException ignored) {}
+                });
             }
-        } finally {
-            buffers = null;
-            freeBuffers.clear();
-            queuedBuffers.clear();
         }
     }
 
-    private int toAlFormat(int channels) {
-        return switch (channels) {
-            case 1 -> AL10.AL_FORMAT_MONO16;
-            case 2 -> AL10.AL_FORMAT_STEREO16;
-            default -> throw new IllegalArgumentException("Unsupported channels: " + channels);
-        };
-    }
+    /**
+     * 统计从网络读取的字节数
+     */
+    private final class CountingInputStream extends FilterInputStream {
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
 
-    private float clamp(float v, float min, float max) {
-        return Math.max(min, Math.min(max, v));
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) downloadedBytes.incrementAndGet();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) downloadedBytes.addAndGet(n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            if (skipped > 0) downloadedBytes.addAndGet(skipped);
+            return skipped;
+        }
     }
 
-    private static final class PcmChunk {
+    static final class PcmChunk {
         final ByteBuffer pcm;
         final int sampleRate;
         final int channels;
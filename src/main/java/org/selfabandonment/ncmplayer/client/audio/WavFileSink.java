@@ -0,0 +1,119 @@
+package org.selfabandonment.ncmplayer.client.audio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * WAV 文件音频输出（离线检查解码结果用）
+ *
+ * 每次 open 写一个新文件 track-001.wav、track-002.wav ...，
+ * 格式取第一段 PCM 的采样率和声道数，close 时回填文件头中的长度。
+ * 消耗节奏与 {@link NullSink} 相同（实时或不限速）。
+ *
+ * @author SelfAbandonment
+ */
+public final class WavFileSink extends NullSink {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("ncmplayer");
+    private static final int HEADER_SIZE = 44;
+
+    private final Path directory;
+    private int fileIndex = 0;
+    private FileChannel out;
+    private Path currentFile;
+    private int sampleRate = -1;
+    private int channels = -1;
+    private long dataBytes = 0;
+
+    public WavFileSink(Path directory, boolean realTime) {
+        super(realTime);
+        this.directory = directory;
+    }
+
+    /**
+     * 最近写入的文件
+     */
+    public Path currentFile() {
+        return currentFile;
+    }
+
+    @Override
+    public void open() throws Exception {
+        super.open();
+        Files.createDirectories(directory);
+        currentFile = directory.resolve(String.format(Locale.ROOT, "track-%03d.wav", ++fileIndex));
+        out = FileChannel.open(currentFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        out.position(HEADER_SIZE);
+        sampleRate = -1;
+        channels = -1;
+        dataBytes = 0;
+    }
+
+    @Override
+    protected void onQueue(ByteBuffer pcm, int sampleRate, int channels) {
+        if (out == null) return;
+        if (this.sampleRate < 0) {
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+        } else if (sampleRate != this.sampleRate || channels != this.channels) {
+            LOGGER.warn("WAV sink: format changed mid-track ({}Hz/{}ch), chunk skipped", sampleRate, channels);
+            return;
+        }
+
+        try {
+            ByteBuffer data = pcm.duplicate();
+            while (data.hasRemaining()) {
+                dataBytes += out.write(data);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("WAV sink write failed: {}", e.getMessage());
+            closeFile();
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        closeFile();
+    }
+
+    private void closeFile() {
+        if (out == null) return;
+        try {
+            int rate = sampleRate > 0 ? sampleRate : 44100;
+            int ch = channels > 0 ? channels : 2;
+            ByteBuffer h = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            h.put("RIFF".getBytes(StandardCharsets.US_ASCII))
+                    .putInt((int) (36 + dataBytes))
+                    .put("WAVE".getBytes(StandardCharsets.US_ASCII))
+                    .put("fmt ".getBytes(StandardCharsets.US_ASCII))
+                    .putInt(16)
+                    .putShort((short) 1)                 // PCM
+                    .putShort((short) ch)
+                    .putInt(rate)
+                    .putInt(rate * ch * 2)               // 字节率
+                    .putShort((short) (ch * 2))          // 块对齐
+                    .putShort((short) 16)
+                    .put("data".getBytes(StandardCharsets.US_ASCII))
+                    .putInt((int) dataBytes)
+                    .flip();
+            out.write(h, 0);
+            out.close();
+        } catch (IOException e) {
+            LOGGER.warn("WAV sink close failed: {}", e.getMessage());
+        } finally {
+            out = null;
+        }
+    }
+}
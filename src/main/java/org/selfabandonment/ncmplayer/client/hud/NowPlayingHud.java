@@ -0,0 +1,197 @@
+package org.selfabandonment.ncmplayer.client.hud;
+
+import net.minecraft.client.DeltaTracker;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.Font;
+import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.client.gui.LayeredDraw;
+import net.minecraft.locale.Language;
+import net.minecraft.network.chat.FormattedText;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.util.FormattedCharSequence;
+import org.selfabandonment.ncmplayer.client.audio.MusicController;
+import org.selfabandonment.ncmplayer.client.audio.Playlist;
+import org.selfabandonment.ncmplayer.client.audio.StreamingMp3Player;
+import org.selfabandonment.ncmplayer.client.lyric.LyricManager;
+import org.selfabandonment.ncmplayer.client.lyric.LyricTimeline;
+import org.selfabandonment.ncmplayer.client.screen.MusicScreenNew;
+import org.selfabandonment.ncmplayer.config.ModConfig;
+import org.selfabandonment.ncmplayer.ncm.NcmApiClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.selfabandonment.ncmplayer.client.screen.UIConstants.*;
+
+/**
+ * 游戏内正在播放 HUD（左上角）
+ *
+ * 显示歌曲、进度和当前/下一行歌词。文本在快照中预先截断和排版，
+ * 只有歌曲、歌词行、秒数或屏幕宽度变化时才重建；每帧只做几次比较、填充和绘制已排版的文本。
+ * 每帧耗时计入统计，定期写入 debug 日志。
+ *
+ * @author SelfAbandonment
+ */
+public final class NowPlayingHud implements LayeredDraw.Layer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("ncmplayer");
+
+    public static final ResourceLocation ID = ResourceLocation.fromNamespaceAndPath("ncmplayer", "now_playing");
+
+    private static final String ELLIPSIS = "...";
+    private static final int MARGIN = 4;
+    private static final int PADDING = 4;
+    private static final int MAX_WIDTH = 180;
+    private static final int LINE_HEIGHT = 10;
+    private static final int BAR_HEIGHT = 2;
+    private static final int COLOR_HUD_BG = 0x80000000;
+
+    /** 耗时统计的输出间隔（纳秒） */
+    private static final long STATS_INTERVAL_NANOS = 30_000_000_000L;
+
+    // 快照键
+    private long songId = Long.MIN_VALUE;
+    private LyricTimeline lyrics = null;
+    private int lineIndex = Integer.MIN_VALUE;
+    private long second = Long.MIN_VALUE;
+    private int screenWidth = -1;
+
+    // 快照内容（已截断、已排版）
+    private String titleText = "";
+    private FormattedCharSequence title = FormattedCharSequence.EMPTY;
+    private FormattedCharSequence current = FormattedCharSequence.EMPTY;
+    private FormattedCharSequence next = FormattedCharSequence.EMPTY;
+    private String time = "";
+    private int timeWidth = 0;
+    private int panelWidth = 0;
+    private int panelHeight = 0;
+
+    // 耗时统计
+    private long statsStart = 0;
+    private long statsFrames = 0;
+    private long statsTotalNanos = 0;
+    private long statsMaxNanos = 0;
+    private int rebuilds = 0;
+
+    @Override
+    public void render(GuiGraphics g, DeltaTracker deltaTracker) {
+        long start = System.nanoTime();
+        if (!draw(g)) return;
+        record(start, System.nanoTime() - start);
+    }
+
+    /**
+     * 绘制 HUD，不需要显示时返回 false
+     */
+    private boolean draw(GuiGraphics g) {
+        Minecraft mc = Minecraft.getInstance();
+        if (mc.options.hideGui || mc.getDebugOverlay().showDebugScreen()) return false;
+        if (mc.screen instanceof MusicScreenNew) return false;
+        if (!ModConfig.COMMON.hudEnabled.get()) return false;
+
+        var state = MusicController.getState();
+        if (state != StreamingMp3Player.State.PLAYING && state != StreamingMp3Player.State.BUFFERING
+                && state != StreamingMp3Player.State.PAUSED) {
+            return false;
+        }
+        var song = Playlist.getCurrentSong();
+        if (song == null) return false;
+
+        Font font = mc.font;
+        LyricTimeline timeline = LyricManager.getCurrentLyrics();
+        int index = LyricManager.getCurrentLineIndex(MusicController.getHeardPositionMs());
+        long positionMs = MusicController.getPositionMs();
+        int width = g.guiWidth();
+
+        if (song.id() != songId || timeline != lyrics || index != lineIndex
+                || positionMs / 1000 != second || width != screenWidth) {
+            rebuild(font, song, timeline, index, positionMs, width);
+        }
+
+        int x = MARGIN;
+        int y = MARGIN;
+        g.fill(x, y, x + panelWidth, y + panelHeight, COLOR_HUD_BG);
+
+        int textX = x + PADDING;
+        int textY = y + PADDING;
+        g.drawString(font, title, textX, textY, COLOR_TEXT_DIM);
+        textY += LINE_HEIGHT;
+        if (current != FormattedCharSequence.EMPTY) {
+            g.drawString(font, current, textX, textY, COLOR_TEXT);
+            textY += LINE_HEIGHT;
+        }
+        if (next != FormattedCharSequence.EMPTY) {
+            g.drawString(font, next, textX, textY, COLOR_TEXT_DIM);
+            textY += LINE_HEIGHT;
+        }
+
+        // 进度条每帧按平滑位置计算，不进快照
+        int barW = panelWidth - PADDING * 3 - timeWidth;
+        int barY = textY + (font.lineHeight - BAR_HEIGHT) / 2 - 1;
+        float progress = Math.min(1f, Math.max(0f, MusicController.getProgress()));
+        g.fill(textX, barY, textX + barW, barY + BAR_HEIGHT, COLOR_SLIDER_BG);
+        g.fill(textX, barY, textX + (int) (barW * progress), barY + BAR_HEIGHT, COLOR_ACCENT);
+        g.drawString(font, time, x + panelWidth - PADDING - timeWidth, textY, COLOR_TEXT_DIM);
+        return true;
+    }
+
+    private void rebuild(Font font, NcmApiClient.SearchSong song, LyricTimeline timeline, int index,
+                         long positionMs, int width) {
+        int maxText = Math.min(MAX_WIDTH, width - MARGIN * 2) - PADDING * 2;
+        // 标题只在换歌或屏幕宽度变化时重新拼接和截断
+        if (song.id() != songId || width != screenWidth) {
+            titleText = fit(font, song.name() + " - " + song.artist(), maxText);
+            title = visualOrder(titleText);
+        }
+
+        this.songId = song.id();
+        this.lyrics = timeline;
+        this.lineIndex = index;
+        this.second = positionMs / 1000;
+        this.screenWidth = width;
+        rebuilds++;
+
+        String currentText = index >= 0 && index < timeline.size() ? fit(font, timeline.textAt(index), maxText) : "";
+        String nextText = index + 1 < timeline.size() ? fit(font, timeline.textAt(index + 1), maxText) : "";
+
+        long durationMs = MusicController.getDurationMs();
+        time = MusicController.formatTime(positionMs) + " / "
+                + (durationMs > 0 ? MusicController.formatTime(durationMs) : "--:--");
+        timeWidth = font.width(time);
+
+        current = currentText.isEmpty() ? FormattedCharSequence.EMPTY : visualOrder(currentText);
+        next = nextText.isEmpty() ? FormattedCharSequence.EMPTY : visualOrder(nextText);
+
+        int lines = 2 + (currentText.isEmpty() ? 0 : 1) + (nextText.isEmpty() ? 0 : 1);
+        int textW = Math.max(font.width(titleText), Math.max(font.width(currentText), font.width(nextText)));
+        // 进度行至少留出 40px 的进度条
+        textW = Math.max(textW, timeWidth + PADDING + 40);
+        panelWidth = Math.min(textW, maxText) + PADDING * 2;
+        panelHeight = lines * LINE_HEIGHT + PADDING * 2 - 2;
+    }
+
+    private void record(long start, long elapsed) {
+        if (statsStart == 0) statsStart = start;
+        statsFrames++;
+        statsTotalNanos += elapsed;
+        statsMaxNanos = Math.max(statsMaxNanos, elapsed);
+
+        if (start - statsStart >= STATS_INTERVAL_NANOS) {
+            LOGGER.debug("HUD render: {} frames, avg {} us, max {} us, {} snapshot rebuilds",
+                    statsFrames, statsTotalNanos / statsFrames / 1000, statsMaxNanos / 1000, rebuilds);
+            statsStart = start;
+            statsFrames = 0;
+            statsTotalNanos = 0;
+            statsMaxNanos = 0;
+            rebuilds = 0;
+        }
+    }
+
+    private static String fit(Font font, String text, int maxWidth) {
+        if (font.width(text) <= maxWidth) return text;
+        return font.plainSubstrByWidth(text, Math.max(0, maxWidth - font.width(ELLIPSIS))) + ELLIPSIS;
+    }
+
+    private static FormattedCharSequence visualOrder(String text) {
+        return Language.getInstance().getVisualOrder(FormattedText.of(text));
+    }
+}
@@ -0,0 +1,101 @@
+package org.selfabandonment.ncmplayer.client.image;
+
+import org.selfabandonment.ncmplayer.config.ModConfig;
+import org.selfabandonment.ncmplayer.ncm.NcmApiClient;
+import org.selfabandonment.ncmplayer.ncm.SessionStore;
+import org.selfabandonment.ncmplayer.ncm.SongMetaStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 专辑封面
+ *
+ * 歌曲 ID -> 封面地址，先查本地存储（SongMetaStore），没有时请求歌曲详情并写回。
+ * 图片本身由 {@link ImageCache} 加载。
+ *
+ * @author SelfAbandonment
+ */
+public final class CoverArt {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("ncmplayer");
+
+    /** 内存中最多缓存的地址数 */
+    private static final int MAX_CACHED_URLS = 128;
+
+    // songId -> 封面地址（空字符串表示没有封面），按访问顺序淘汰，访问时同步
+    private static final Map<Long, String> URLS = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > MAX_CACHED_URLS;
+        }
+    };
+
+    private static final Set<Long> IN_FLIGHT = ConcurrentHashMap.newKeySet();
+
+    private CoverArt() {
+    }
+
+    /**
+     * 获取歌曲封面，尚未就绪时返回 null
+     *
+     * @param songId  歌曲 ID
+     * @param maxSize 最长边的像素数（实际屏幕像素）
+     */
+    public static ImageCache.Sprite get(long songId, int maxSize) {
+        String url = urlFor(songId);
+        return url == null || url.isEmpty() ? null : ImageCache.get(url, maxSize);
+    }
+
+    /**
+     * 获取封面地址，未知时返回 null 并在后台查询
+     */
+    public static String urlFor(long songId) {
+        if (songId <= 0) return null;
+        synchronized (URLS) {
+            String url = URLS.get(songId);
+            if (url != null) return url;
+        }
+        if (IN_FLIGHT.add(songId)) {
+            ImageLoader.EXECUTOR.execute(() -> {
+                try {
+                    String url = resolve(songId);
+                    synchronized (URLS) {
+                        URLS.put(songId, url);
+                    }
+                } finally {
+                    IN_FLIGHT.remove(songId);
+                }
+            });
+        }
+        return null;
+    }
+
+    private static String resolve(long songId) {
+        SongMetaStore.SongMeta stored = SongMetaStore.get(songId);
+        if (stored != null && stored.coverUrl() != null) {
+            return stored.coverUrl();
+        }
+
+        SessionStore.Session session = SessionStore.loadOrNull();
+        String baseUrl = session != null && session.baseUrl() != null && !session.baseUrl().isBlank()
+                ? session.baseUrl() : ModConfig.COMMON.musicApiUrl.get();
+        String cookie = session != null ? session.cookieForApi() : "";
+
+        try {
+            var detail = new NcmApiClient(baseUrl).getSongDetail(songId, cookie);
+            SongMetaStore.putSongDetail(detail);
+            return detail.coverUrl();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.debug("Failed to resolve cover for songId={}: {}", songId, e.getMessage());
+        }
+        // 查询失败时不写回本地存储，下次启动重试
+        return "";
+    }
+}
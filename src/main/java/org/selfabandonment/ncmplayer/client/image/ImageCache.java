@@ -0,0 +1,234 @@
+package org.selfabandonment.ncmplayer.client.image;
+
+import com.mojang.blaze3d.platform.NativeImage;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.client.renderer.texture.DynamicTexture;
+import net.minecraft.resources.ResourceLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 网络图片纹理缓存（专辑封面、头像）
+ *
+ * - 下载、解码、缩放在后台线程完成（{@link ImageLoader}），渲染线程只负责上传
+ * - 每帧上传的字节数有上限，大量图片同时就绪时分摊到多帧
+ * - 按地址缓存，按访问顺序淘汰；独立纹理总字节数超过上限时释放最久未用的
+ * - 同一地址以不同尺寸请求时（如 GUI 缩放变化）按新尺寸重新加载
+ * - 不超过 64px 的缩略图放进共享图集，不单独占用纹理
+ * - 加载失败的地址退避后重试，连续失败时间隔加倍
+ *
+ * 除 {@link ImageLoader} 的后台任务外，所有方法只在渲染线程调用。
+ *
+ * @author SelfAbandonment
+ */
+public final class ImageCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("ncmplayer");
+
+    /** 独立纹理占用的显存上限（字节） */
+    private static final long GPU_BUDGET_BYTES = 16L * 1024 * 1024;
+
+    /** 每帧最多上传的字节数（至少上传一张） */
+    private static final long UPLOAD_BUDGET_BYTES_PER_FRAME = 512L * 1024;
+
+    /** 最多记录的条目数（包括加载中和加载失败的） */
+    private static final int MAX_ENTRIES = 256;
+
+    /** 加载失败后首次重试的等待时间，之后每次失败加倍 */
+    private static final long RETRY_BASE_MS = 10_000;
+    private static final long RETRY_MAX_MS = 5 * 60_000;
+
+    /**
+     * 可绘制的图片区域
+     */
+    public record Sprite(ResourceLocation texture, int u, int v, int width, int height,
+                         int textureWidth, int textureHeight) {
+
+        /**
+         * 缩放绘制到指定区域
+         */
+        public void blit(GuiGraphics g, int x, int y, int w, int h) {
+            g.blit(texture, x, y, w, h, u, v, width, height, textureWidth, textureHeight);
+        }
+    }
+
+    private static final class Entry {
+        final int maxSize;
+        Sprite sprite;
+        int atlasSlot = -1;
+        long gpuBytes;
+        // 连续失败次数和下次可重试的时间，0 表示未失败
+        int failures;
+        long retryAtMs;
+
+        Entry(int maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    private record Decoded(String url, int maxSize, NativeImage image) {}
+
+    private static final Map<String, Entry> ENTRIES = new LinkedHashMap<>(64, 0.75f, true);
+    private static final Queue<Decoded> READY = new ConcurrentLinkedQueue<>();
+    private static final ThumbnailAtlas ATLAS = new ThumbnailAtlas();
+
+    private static long gpuBytes = 0;
+    private static int textureCounter = 0;
+
+    private ImageCache() {
+    }
+
+    /**
+     * 获取图片，尚未就绪或加载失败时返回 null；第一次请求时开始后台加载
+     *
+     * @param url     图片地址
+     * @param maxSize 最长边的像素数（实际屏幕像素，不是 GUI 坐标）
+     */
+    public static Sprite get(String url, int maxSize) {
+        if (url == null || url.isBlank() || maxSize <= 0) return null;
+
+        Entry entry = ENTRIES.get(url);
+        if (entry == null || entry.maxSize != maxSize) {
+            if (entry != null) release(entry);
+            ENTRIES.put(url, new Entry(maxSize));
+            trimEntries(url);
+            load(url, maxSize);
+            return null;
+        }
+        if (entry.retryAtMs > 0 && System.currentTimeMillis() >= entry.retryAtMs) {
+            entry.retryAtMs = 0;
+            load(url, maxSize);
+        }
+        return entry.sprite;
+    }
+
+    private static void load(String url, int maxSize) {
+        ImageLoader.EXECUTOR.execute(() -> {
+            NativeImage image = null;
+            try {
+                image = ImageLoader.load(url, maxSize);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                LOGGER.debug("Failed to load image {}: {}", url, e.getMessage());
+            }
+            READY.add(new Decoded(url, maxSize, image));
+        });
+    }
+
+    /**
+     * 把已解码的图片上传到 GPU，每帧调用一次
+     */
+    public static void uploadPending() {
+        long uploaded = 0;
+        Decoded next;
+        while (uploaded < UPLOAD_BUDGET_BYTES_PER_FRAME && (next = READY.poll()) != null) {
+            Entry entry = ENTRIES.get(next.url());
+            NativeImage image = next.image();
+            boolean current = entry != null && entry.maxSize == next.maxSize() && entry.sprite == null;
+            if (image == null) {
+                // 加载失败的条目保持为空，退避后由 get 重试
+                if (current) {
+                    entry.failures++;
+                    long delay = Math.min(RETRY_MAX_MS, RETRY_BASE_MS << Math.min(entry.failures - 1, 16));
+                    entry.retryAtMs = System.currentTimeMillis() + delay;
+                }
+                continue;
+            }
+            if (!current) {
+                // 加载期间已被淘汰或换了尺寸
+                image.close();
+                continue;
+            }
+            uploaded += (long) image.getWidth() * image.getHeight() * 4;
+            upload(next.url(), entry, image);
+        }
+    }
+
+    private static void upload(String key, Entry entry, NativeImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+
+        if (w <= ThumbnailAtlas.CELL && h <= ThumbnailAtlas.CELL) {
+            int slot = ATLAS.allocate();
+            if (slot < 0) {
+                evictAtlasSlot(key);
+                slot = ATLAS.allocate();
+            }
+            if (slot >= 0) {
+                entry.atlasSlot = slot;
+                entry.sprite = ATLAS.upload(slot, image);
+                return;
+            }
+        }
+
+        DynamicTexture texture = new DynamicTexture(image);
+        ResourceLocation location = ResourceLocation.fromNamespaceAndPath("ncmplayer", "image/" + textureCounter++);
+        Minecraft.getInstance().getTextureManager().register(location, texture);
+        entry.sprite = new Sprite(location, 0, 0, w, h, w, h);
+        entry.gpuBytes = (long) w * h * 4;
+        gpuBytes += entry.gpuBytes;
+        trimGpu(key);
+    }
+
+    // ==================== 淘汰 ====================
+
+    private static void release(Entry entry) {
+        if (entry.atlasSlot >= 0) {
+            ATLAS.free(entry.atlasSlot);
+            entry.atlasSlot = -1;
+        } else if (entry.gpuBytes > 0) {
+            Minecraft.getInstance().getTextureManager().release(entry.sprite.texture());
+            gpuBytes -= entry.gpuBytes;
+            entry.gpuBytes = 0;
+        }
+        entry.sprite = null;
+    }
+
+    /**
+     * 条目过多时从最久未用的开始移除（保留 keep）
+     */
+    private static void trimEntries(String keep) {
+        Iterator<Map.Entry<String, Entry>> it = ENTRIES.entrySet().iterator();
+        while (ENTRIES.size() > MAX_ENTRIES && it.hasNext()) {
+            Map.Entry<String, Entry> e = it.next();
+            if (e.getKey().equals(keep)) continue;
+            release(e.getValue());
+            it.remove();
+        }
+    }
+
+    /**
+     * 独立纹理超过显存上限时释放最久未用的（保留 keep）
+     */
+    private static void trimGpu(String keep) {
+        Iterator<Map.Entry<String, Entry>> it = ENTRIES.entrySet().iterator();
+        while (gpuBytes > GPU_BUDGET_BYTES && it.hasNext()) {
+            Map.Entry<String, Entry> e = it.next();
+            if (e.getValue().gpuBytes == 0 || e.getKey().equals(keep)) continue;
+            release(e.getValue());
+            it.remove();
+        }
+    }
+
+    /**
+     * 图集已满时腾出最久未用的缩略图格子
+     */
+    private static void evictAtlasSlot(String keep) {
+        Iterator<Map.Entry<String, Entry>> it = ENTRIES.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> e = it.next();
+            if (e.getValue().atlasSlot < 0 || e.getKey().equals(keep)) continue;
+            release(e.getValue());
+            it.remove();
+            return;
+        }
+    }
+}
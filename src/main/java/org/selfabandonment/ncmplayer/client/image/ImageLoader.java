@@ -0,0 +1,235 @@
+package org.selfabandonment.ncmplayer.client.image;
+
+import com.mojang.blaze3d.platform.NativeImage;
+import net.minecraft.client.Minecraft;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * 图片下载与解码（后台线程）
+ *
+ * 先查磁盘缓存（ncmplayer_cache/images，文件名为地址的 SHA-1），没有时下载并原子写入；
+ * 解码后按最长边缩放到目标尺寸，结果是可直接上传的 {@link NativeImage}。
+ * 不接触 OpenGL，上传由 {@link ImageCache} 在渲染线程完成。
+ *
+ * @author SelfAbandonment
+ */
+final class ImageLoader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("ncmplayer");
+
+    /** 单张图片最大字节数 */
+    private static final int MAX_IMAGE_BYTES = 8 * 1024 * 1024;
+
+    /** 磁盘缓存最多保留的文件数，超出时按修改时间删除最旧的 */
+    private static final int MAX_DISK_FILES = 512;
+
+    static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "ncm-image-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final HttpClient HTTP = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private static final AtomicBoolean PRUNED = new AtomicBoolean(false);
+
+    private ImageLoader() {
+    }
+
+    /**
+     * 读取（或下载）并解码图片，最长边不超过 maxSize
+     */
+    static NativeImage load(String url, int maxSize) throws IOException, InterruptedException {
+        String requestUrl = sizedUrl(url, maxSize);
+        byte[] bytes = readCached(requestUrl);
+        if (bytes == null) {
+            bytes = download(requestUrl);
+            writeCached(requestUrl, bytes);
+        }
+        return decode(bytes, maxSize);
+    }
+
+    /**
+     * 网易云图片 CDN 支持 param=宽y高 参数，直接请求缩略图以减少下载量
+     */
+    private static String sizedUrl(String url, int maxSize) {
+        URI uri = URI.create(url);
+        String host = uri.getHost();
+        if (host == null || !host.endsWith("music.126.net") || uri.getRawQuery() != null) {
+            return url;
+        }
+        return url + "?param=" + maxSize + "y" + maxSize;
+    }
+
+    private static byte[] download(String url) throws IOException, InterruptedException {
+        HttpRequest req = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(15))
+                .header("User-Agent", "Mozilla/5.0")
+                .GET()
+                .build();
+        HttpResponse<byte[]> resp = HTTP.send(req, HttpResponse.BodyHandlers.ofByteArray());
+        if (resp.statusCode() != 200) {
+            throw new IOException("HTTP " + resp.statusCode() + " for " + url);
+        }
+        byte[] body = resp.body();
+        if (body.length == 0 || body.length > MAX_IMAGE_BYTES) {
+            throw new IOException("Unexpected image size " + body.length + " for " + url);
+        }
+        return body;
+    }
+
+    // ==================== 解码 ====================
+
+    private static NativeImage decode(byte[] bytes, int maxSize) throws IOException {
+        BufferedImage src = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (src == null) {
+            throw new IOException("Unsupported image format");
+        }
+
+        int sw = src.getWidth();
+        int sh = src.getHeight();
+        int[] argb = src.getRGB(0, 0, sw, sh, null, 0, sw);
+
+        // 保持比例缩小，不放大
+        float scale = Math.min(1f, (float) maxSize / Math.max(sw, sh));
+        int dw = Math.max(1, Math.round(sw * scale));
+        int dh = Math.max(1, Math.round(sh * scale));
+        if (dw != sw || dh != sh) {
+            argb = downscale(argb, sw, sh, dw, dh);
+        }
+
+        NativeImage image = new NativeImage(NativeImage.Format.RGBA, dw, dh, false);
+        for (int y = 0; y < dh; y++) {
+            for (int x = 0; x < dw; x++) {
+                image.setPixelRGBA(x, y, toAbgr(argb[y * dw + x]));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * 区域平均缩小：每个目标像素取对应源矩形内所有像素的平均值
+     */
+    static int[] downscale(int[] src, int sw, int sh, int dw, int dh) {
+        int[] out = new int[dw * dh];
+        for (int y = 0; y < dh; y++) {
+            int y0 = y * sh / dh;
+            int y1 = Math.max(y0 + 1, (y + 1) * sh / dh);
+            for (int x = 0; x < dw; x++) {
+                int x0 = x * sw / dw;
+                int x1 = Math.max(x0 + 1, (x + 1) * sw / dw);
+                long a = 0, r = 0, g = 0, b = 0;
+                for (int sy = y0; sy < y1; sy++) {
+                    int row = sy * sw;
+                    for (int sx = x0; sx < x1; sx++) {
+                        int c = src[row + sx];
+                        a += c >>> 24;
+                        r += (c >> 16) & 0xFF;
+                        g += (c >> 8) & 0xFF;
+                        b += c & 0xFF;
+                    }
+                }
+                int n = (y1 - y0) * (x1 - x0);
+                out[y * dw + x] = (int) (a / n) << 24 | (int) (r / n) << 16 | (int) (g / n) << 8 | (int) (b / n);
+            }
+        }
+        return out;
+    }
+
+    private static int toAbgr(int argb) {
+        return (argb & 0xFF00FF00) | ((argb >> 16) & 0xFF) | ((argb & 0xFF) << 16);
+    }
+
+    // ==================== 磁盘缓存 ====================
+
+    private static Path cacheDir() {
+        return Minecraft.getInstance().gameDirectory.toPath()
+                .resolve("ncmplayer_cache")
+                .resolve("images");
+    }
+
+    private static Path cacheFile(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+            return cacheDir().resolve(HexFormat.of().formatHex(digest));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] readCached(String url) {
+        Path file = cacheFile(url);
+        try {
+            return Files.isRegularFile(file) ? Files.readAllBytes(file) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeCached(String url, byte[] bytes) {
+        Path file = cacheFile(url);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            Files.write(tmp, bytes);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.debug("Failed to cache image {}: {}", url, e.getMessage());
+            return;
+        }
+        if (PRUNED.compareAndSet(false, true)) {
+            prune();
+        }
+    }
+
+    /**
+     * 每次启动后第一次写入时清理一次，只保留最近的 MAX_DISK_FILES 个文件
+     */
+    private static void prune() {
+        try (Stream<Path> files = Files.list(cacheDir())) {
+            List<Path> all = files.filter(Files::isRegularFile)
+                    .sorted(Comparator.comparingLong(ImageLoader::modifiedAt).reversed())
+                    .toList();
+            for (int i = MAX_DISK_FILES; i < all.size(); i++) {
+                Files.deleteIfExists(all.get(i));
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to prune image cache: {}", e.getMessage());
+        }
+    }
+
+    private static long modifiedAt(Path p) {
+        try {
+            return Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
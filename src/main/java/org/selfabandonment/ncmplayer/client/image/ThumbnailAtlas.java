@@ -0,0 +1,66 @@
+package org.selfabandonment.ncmplayer.client.image;
+
+import com.mojang.blaze3d.platform.NativeImage;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.texture.DynamicTexture;
+import net.minecraft.resources.ResourceLocation;
+
+/**
+ * 缩略图图集
+ *
+ * 一张 512x512 的共享纹理，按 64x64 划分为固定格子，每张缩略图占一格，
+ * 上传时只更新所在格子的区域。格子的分配和回收由 {@link ImageCache} 按 LRU 决定。
+ * 仅在渲染线程使用。
+ *
+ * @author SelfAbandonment
+ */
+final class ThumbnailAtlas {
+
+    static final int CELL = 64;
+    static final int SIZE = 512;
+    private static final int COLUMNS = SIZE / CELL;
+
+    private static final ResourceLocation LOCATION =
+            ResourceLocation.fromNamespaceAndPath("ncmplayer", "image/thumbnail_atlas");
+
+    private DynamicTexture texture;
+    private final boolean[] used = new boolean[COLUMNS * COLUMNS];
+
+    /**
+     * 分配一个空闲格子，已满时返回 -1
+     */
+    int allocate() {
+        for (int i = 0; i < used.length; i++) {
+            if (!used[i]) {
+                used[i] = true;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    void free(int slot) {
+        used[slot] = false;
+    }
+
+    /**
+     * 把图片上传到格子左上角并关闭图片
+     */
+    ImageCache.Sprite upload(int slot, NativeImage image) {
+        ensureTexture();
+        int u = (slot % COLUMNS) * CELL;
+        int v = (slot / COLUMNS) * CELL;
+        int w = image.getWidth();
+        int h = image.getHeight();
+
+        texture.bind();
+        image.upload(0, u, v, 0, 0, w, h, false, true);
+        return new ImageCache.Sprite(LOCATION, u, v, w, h, SIZE, SIZE);
+    }
+
+    private void ensureTexture() {
+        if (texture != null) return;
+        texture = new DynamicTexture(SIZE, SIZE, true);
+        Minecraft.getInstance().getTextureManager().register(LOCATION, texture);
+    }
+}
@@ -1,21 +1,20 @@
 package org.selfabandonment.ncmplayer.client.lyric;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
+import java.util.Locale;
 
 /**
  * LRC 歌词解析器
  *
+ * 单遍扫描，不使用正则，时间直接写入 {@link LyricTimeline.Builder}。
+ * - 时间标签: [mm:ss]、[mm:ss.x]、[mm:ss.xx]、[mm:ss.xxx]、[mm:ss:xx]，一行可有多个
+ * - 信息标签: [ti:]、[ar:]、[al:]、[by:] 等，[offset:] 会应用到所有时间
+ * - 无法识别的标签及其后内容视为歌词文本；没有时间标签的行忽略
+ *
  * @author SelfAbandonment
  */
 public final class LrcParser {
 
-    // LRC 时间标签正则: [mm:ss.xx] 或 [mm:ss:xx] 或 [mm:ss]
-    private static final Pattern TIME_PATTERN = Pattern.compile("\\[(\\d{1,2}):(\\d{2})([.:]?(\\d{1,3}))?]");
-
     private LrcParser() {
     }
 
@@ -23,101 +22,177 @@ public final class LrcParser {
      * 解析 LRC 格式歌词
      *
      * @param lrcContent LRC 歌词内容
-     * @return 按时间排序的歌词行列表
+     * @return 按时间排序的歌词时间轴
      */
-    public static List<LyricLine> parse(String lrcContent) {
-        if (lrcContent == null || lrcContent.isBlank()) {
-            return Collections.emptyList();
+    public static LyricTimeline parse(CharSequence lrcContent) {
+        if (lrcContent == null || lrcContent.isEmpty()) {
+            return LyricTimeline.EMPTY;
         }
 
-        List<LyricLine> lines = new ArrayList<>();
-        String[] rawLines = lrcContent.split("\n");
-
-        for (String rawLine : rawLines) {
-            rawLine = rawLine.trim();
-            if (rawLine.isEmpty()) continue;
-
-            // 查找所有时间标签
-            Matcher matcher = TIME_PATTERN.matcher(rawLine);
-            List<Long> times = new ArrayList<>();
-            int lastMatchEnd = 0;
-
-            while (matcher.find()) {
-                int minutes = Integer.parseInt(matcher.group(1));
-                int seconds = Integer.parseInt(matcher.group(2));
-                int millis = 0;
-
-                String millisStr = matcher.group(4);
-                if (millisStr != null && !millisStr.isEmpty()) {
-                    millis = Integer.parseInt(millisStr);
-                    // 如果是两位数，转换为毫秒
-                    if (millisStr.length() == 2) {
-                        millis *= 10;
-                    } else if (millisStr.length() == 1) {
-                        millis *= 100;
-                    }
-                }
+        LyricTimeline.Builder out = new LyricTimeline.Builder();
+        long[] lineTimes = new long[8];
+        int n = lrcContent.length();
+        int pos = 0;
+
+        while (pos < n) {
+            int end = pos;
+            while (end < n) {
+                char c = lrcContent.charAt(end);
+                if (c == '\n' || c == '\r') break;
+                end++;
+            }
+            lineTimes = parseLine(lrcContent, pos, end, out, lineTimes);
+            pos = end + 1;
+        }
 
-                long timeMs = minutes * 60 * 1000L + seconds * 1000L + millis;
-                times.add(timeMs);
-                lastMatchEnd = matcher.end();
+        return out.build();
+    }
+
+    /**
+     * 解析一行 [start, end)，返回（可能扩容后的）时间缓冲区
+     */
+    private static long[] parseLine(CharSequence s, int start, int end, LyricTimeline.Builder out, long[] times) {
+        int i = skipSpaces(s, start, end);
+        int count = 0;
+
+        while (i < end && s.charAt(i) == '[') {
+            int close = indexOf(s, ']', i + 1, end);
+            if (close < 0) break;
+
+            long t = parseTime(s, i + 1, close);
+            if (t >= 0) {
+                if (count == times.length) {
+                    times = Arrays.copyOf(times, count * 2);
+                }
+                times[count++] = t;
+                i = skipSpaces(s, close + 1, end);
+                continue;
             }
 
-            // 提取歌词文本（时间标签之后的部分）
-            String text = "";
-            if (lastMatchEnd > 0 && lastMatchEnd < rawLine.length()) {
-                text = rawLine.substring(lastMatchEnd).trim();
+            // 行首的信息标签，如 [ar:歌手]
+            if (count == 0 && parseInfoTag(s, i + 1, close, out)) {
+                return times;
             }
+            break;
+        }
+
+        if (count == 0) return times;
 
-            // 为每个时间标签创建歌词行
-            for (Long time : times) {
-                if (!text.isEmpty()) {
-                    lines.add(new LyricLine(time, text));
+        int textEnd = end;
+        while (textEnd > i && Character.isWhitespace(s.charAt(textEnd - 1))) textEnd--;
+        if (textEnd <= i) return times;
+
+        String text = s.subSequence(i, textEnd).toString();
+        for (int k = 0; k < count; k++) {
+            out.add(times[k], text);
+        }
+        return times;
+    }
+
+    /**
+     * 解析 mm:ss[.f|:f] 时间，格式不对时返回 -1
+     */
+    private static long parseTime(CharSequence s, int from, int to) {
+        int i = from;
+        long minutes = 0;
+        int digits = 0;
+        while (i < to && isDigit(s.charAt(i))) {
+            minutes = minutes * 10 + (s.charAt(i) - '0');
+            if (++digits > 4) return -1;
+            i++;
+        }
+        if (digits == 0 || i >= to || s.charAt(i) != ':') return -1;
+        i++;
+
+        int seconds = 0;
+        digits = 0;
+        while (i < to && isDigit(s.charAt(i))) {
+            seconds = seconds * 10 + (s.charAt(i) - '0');
+            if (++digits > 2) return -1;
+            i++;
+        }
+        if (digits == 0) return -1;
+
+        int millis = 0;
+        if (i < to) {
+            char sep = s.charAt(i);
+            if (sep != '.' && sep != ':') return -1;
+            i++;
+            digits = 0;
+            while (i < to && isDigit(s.charAt(i))) {
+                if (digits < 3) {
+                    millis = millis * 10 + (s.charAt(i) - '0');
                 }
+                digits++;
+                i++;
             }
+            if (digits == 0 || i != to) return -1;
+            // 1 位为十分之一秒，2 位为百分之一秒，超过 3 位只取前 3 位
+            if (digits == 1) millis *= 100;
+            else if (digits == 2) millis *= 10;
         }
 
-        // 按时间排序
-        Collections.sort(lines);
-        return lines;
+        return minutes * 60_000L + seconds * 1000L + millis;
     }
 
     /**
-     * 根据当前播放时间获取当前歌词行索引
-     *
-     * @param lyrics      歌词列表
-     * @param currentTime 当前播放时间（毫秒）
-     * @return 当前歌词行索引，如果没有找到返回 -1
+     * 解析 [key:value] 信息标签，不是信息标签时返回 false
      */
-    public static int getCurrentLineIndex(List<LyricLine> lyrics, long currentTime) {
-        if (lyrics == null || lyrics.isEmpty()) {
-            return -1;
+    private static boolean parseInfoTag(CharSequence s, int from, int to, LyricTimeline.Builder out) {
+        int colon = indexOf(s, ':', from, to);
+        if (colon <= from) return false;
+        for (int i = from; i < colon; i++) {
+            char c = s.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) return false;
         }
 
-        int index = -1;
-        for (int i = 0; i < lyrics.size(); i++) {
-            if (lyrics.get(i).timeMs() <= currentTime) {
-                index = i;
-            } else {
-                break;
+        String key = s.subSequence(from, colon).toString().toLowerCase(Locale.ROOT);
+        int vs = skipSpaces(s, colon + 1, to);
+        int ve = to;
+        while (ve > vs && Character.isWhitespace(s.charAt(ve - 1))) ve--;
+
+        if (key.equals("offset")) {
+            long offset = parseSignedLong(s, vs, ve);
+            if (offset != Long.MIN_VALUE) {
+                out.offset(offset);
             }
+        } else {
+            out.tag(key, s.subSequence(vs, ve).toString());
         }
-        return index;
+        return true;
     }
 
-    /**
-     * 根据当前播放时间获取当前歌词文本
-     *
-     * @param lyrics      歌词列表
-     * @param currentTime 当前播放时间（毫秒）
-     * @return 当前歌词文本，如果没有找到返回空字符串
-     */
-    public static String getCurrentLyric(List<LyricLine> lyrics, long currentTime) {
-        int index = getCurrentLineIndex(lyrics, currentTime);
-        if (index >= 0 && index < lyrics.size()) {
-            return lyrics.get(index).text();
+    private static long parseSignedLong(CharSequence s, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        if (i >= to || to - i > 9) return Long.MIN_VALUE;
+
+        long v = 0;
+        for (; i < to; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) return Long.MIN_VALUE;
+            v = v * 10 + (c - '0');
         }
-        return "";
+        return negative ? -v : v;
+    }
+
+    private static int skipSpaces(CharSequence s, int from, int to) {
+        while (from < to && Character.isWhitespace(s.charAt(from))) from++;
+        return from;
+    }
+
+    private static int indexOf(CharSequence s, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == c) return i;
+        }
+        return -1;
     }
-}
 
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -1,17 +1,25 @@
 package org.selfabandonment.ncmplayer.client.lyric;
 
 import org.selfabandonment.ncmplayer.ncm.NcmApiClient;
+import org.selfabandonment.ncmplayer.ncm.SongMetaStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 歌词管理器
  *
  * 负责加载、缓存和获取当前歌词
+ * 内存中按 LRU 保留最近的若干首，更早的从本地存储（SongMetaStore）重新读取，过期后在后台重新拉取
+ * 同一首歌同时只有一个加载任务；播放时预取后续几首，切歌时歌词可立即显示
+ * 有逐字歌词（YRC）时优先使用，翻译和音译合并到同一时间轴
  *
  * @author SelfAbandonment
  */
@@ -19,17 +27,37 @@ public final class LyricManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger("ncmplayer");
 
-    // 歌词缓存 (songId -> lyrics)
-    private static final ConcurrentHashMap<Long, List<LyricLine>> LYRICS_CACHE = new ConcurrentHashMap<>();
+    /** 本地歌词超过该时间后在后台重新校验（毫秒） */
+    private static final long REVALIDATE_AFTER_MS = 24L * 60 * 60 * 1000;
+
+    /** 内存中最多缓存的歌曲数 */
+    private static final int MAX_CACHED_SONGS = 32;
+
+    // 歌词缓存 (songId -> lyrics)，按访问顺序淘汰，访问时同步
+    private static final Map<Long, LyricTimeline> LYRICS_CACHE = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, LyricTimeline> eldest) {
+            return size() > MAX_CACHED_SONGS;
+        }
+    };
+
+    // 正在加载的歌曲
+    private static final Set<Long> IN_FLIGHT = ConcurrentHashMap.newKeySet();
+
+    private static final ExecutorService LOADER = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "ncm-lyric-loader");
+        t.setDaemon(true);
+        return t;
+    });
 
     // 当前歌曲 ID
     private static volatile long currentSongId = -1;
 
-    // 当前歌词列表
-    private static volatile List<LyricLine> currentLyrics = Collections.emptyList();
+    // 当前歌词
+    private static volatile LyricTimeline currentLyrics = LyricTimeline.EMPTY;
 
-    // 是否正在加载
-    private static volatile boolean loading = false;
+    // 当前歌词的播放游标（仅渲染线程使用）
+    private static LyricTimeline.Cursor cursor = LyricTimeline.EMPTY.cursor();
 
     private LyricManager() {
     }
@@ -44,49 +72,114 @@ public final class LyricManager {
         // 先清除当前歌词，避免显示旧歌词
         if (songId != currentSongId) {
             currentSongId = songId;
-            currentLyrics = Collections.emptyList();
+            currentLyrics = LyricTimeline.EMPTY;
         }
 
         // 检查缓存
-        if (LYRICS_CACHE.containsKey(songId)) {
-            currentLyrics = LYRICS_CACHE.get(songId);
+        LyricTimeline cached = cached(songId);
+        if (cached != null) {
+            currentLyrics = cached;
             LOGGER.debug("Loaded lyrics from cache for songId={}", songId);
             return;
         }
 
-        if (loading) return;
-        loading = true;
+        fetch(songId, baseUrl);
+    }
+
+    /**
+     * 预取后续歌曲的歌词（已缓存或正在加载的跳过）
+     */
+    public static void prefetch(List<Long> songIds, String baseUrl) {
+        for (long songId : songIds) {
+            if (cached(songId) == null) {
+                fetch(songId, baseUrl);
+            }
+        }
+    }
+
+    private static LyricTimeline cached(long songId) {
+        synchronized (LYRICS_CACHE) {
+            return LYRICS_CACHE.get(songId);
+        }
+    }
+
+    private static void fetch(long songId, String baseUrl) {
+        if (!IN_FLIGHT.add(songId)) return;
 
-        // 异步加载 - 使用较高优先级
-        Thread loader = new Thread(() -> {
+        LOADER.execute(() -> {
             try {
-                NcmApiClient client = new NcmApiClient(baseUrl);
-                String lrcContent = client.getLyric(songId);
-
-                if (lrcContent != null && !lrcContent.isBlank()) {
-                    List<LyricLine> lyrics = LrcParser.parse(lrcContent);
-                    LYRICS_CACHE.put(songId, lyrics);
-                    // 只有当前歌曲ID匹配时才更新
-                    if (currentSongId == songId) {
-                        currentLyrics = lyrics;
+                // 本地存储：有则立即显示，过期再联网校验
+                SongMetaStore.SongMeta stored = SongMetaStore.get(songId);
+                if (stored != null && stored.lyrics() != null) {
+                    apply(songId, stored.lyrics());
+                    if (System.currentTimeMillis() - stored.updatedAtEpochMs() < REVALIDATE_AFTER_MS) {
+                        return;
                     }
-                    LOGGER.info("Loaded {} lyric lines for songId={}", lyrics.size(), songId);
-                } else {
-                    if (currentSongId == songId) {
-                        currentLyrics = Collections.emptyList();
-                    }
-                    LOGGER.debug("No lyrics found for songId={}", songId);
+                }
+
+                NcmApiClient client = new NcmApiClient(baseUrl);
+                NcmApiClient.Lyrics fetched = client.getLyrics(songId);
+                SongMetaStore.putLyrics(songId, fetched);
+
+                if (stored == null || !fetched.equals(stored.lyrics())) {
+                    apply(songId, fetched);
                 }
             } catch (Exception e) {
                 LOGGER.warn("Failed to load lyrics for songId={}: {}", songId, e.getMessage());
-                currentSongId = songId;
-                currentLyrics = Collections.emptyList();
             } finally {
-                loading = false;
+                IN_FLIGHT.remove(songId);
             }
-        }, "ncm-lyric-loader");
-        loader.setDaemon(true);
-        loader.start();
+        });
+    }
+
+    private static void apply(long songId, NcmApiClient.Lyrics content) {
+        LyricTimeline lyrics = parse(content);
+        synchronized (LYRICS_CACHE) {
+            LYRICS_CACHE.put(songId, lyrics);
+        }
+        // 只有当前歌曲ID匹配时才更新
+        if (currentSongId == songId) {
+            currentLyrics = lyrics;
+        }
+        if (!lyrics.isEmpty()) {
+            LOGGER.info("Loaded {} lyric lines for songId={} (word timing: {})", lyrics.size(), songId, lyrics.hasWords());
+        } else {
+            LOGGER.debug("No lyrics found for songId={}", songId);
+        }
+    }
+
+    /**
+     * 有逐字歌词时优先使用，解析不出内容再退回逐行歌词；翻译和音译按时间对齐到原文行
+     */
+    private static LyricTimeline parse(NcmApiClient.Lyrics content) {
+        LyricTimeline main = LyricTimeline.EMPTY;
+        if (!content.yrc().isEmpty()) {
+            main = YrcParser.parse(content.yrc());
+        }
+        if (main.isEmpty()) {
+            main = LrcParser.parse(content.lrc());
+        }
+        if (main.isEmpty() || (content.translated().isEmpty() && content.romanized().isEmpty())) {
+            return main;
+        }
+        return main.withSecondary(LrcParser.parse(content.translated()), LrcParser.parse(content.romanized()));
+    }
+
+    /**
+     * 获取当前行索引（根据播放时间），仅在渲染线程调用
+     *
+     * @param currentTimeMs 当前播放时间（毫秒）
+     * @return 当前行索引，第一行之前返回 -1
+     */
+    public static int getCurrentLineIndex(long currentTimeMs) {
+        return lineIndex(currentLyrics, currentTimeMs);
+    }
+
+    private static int lineIndex(LyricTimeline lyrics, long currentTimeMs) {
+        if (cursor.timeline() != lyrics) {
+            cursor = lyrics.cursor();
+        }
+        return cursor.seek(currentTimeMs);
     }
 
     /**
@@ -96,7 +189,9 @@ public final class LyricManager {
      * @return 当前歌词文本
      */
     public static String getCurrentLyric(long currentTimeMs) {
-        return LrcParser.getCurrentLyric(currentLyrics, currentTimeMs);
+        LyricTimeline lyrics = currentLyrics;
+        int index = lineIndex(lyrics, currentTimeMs);
+        return index >= 0 ? lyrics.textAt(index) : "";
     }
 
     /**
@@ -106,24 +201,25 @@ public final class LyricManager {
      * @return [当前歌词, 下一行歌词]
      */
     public static String[] getCurrentAndNextLyric(long currentTimeMs) {
-        int index = LrcParser.getCurrentLineIndex(currentLyrics, currentTimeMs);
+        LyricTimeline lyrics = currentLyrics;
+        int index = lineIndex(lyrics, currentTimeMs);
         String current = "";
         String next = "";
 
-        if (index >= 0 && index < currentLyrics.size()) {
-            current = currentLyrics.get(index).text();
+        if (index >= 0 && index < lyrics.size()) {
+            current = lyrics.textAt(index);
         }
-        if (index + 1 < currentLyrics.size()) {
-            next = currentLyrics.get(index + 1).text();
+        if (index + 1 < lyrics.size()) {
+            next = lyrics.textAt(index + 1);
         }
 
         return new String[]{current, next};
     }
 
     /**
-     * 获取当前歌词列表
+     * 获取当前歌词
      */
-    public static List<LyricLine> getCurrentLyrics() {
+    public static LyricTimeline getCurrentLyrics() {
         return currentLyrics;
     }
 
@@ -142,10 +238,10 @@ public final class LyricManager {
     }
 
     /**
-     * 是否正在加载
+     * 当前歌曲的歌词是否正在加载
      */
     public static boolean isLoading() {
-        return loading;
+        return IN_FLIGHT.contains(currentSongId);
     }
 
     /**
@@ -153,14 +249,16 @@ public final class LyricManager {
      */
     public static void clear() {
         currentSongId = -1;
-        currentLyrics = Collections.emptyList();
+        currentLyrics = LyricTimeline.EMPTY;
     }
 
     /**
      * 清除缓存
      */
     public static void clearCache() {
-        LYRICS_CACHE.clear();
+        synchronized (LYRICS_CACHE) {
+            LYRICS_CACHE.clear();
+        }
         clear();
     }
 }
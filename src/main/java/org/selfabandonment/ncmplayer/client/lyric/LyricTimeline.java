@@ -0,0 +1,421 @@
+package org.selfabandonment.ncmplayer.client.lyric;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 歌词时间轴
+ *
+ * 按时间排序的歌词行，时间和文本分别存放在并行数组中。
+ * 逐字歌词（YRC）的每个字也存放在扁平数组中：开始时间、时长、在行文本中的结束位置，
+ * 每行通过 [firstWord, endWord) 引用自己的字。
+ * 翻译和音译按时间对齐到原文行，作为每行的附加文本。
+ * 不可变，可以在线程间共享；{@link Cursor} 不是线程安全的。
+ *
+ * @author SelfAbandonment
+ */
+public final class LyricTimeline {
+
+    public static final LyricTimeline EMPTY = new LyricTimeline(new long[0], new String[0], Map.of(), null, null, null);
+
+    /** 向前推进超过该行数时改用二分查找 */
+    private static final int MAX_LINEAR_STEPS = 8;
+
+    /** 翻译 / 音译行与原文行的最大时间差（毫秒），逐字歌词的行时间与 LRC 略有出入 */
+    private static final long SECONDARY_MATCH_MS = 1000;
+
+    private final long[] times;
+    private final String[] texts;
+    private final Map<String, String> tags;
+
+    // 逐字数据，没有时为 null
+    private final Words words;
+
+    // 每行的翻译 / 音译，没有时整个数组为 null，某行没有时该元素为 null
+    private final String[] translations;
+    private final String[] romanizations;
+
+    /**
+     * 逐字数据（扁平数组）
+     */
+    private record Words(int[] lineFrom, int[] lineTo, long[] starts, int[] durations, int[] textEnds) {}
+
+    private LyricTimeline(long[] times, String[] texts, Map<String, String> tags, Words words,
+                          String[] translations, String[] romanizations) {
+        this.times = times;
+        this.texts = texts;
+        this.tags = tags;
+        this.words = words;
+        this.translations = translations;
+        this.romanizations = romanizations;
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    public boolean isEmpty() {
+        return times.length == 0;
+    }
+
+    public long timeAt(int index) {
+        return times[index];
+    }
+
+    public String textAt(int index) {
+        return texts[index];
+    }
+
+    public boolean hasTranslation() {
+        return translations != null;
+    }
+
+    public boolean hasRomanization() {
+        return romanizations != null;
+    }
+
+    /**
+     * 该行的翻译，没有时返回 null
+     */
+    public String translationAt(int index) {
+        return translations == null ? null : translations[index];
+    }
+
+    /**
+     * 该行的音译（罗马音），没有时返回 null
+     */
+    public String romanizationAt(int index) {
+        return romanizations == null ? null : romanizations[index];
+    }
+
+    /**
+     * 附加翻译和音译，返回新的时间轴（原文数据共享）
+     * 每个翻译行对齐到时间最接近的原文行，相差超过 {@link #SECONDARY_MATCH_MS} 的丢弃
+     */
+    public LyricTimeline withSecondary(LyricTimeline translation, LyricTimeline romanization) {
+        if (isEmpty()) return this;
+        return new LyricTimeline(times, texts, tags, words, align(translation), align(romanization));
+    }
+
+    private String[] align(LyricTimeline secondary) {
+        if (secondary == null || secondary.isEmpty()) return null;
+
+        String[] out = new String[times.length];
+        boolean any = false;
+        for (int j = 0; j < secondary.size(); j++) {
+            String text = secondary.texts[j];
+            // 网易云用 "//" 表示该行无翻译
+            if (text.equals("//")) continue;
+
+            long t = secondary.times[j];
+            int i = nearestLine(t);
+            if (Math.abs(times[i] - t) > SECONDARY_MATCH_MS || out[i] != null) continue;
+            out[i] = text;
+            any = true;
+        }
+        return any ? out : null;
+    }
+
+    private int nearestLine(long timeMs) {
+        int i = indexAt(timeMs);
+        if (i < 0) return 0;
+        if (i + 1 < times.length && times[i + 1] - timeMs < timeMs - times[i]) return i + 1;
+        return i;
+    }
+
+    /**
+     * 查找指定时间所在的行（最后一个开始时间不晚于该时间的行）
+     *
+     * @return 行索引，第一行之前返回 -1
+     */
+    public int indexAt(long timeMs) {
+        int lo = 0;
+        int hi = times.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] <= timeMs) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return hi;
+    }
+
+    /**
+     * 指定时间所在行的文本，没有时返回空字符串
+     */
+    public String textAtTime(long timeMs) {
+        int index = indexAt(timeMs);
+        return index >= 0 ? texts[index] : "";
+    }
+
+    /**
+     * LRC 标签（如 ti、ar、al、by），不存在时返回 null
+     */
+    public String tag(String key) {
+        return tags.get(key);
+    }
+
+    // ==================== 逐字 ====================
+
+    /**
+     * 是否带逐字时间（YRC）
+     */
+    public boolean hasWords() {
+        return words != null;
+    }
+
+    /**
+     * 字的总数
+     */
+    public int wordCount() {
+        return words == null ? 0 : words.starts.length;
+    }
+
+    /**
+     * 该行第一个字的下标，没有逐字时间时等于 {@link #endWord(int)}
+     */
+    public int firstWord(int line) {
+        return words == null ? 0 : words.lineFrom[line];
+    }
+
+    /**
+     * 该行最后一个字之后的下标
+     */
+    public int endWord(int line) {
+        return words == null ? 0 : words.lineTo[line];
+    }
+
+    public long wordStart(int word) {
+        return words.starts[word];
+    }
+
+    public int wordDuration(int word) {
+        return words.durations[word];
+    }
+
+    /**
+     * 字在所在行文本中的结束位置（不含），开始位置为前一个字的结束位置或 0
+     */
+    public int wordTextEnd(int word) {
+        return words.textEnds[word];
+    }
+
+    /**
+     * 该行中指定时间正在唱的字（最后一个开始时间不晚于该时间的字）
+     *
+     * @return 字下标，第一个字之前返回 firstWord - 1
+     */
+    public int wordAt(int line, long timeMs) {
+        if (words == null) return -1;
+        int from = words.lineFrom[line];
+        int w = words.lineTo[line] - 1;
+        while (w >= from && words.starts[w] > timeMs) w--;
+        return w;
+    }
+
+    public Cursor cursor() {
+        return new Cursor(this);
+    }
+
+    /**
+     * 播放游标
+     *
+     * 播放向前推进时逐行前移（均摊 O(1)），后退或大幅跳转时使用二分查找。
+     */
+    public static final class Cursor {
+        private final LyricTimeline timeline;
+        private int index = -1;
+        private long lastTimeMs = Long.MIN_VALUE;
+
+        private Cursor(LyricTimeline timeline) {
+            this.timeline = timeline;
+        }
+
+        public LyricTimeline timeline() {
+            return timeline;
+        }
+
+        /**
+         * 移动到指定时间，返回当前行索引（第一行之前为 -1）
+         */
+        public int seek(long timeMs) {
+            long[] times = timeline.times;
+            if (timeMs < lastTimeMs) {
+                index = timeline.indexAt(timeMs);
+            } else {
+                int steps = 0;
+                while (index + 1 < times.length && times[index + 1] <= timeMs) {
+                    if (++steps > MAX_LINEAR_STEPS) {
+                        index = timeline.indexAt(timeMs);
+                        break;
+                    }
+                    index++;
+                }
+            }
+            lastTimeMs = timeMs;
+            return index;
+        }
+
+        public int index() {
+            return index;
+        }
+    }
+
+    /**
+     * 构建器，行可以乱序添加，build 时按时间稳定排序
+     */
+    public static final class Builder {
+        private long[] times = new long[64];
+        private String[] texts = new String[64];
+        private int size = 0;
+        private boolean sorted = true;
+        private long offsetMs = 0;
+        private Map<String, String> tags = Map.of();
+
+        // 逐字数据，第一次添加逐字行时分配
+        private int[] lineFrom;
+        private int[] lineTo;
+        private long[] wordStarts;
+        private int[] wordDurations;
+        private int[] wordTextEnds;
+        private int wordCount = 0;
+
+        public Builder add(long timeMs, String text) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                texts = Arrays.copyOf(texts, size * 2);
+                if (lineFrom != null) {
+                    lineFrom = Arrays.copyOf(lineFrom, size * 2);
+                    lineTo = Arrays.copyOf(lineTo, size * 2);
+                }
+            }
+            if (size > 0 && timeMs < times[size - 1]) {
+                sorted = false;
+            }
+            times[size] = timeMs;
+            texts[size] = text;
+            if (lineFrom != null) {
+                lineFrom[size] = wordCount;
+                lineTo[size] = wordCount;
+            }
+            size++;
+            return this;
+        }
+
+        /**
+         * 添加带逐字时间的一行，数组内容会被复制
+         *
+         * @param starts    每个字的开始时间（毫秒）
+         * @param durations 每个字的时长（毫秒）
+         * @param textEnds  每个字在 text 中的结束位置
+         * @param count     字数
+         */
+        public Builder add(long timeMs, String text, long[] starts, int[] durations, int[] textEnds, int count) {
+            if (lineFrom == null) {
+                lineFrom = new int[times.length];
+                lineTo = new int[times.length];
+                wordStarts = new long[Math.max(64, count)];
+                wordDurations = new int[wordStarts.length];
+                wordTextEnds = new int[wordStarts.length];
+            }
+            if (wordCount + count > wordStarts.length) {
+                int cap = Math.max(wordStarts.length * 2, wordCount + count);
+                wordStarts = Arrays.copyOf(wordStarts, cap);
+                wordDurations = Arrays.copyOf(wordDurations, cap);
+                wordTextEnds = Arrays.copyOf(wordTextEnds, cap);
+            }
+            System.arraycopy(starts, 0, wordStarts, wordCount, count);
+            System.arraycopy(durations, 0, wordDurations, wordCount, count);
+            System.arraycopy(textEnds, 0, wordTextEnds, wordCount, count);
+
+            int from = wordCount;
+            wordCount += count;
+            add(timeMs, text);
+            lineFrom[size - 1] = from;
+            return this;
+        }
+
+        /**
+         * 设置整体偏移（LRC [offset:]，正数表示歌词提前显示）
+         */
+        public Builder offset(long offsetMs) {
+            this.offsetMs = offsetMs;
+            return this;
+        }
+
+        public Builder tag(String key, String value) {
+            if (tags.isEmpty()) {
+                tags = new HashMap<>();
+            }
+            tags.put(key, value);
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public LyricTimeline build() {
+            if (size == 0) return EMPTY;
+
+            long[] outTimes = Arrays.copyOf(times, size);
+            String[] outTexts = Arrays.copyOf(texts, size);
+            int[] outFrom = lineFrom == null ? null : Arrays.copyOf(lineFrom, size);
+            int[] outTo = lineTo == null ? null : Arrays.copyOf(lineTo, size);
+            if (!sorted) {
+                int[] order = new int[size];
+                for (int i = 0; i < size; i++) order[i] = i;
+                mergeSort(order, new int[size], 0, size, times);
+                for (int i = 0; i < size; i++) {
+                    outTimes[i] = times[order[i]];
+                    outTexts[i] = texts[order[i]];
+                    if (outFrom != null) {
+                        outFrom[i] = lineFrom[order[i]];
+                        outTo[i] = lineTo[order[i]];
+                    }
+                }
+            }
+
+            Words words = null;
+            if (outFrom != null) {
+                words = new Words(outFrom, outTo, Arrays.copyOf(wordStarts, wordCount),
+                        Arrays.copyOf(wordDurations, wordCount), Arrays.copyOf(wordTextEnds, wordCount));
+            }
+            if (offsetMs != 0) {
+                for (int i = 0; i < size; i++) {
+                    outTimes[i] = Math.max(0, outTimes[i] - offsetMs);
+                }
+                if (words != null) {
+                    long[] starts = words.starts();
+                    for (int i = 0; i < wordCount; i++) {
+                        starts[i] = Math.max(0, starts[i] - offsetMs);
+                    }
+                }
+            }
+            return new LyricTimeline(outTimes, outTexts, tags.isEmpty() ? Map.of() : Map.copyOf(tags), words,
+                    null, null);
+        }
+
+        /**
+         * 按时间对下标做稳定排序（相同时间保持添加顺序）
+         */
+        private static void mergeSort(int[] a, int[] tmp, int from, int to, long[] keys) {
+            if (to - from < 2) return;
+            int mid = (from + to) >>> 1;
+            mergeSort(a, tmp, from, mid, keys);
+            mergeSort(a, tmp, mid, to, keys);
+            if (keys[a[mid - 1]] <= keys[a[mid]]) return;
+
+            System.arraycopy(a, from, tmp, from, to - from);
+            int i = from, j = mid, k = from;
+            while (i < mid && j < to) {
+                a[k++] = keys[tmp[j]] < keys[tmp[i]] ? tmp[j++] : tmp[i++];
+            }
+            while (i < mid) a[k++] = tmp[i++];
+            while (j < to) a[k++] = tmp[j++];
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.selfabandonment.ncmplayer.client.lyric;
+
+import java.util.Arrays;
+
+/**
+ * YRC 逐字歌词解析器
+ *
+ * 行格式: [行开始,行时长](字开始,字时长,0)字(字开始,字时长,0)字...，时间均为毫秒。
+ * - 以 { 开头的 JSON 行（作词、作曲等信息）忽略
+ * - 字文本中无法识别为时间标签的括号视为普通文本
+ * 与 {@link LrcParser} 一样单遍扫描，字的时间直接写入 {@link LyricTimeline.Builder}。
+ *
+ * @author SelfAbandonment
+ */
+public final class YrcParser {
+
+    private YrcParser() {
+    }
+
+    /**
+     * 解析 YRC 格式歌词
+     *
+     * @param yrcContent YRC 歌词内容
+     * @return 按时间排序、带逐字时间的歌词时间轴
+     */
+    public static LyricTimeline parse(CharSequence yrcContent) {
+        if (yrcContent == null || yrcContent.isEmpty()) {
+            return LyricTimeline.EMPTY;
+        }
+
+        LyricTimeline.Builder out = new LyricTimeline.Builder();
+        LineBuffer buf = new LineBuffer();
+        int n = yrcContent.length();
+        int pos = 0;
+
+        while (pos < n) {
+            int end = pos;
+            while (end < n) {
+                char c = yrcContent.charAt(end);
+                if (c == '\n' || c == '\r') break;
+                end++;
+            }
+            parseLine(yrcContent, pos, end, out, buf);
+            pos = end + 1;
+        }
+
+        return out.build();
+    }
+
+    /**
+     * 一行内字的临时缓冲，跨行复用
+     */
+    private static final class LineBuffer {
+        long[] starts = new long[32];
+        int[] durations = new int[32];
+        int[] textEnds = new int[32];
+        int count;
+        final StringBuilder text = new StringBuilder(64);
+        // parseNumbers 的输出
+        long a;
+        long b;
+
+        void reset() {
+            count = 0;
+            text.setLength(0);
+        }
+
+        void addWord(long start, long duration) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                durations = Arrays.copyOf(durations, count * 2);
+                textEnds = Arrays.copyOf(textEnds, count * 2);
+            }
+            starts[count] = start;
+            durations[count] = (int) Math.min(Integer.MAX_VALUE, duration);
+            textEnds[count] = text.length();
+            count++;
+        }
+    }
+
+    private static void parseLine(CharSequence s, int start, int end, LyricTimeline.Builder out, LineBuffer buf) {
+        int i = start;
+        while (i < end && Character.isWhitespace(s.charAt(i))) i++;
+        if (i >= end || s.charAt(i) != '[') return;
+
+        int close = indexOf(s, ']', i + 1, end);
+        if (close < 0 || !parseNumbers(s, i + 1, close, buf, false)) return;
+        long lineStart = buf.a;
+
+        buf.reset();
+        i = close + 1;
+        while (i < end) {
+            char c = s.charAt(i);
+            if (c == '(') {
+                int tagEnd = indexOf(s, ')', i + 1, end);
+                if (tagEnd > 0 && parseNumbers(s, i + 1, tagEnd, buf, true)) {
+                    buf.addWord(buf.a, buf.b);
+                    i = tagEnd + 1;
+                    continue;
+                }
+            }
+            buf.text.append(c);
+            // 字文本写完后更新最后一个字的结束位置
+            if (buf.count > 0) {
+                buf.textEnds[buf.count - 1] = buf.text.length();
+            }
+            i++;
+        }
+
+        if (buf.count == 0) return;
+        String text = buf.text.toString();
+        if (text.isBlank()) return;
+        out.add(lineStart, text, buf.starts, buf.durations, buf.textEnds, buf.count);
+    }
+
+    /**
+     * 解析 "a,b" 或 "a,b,c"（三段时第三段忽略），结果写入 buf.a / buf.b
+     */
+    private static boolean parseNumbers(CharSequence s, int from, int to, LineBuffer buf, boolean triple) {
+        int i = from;
+        int parts = 0;
+        while (parts < 3) {
+            int digits = 0;
+            long v = 0;
+            while (i < to && isDigit(s.charAt(i))) {
+                if (++digits > 10) return false;
+                v = v * 10 + (s.charAt(i) - '0');
+                i++;
+            }
+            if (digits == 0) return false;
+            if (parts == 0) buf.a = v;
+            else if (parts == 1) buf.b = v;
+            parts++;
+            if (i >= to) break;
+            if (s.charAt(i) != ',') return false;
+            i++;
+        }
+        return i == to && parts == (triple ? 3 : 2);
+    }
+
+    private static int indexOf(CharSequence s, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -5,6 +5,7 @@ import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.AbstractWidget;
 import net.minecraft.client.gui.screens.Screen;
 import net.minecraft.network.chat.Component;
+import org.selfabandonment.ncmplayer.client.image.ImageCache;
 import org.selfabandonment.ncmplayer.client.screen.tab.*;
 import org.selfabandonment.ncmplayer.ncm.CookieSanitizer;
 import org.selfabandonment.ncmplayer.ncm.SessionStore;
@@ -91,6 +92,9 @@ public class MusicScreenNew extends Screen implements MusicScreenContext {
 
     @Override
     public void render(GuiGraphics g, int mouseX, int mouseY, float partialTick) {
+        // 上传后台解码好的封面、头像
+        ImageCache.uploadPending();
+
         // 背景
         g.fill(0, 0, width, height, COLOR_BG);
 
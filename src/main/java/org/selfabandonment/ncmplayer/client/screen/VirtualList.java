@@ -0,0 +1,300 @@
+package org.selfabandonment.ncmplayer.client.screen;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.Font;
+import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.client.gui.components.AbstractWidget;
+import net.minecraft.client.gui.narration.NarrationElementOutput;
+import net.minecraft.locale.Language;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.FormattedText;
+import net.minecraft.util.FormattedCharSequence;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+import static org.selfabandonment.ncmplayer.client.screen.UIConstants.*;
+
+/**
+ * 虚拟列表
+ *
+ * 整个列表是一个组件：只保留覆盖可见区域的固定数量的行，滚动时按下标把行重新绑定到新数据，
+ * 行文本按像素宽度截断后缓存在行里，数据不变时不重新排版。
+ * 滚动按像素进行并做缓动，每帧开销与列表长度无关。
+ *
+ * @author SelfAbandonment
+ */
+public class VirtualList<T> extends AbstractWidget {
+
+    /**
+     * 数据源
+     */
+    public interface Source<T> {
+        int size();
+
+        T get(int index);
+    }
+
+    /**
+     * 行文本
+     */
+    public interface Labeler<T> {
+        String label(int index, T item);
+    }
+
+    private static final String ELLIPSIS = "...";
+    private static final int PADDING = 6;
+    private static final int MARKER_WIDTH = 10;
+    private static final int ACTION_WIDTH = 18;
+    private static final int SCROLLBAR_WIDTH = 4;
+    private static final int ROW_GAP = 2;
+
+    /** 每格滚轮滚动的行数 */
+    private static final double SCROLL_ROWS_PER_NOTCH = 2;
+
+    /** 滚动缓动时间常数（毫秒），越小越跟手 */
+    private static final double SCROLL_EASE_MS = 60;
+
+    private final int rowHeight;
+    private final Source<T> source;
+    private final Labeler<T> labeler;
+    private final IntConsumer onSelect;
+
+    private IntConsumer onAction;
+    private String actionLabel = "";
+    private IntPredicate marked = i -> false;
+
+    // 滚动位置（像素），scroll 每帧向 targetScroll 靠近
+    private double scroll = 0;
+    private double targetScroll = 0;
+    private long lastFrameNanos = 0;
+    private boolean draggingScrollbar = false;
+
+    // 行池：数据下标 i 由 rows[i % rows.length] 显示
+    private Row[] rows = new Row[0];
+    private int version = 0;
+    private int lastSize = -1;
+
+    private static final class Row {
+        int index = -1;
+        int version = -1;
+        FormattedCharSequence label = FormattedCharSequence.EMPTY;
+    }
+
+    public VirtualList(int x, int y, int width, int height, int rowHeight,
+                       Source<T> source, Labeler<T> labeler, IntConsumer onSelect) {
+        super(x, y, width, height, Component.empty());
+        this.rowHeight = rowHeight;
+        this.source = source;
+        this.labeler = labeler;
+        this.onSelect = onSelect;
+    }
+
+    /**
+     * 每行右侧的操作按钮（如删除）
+     */
+    public VirtualList<T> withAction(String label, IntConsumer onAction) {
+        this.actionLabel = label;
+        this.onAction = onAction;
+        return this;
+    }
+
+    /**
+     * 需要在行首标记的行（如正在播放）
+     */
+    public VirtualList<T> withMarker(IntPredicate marked) {
+        this.marked = marked;
+        return this;
+    }
+
+    /**
+     * 数据内容变化后调用，所有行在下次绘制时重新绑定（条目数变化会自动失效）
+     */
+    public void invalidate() {
+        version++;
+    }
+
+    /**
+     * 回到顶部（换了一批数据时使用）
+     */
+    public void scrollToTop() {
+        scroll = 0;
+        targetScroll = 0;
+    }
+
+    // ==================== 绘制 ====================
+
+    @Override
+    protected void renderWidget(GuiGraphics g, int mouseX, int mouseY, float partialTick) {
+        int size = source.size();
+        // 条目数变化说明数据被增删过，下标对应的内容可能已经移位
+        if (size != lastSize) {
+            lastSize = size;
+            version++;
+        }
+        if (size == 0) return;
+
+        ensurePool();
+        advanceScroll(size);
+
+        Font font = Minecraft.getInstance().font;
+        int scrollPx = (int) Math.round(scroll);
+        int first = scrollPx / rowHeight;
+        int top = getY() - (scrollPx - first * rowHeight);
+        int right = getX() + width - SCROLLBAR_WIDTH - 2;
+        int hovered = isHovered() ? indexAt(mouseY) : -1;
+
+        g.enableScissor(getX(), getY(), getX() + width, getY() + height);
+        for (int k = 0; k < rows.length; k++) {
+            int index = first + k;
+            if (index >= size) break;
+            int y = top + k * rowHeight;
+            Row row = bind(index, font);
+
+            int rowBottom = y + rowHeight - ROW_GAP;
+            g.fill(getX(), y, right, rowBottom, index == hovered ? COLOR_SLIDER_BG : COLOR_PANEL);
+
+            int textY = y + (rowHeight - ROW_GAP - font.lineHeight) / 2 + 1;
+            if (marked.test(index)) {
+                g.drawString(font, "▶", getX() + PADDING - 2, textY, COLOR_ACCENT);
+            }
+            g.drawString(font, row.label, getX() + PADDING + MARKER_WIDTH, textY, COLOR_TEXT);
+
+            if (onAction != null) {
+                boolean actionHovered = index == hovered && mouseX >= right - ACTION_WIDTH;
+                g.drawCenteredString(font, actionLabel, right - ACTION_WIDTH / 2, textY,
+                        actionHovered ? COLOR_ACCENT : COLOR_TEXT_DIM);
+            }
+        }
+        g.disableScissor();
+
+        drawScrollbar(g, size);
+    }
+
+    private void drawScrollbar(GuiGraphics g, int size) {
+        int content = size * rowHeight;
+        if (content <= height) return;
+
+        int x = getX() + width - SCROLLBAR_WIDTH;
+        int thumbH = Math.max(10, (int) ((long) height * height / content));
+        int thumbY = getY() + (int) ((height - thumbH) * (scroll / maxScroll(size)));
+        g.fill(x, getY(), x + SCROLLBAR_WIDTH, getY() + height, COLOR_SLIDER_BG);
+        g.fill(x, thumbY, x + SCROLLBAR_WIDTH, thumbY + thumbH, draggingScrollbar ? COLOR_ACCENT : COLOR_TEXT_DIM | 0xFF000000);
+    }
+
+    private void ensurePool() {
+        int needed = (height + rowHeight - 1) / rowHeight + 1;
+        if (rows.length == needed) return;
+        rows = new Row[needed];
+        for (int i = 0; i < needed; i++) {
+            rows[i] = new Row();
+        }
+    }
+
+    /**
+     * 取出显示该下标的行，下标或数据版本变化时重新生成文本
+     */
+    private Row bind(int index, Font font) {
+        Row row = rows[index % rows.length];
+        if (row.index != index || row.version != version) {
+            row.index = index;
+            row.version = version;
+            String text = labeler.label(index, source.get(index));
+            row.label = Language.getInstance().getVisualOrder(FormattedText.of(fit(font, text, labelWidth())));
+        }
+        return row;
+    }
+
+    private int labelWidth() {
+        int w = width - PADDING * 2 - MARKER_WIDTH - SCROLLBAR_WIDTH - 2;
+        return onAction != null ? w - ACTION_WIDTH : w;
+    }
+
+    private static String fit(Font font, String text, int maxWidth) {
+        if (font.width(text) <= maxWidth) return text;
+        return font.plainSubstrByWidth(text, Math.max(0, maxWidth - font.width(ELLIPSIS))) + ELLIPSIS;
+    }
+
+    // ==================== 滚动 ====================
+
+    private double maxScroll(int size) {
+        return Math.max(0, size * rowHeight - height);
+    }
+
+    /**
+     * 按帧间隔把当前位置指数逼近目标位置，与帧率无关
+     */
+    private void advanceScroll(int size) {
+        double max = maxScroll(size);
+        targetScroll = Math.max(0, Math.min(max, targetScroll));
+
+        long now = System.nanoTime();
+        double dtMs = lastFrameNanos == 0 ? 0 : (now - lastFrameNanos) / 1_000_000.0;
+        lastFrameNanos = now;
+
+        if (draggingScrollbar || dtMs > 250) {
+            scroll = targetScroll;
+        } else {
+            scroll += (targetScroll - scroll) * (1 - Math.exp(-dtMs / SCROLL_EASE_MS));
+            if (Math.abs(targetScroll - scroll) < 0.5) scroll = targetScroll;
+        }
+        scroll = Math.max(0, Math.min(max, scroll));
+    }
+
+    @Override
+    public boolean mouseScrolled(double mouseX, double mouseY, double scrollX, double scrollY) {
+        if (!visible || !isMouseOver(mouseX, mouseY)) return false;
+        targetScroll -= scrollY * rowHeight * SCROLL_ROWS_PER_NOTCH;
+        return true;
+    }
+
+    private void dragScrollbarTo(double mouseY) {
+        int size = source.size();
+        double p = (mouseY - getY()) / height;
+        targetScroll = Math.max(0, Math.min(1, p)) * maxScroll(size);
+    }
+
+    // ==================== 点击 ====================
+
+    private int indexAt(double mouseY) {
+        int index = (int) ((mouseY - getY() + Math.round(scroll)) / rowHeight);
+        return index >= 0 && index < source.size() ? index : -1;
+    }
+
+    @Override
+    public void onClick(double mouseX, double mouseY) {
+        int right = getX() + width - SCROLLBAR_WIDTH - 2;
+        if (mouseX >= right) {
+            if (source.size() * rowHeight > height) {
+                draggingScrollbar = true;
+                dragScrollbarTo(mouseY);
+            }
+            return;
+        }
+
+        int index = indexAt(mouseY);
+        if (index < 0) return;
+        if (onAction != null && mouseX >= right - ACTION_WIDTH) {
+            onAction.accept(index);
+        } else {
+            onSelect.accept(index);
+        }
+    }
+
+    @Override
+    protected void onDrag(double mouseX, double mouseY, double dragX, double dragY) {
+        if (draggingScrollbar) {
+            dragScrollbarTo(mouseY);
+        }
+    }
+
+    @Override
+    public void onRelease(double mouseX, double mouseY) {
+        draggingScrollbar = false;
+    }
+
+    @Override
+    protected void updateWidgetNarration(NarrationElementOutput output) {
+        defaultButtonNarrationText(output);
+    }
+}
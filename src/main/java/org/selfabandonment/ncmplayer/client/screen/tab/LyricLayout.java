@@ -0,0 +1,142 @@
+package org.selfabandonment.ncmplayer.client.screen.tab;
+
+import net.minecraft.client.gui.Font;
+import net.minecraft.locale.Language;
+import net.minecraft.network.chat.FormattedText;
+import net.minecraft.util.FormattedCharSequence;
+import org.selfabandonment.ncmplayer.client.lyric.LyricTimeline;
+import org.selfabandonment.ncmplayer.config.ModConfig;
+
+import java.util.Arrays;
+
+/**
+ * 歌词排版缓存
+ *
+ * 每行第一次绘制时按可用宽度截断，缓存排版结果和像素宽度（原文、附加文本各一份），
+ * 逐字高亮用的每字结束宽度也缓存在这里。
+ * 只在换歌（时间轴变化）、可用宽度变化或附加文本类型变化时失效，仅在渲染线程使用。
+ *
+ * @author SelfAbandonment
+ */
+final class LyricLayout {
+
+    private static final String ELLIPSIS = "...";
+
+    private LyricTimeline lyrics = LyricTimeline.EMPTY;
+    private int maxWidth = -1;
+    private ModConfig.LyricSecondary secondaryMode = ModConfig.LyricSecondary.NONE;
+    private boolean showSecondary = false;
+
+    // 按行缓存，null 表示尚未排版
+    private FormattedCharSequence[] lines = new FormattedCharSequence[0];
+    private int[] lineWidths = new int[0];
+    private boolean[] truncated = new boolean[0];
+    private FormattedCharSequence[] extras = new FormattedCharSequence[0];
+    private int[] extraWidths = new int[0];
+
+    // 每个字结束处距行首的像素宽度，-1 表示未计算
+    private int[] wordEndPx = new int[0];
+
+    /**
+     * 时间轴、可用宽度或附加文本类型变化时清空缓存
+     */
+    void update(LyricTimeline lyrics, int maxWidth, ModConfig.LyricSecondary mode) {
+        if (lyrics == this.lyrics && maxWidth == this.maxWidth && mode == secondaryMode) return;
+        this.lyrics = lyrics;
+        this.maxWidth = maxWidth;
+        this.secondaryMode = mode;
+        this.showSecondary = (mode == ModConfig.LyricSecondary.TRANSLATION && lyrics.hasTranslation())
+                || (mode == ModConfig.LyricSecondary.ROMANIZATION && lyrics.hasRomanization());
+
+        int n = lyrics.size();
+        lines = new FormattedCharSequence[n];
+        lineWidths = new int[n];
+        truncated = new boolean[n];
+        extras = showSecondary ? new FormattedCharSequence[n] : new FormattedCharSequence[0];
+        extraWidths = showSecondary ? new int[n] : new int[0];
+        wordEndPx = new int[lyrics.wordCount()];
+        Arrays.fill(wordEndPx, -1);
+    }
+
+    /**
+     * 当前时间轴是否有要显示的附加文本
+     */
+    boolean showSecondary() {
+        return showSecondary;
+    }
+
+    FormattedCharSequence line(Font font, int index) {
+        ensureLine(font, index);
+        return lines[index];
+    }
+
+    int lineWidth(Font font, int index) {
+        ensureLine(font, index);
+        return lineWidths[index];
+    }
+
+    /**
+     * 该行是否因超出宽度被截断
+     */
+    boolean isTruncated(Font font, int index) {
+        ensureLine(font, index);
+        return truncated[index];
+    }
+
+    /**
+     * 该行的附加文本（翻译或音译），没有时返回 null
+     */
+    FormattedCharSequence extra(Font font, int index) {
+        if (!showSecondary) return null;
+        if (extras[index] == null) {
+            String text = secondaryMode == ModConfig.LyricSecondary.TRANSLATION
+                    ? lyrics.translationAt(index) : lyrics.romanizationAt(index);
+            if (text == null) {
+                extras[index] = FormattedCharSequence.EMPTY;
+            } else {
+                String fitted = fit(font, text);
+                extras[index] = visualOrder(fitted);
+                extraWidths[index] = font.width(fitted);
+            }
+        }
+        return extras[index] == FormattedCharSequence.EMPTY ? null : extras[index];
+    }
+
+    int extraWidth(Font font, int index) {
+        return extra(font, index) == null ? 0 : extraWidths[index];
+    }
+
+    /**
+     * 字结束处距所在行行首的像素宽度
+     */
+    int wordEndPx(Font font, int line, int word) {
+        int px = wordEndPx[word];
+        if (px < 0) {
+            px = font.width(lyrics.textAt(line).substring(0, lyrics.wordTextEnd(word)));
+            wordEndPx[word] = px;
+        }
+        return px;
+    }
+
+    private void ensureLine(Font font, int index) {
+        if (lines[index] != null) return;
+        String text = lyrics.textAt(index);
+        String fitted = fit(font, text);
+        lines[index] = visualOrder(fitted);
+        lineWidths[index] = font.width(fitted);
+        truncated[index] = fitted != text;
+    }
+
+    /**
+     * 超出宽度时截断并加省略号，未超出时返回原字符串
+     */
+    private String fit(Font font, String text) {
+        if (font.width(text) <= maxWidth) return text;
+        int target = Math.max(0, maxWidth - font.width(ELLIPSIS));
+        return font.plainSubstrByWidth(text, target) + ELLIPSIS;
+    }
+
+    private static FormattedCharSequence visualOrder(String text) {
+        return Language.getInstance().getVisualOrder(FormattedText.of(text));
+    }
+}
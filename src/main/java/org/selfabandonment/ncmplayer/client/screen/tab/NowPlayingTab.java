@@ -1,16 +1,20 @@
 package org.selfabandonment.ncmplayer.client.screen.tab;
 
+import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.AbstractWidget;
 import net.minecraft.client.gui.components.Button;
+import net.minecraft.client.gui.components.Tooltip;
 import net.minecraft.network.chat.Component;
+import net.minecraft.util.FormattedCharSequence;
 import org.selfabandonment.ncmplayer.client.audio.MusicController;
 import org.selfabandonment.ncmplayer.client.audio.Playlist;
 import org.selfabandonment.ncmplayer.client.audio.StreamingMp3Player;
-import org.selfabandonment.ncmplayer.client.lyric.LrcParser;
+import org.selfabandonment.ncmplayer.client.image.ImageCache;
 import org.selfabandonment.ncmplayer.client.lyric.LyricManager;
+import org.selfabandonment.ncmplayer.client.lyric.LyricTimeline;
+import org.selfabandonment.ncmplayer.config.ModConfig;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import static org.selfabandonment.ncmplayer.client.screen.UIConstants.*;
@@ -32,6 +36,10 @@ public class NowPlayingTab extends AbstractTab {
     private Button repeatBtn;
     private Button playlistBtn;
 
+    // 歌词校准
+    private Button lyricLaterBtn;
+    private Button lyricEarlierBtn;
+
     // 进度条
     private int progressBarX, progressBarY, progressBarW, progressBarH;
     private int volumeSliderX, volumeSliderY, volumeSliderW, volumeSliderH;
@@ -39,6 +47,26 @@ public class NowPlayingTab extends AbstractTab {
     private boolean draggingVolume = false;
     private float dragProgress = 0f;
 
+    /** 歌词换行滚动动画时长（毫秒） */
+    private static final long SCROLL_ANIM_MS = 300;
+
+    /** 封面边长（GUI 坐标） */
+    private static final int COVER_SIZE = 36;
+
+    /** 歌词校准每次调整的步长（毫秒） */
+    private static final int LYRIC_OFFSET_STEP_MS = 100;
+
+    // 歌词排版缓存
+    private final LyricLayout lyricLayout = new LyricLayout();
+
+    // 播放状态和派生文本
+    private final PlaybackViewModel view = new PlaybackViewModel();
+    private List<AbstractWidget> widgets = List.of();
+
+    // 歌词校准偏移文本，按数值缓存
+    private int offsetLabelValue = 0;
+    private String offsetLabel = "";
+
     public NowPlayingTab(MusicScreenContext ctx) {
         super(ctx);
     }
@@ -53,6 +81,17 @@ public class NowPlayingTab extends AbstractTab {
                 b -> ctx.switchTab(MusicScreenContext.TabType.PLAYER))
                 .bounds(contentL, 10, 60, 20).build());
 
+        // 歌词校准：- 推迟，+ 提前
+        lyricLaterBtn = ctx.addWidget(Button.builder(Component.literal("-"),
+                b -> MusicController.adjustLyricOffset(-LYRIC_OFFSET_STEP_MS))
+                .tooltip(Tooltip.create(Component.literal("歌词推迟 " + LYRIC_OFFSET_STEP_MS + "ms")))
+                .bounds(contentL + contentW - 36, 62, 16, 16).build());
+
+        lyricEarlierBtn = ctx.addWidget(Button.builder(Component.literal("+"),
+                b -> MusicController.adjustLyricOffset(LYRIC_OFFSET_STEP_MS))
+                .tooltip(Tooltip.create(Component.literal("歌词提前 " + LYRIC_OFFSET_STEP_MS + "ms")))
+                .bounds(contentL + contentW - 16, 62, 16, 16).build());
+
         // 进度条
         progressBarW = contentW - 80;
         progressBarH = 4;
@@ -97,6 +136,9 @@ public class NowPlayingTab extends AbstractTab {
         volumeSliderH = 4;
         volumeSliderX = startX + (btnW + gap) * 6;
         volumeSliderY = btnY + 8;
+
+        widgets = List.of(backBtn, playlistBtn, shuffleBtn, prevBtn, playPauseBtn, nextBtn, repeatBtn,
+                lyricLaterBtn, lyricEarlierBtn);
     }
 
     @Override
@@ -105,20 +147,38 @@ public class NowPlayingTab extends AbstractTab {
         int contentW = Math.min(360, width() - 30);
         int contentL = cx - contentW / 2;
 
-        // 获取当前歌曲
-        var currentSong = Playlist.getCurrentSong();
-        if (currentSong == null) {
+        view.update();
+        if (view.song == null) {
             g.drawCenteredString(font(), "暂无播放", cx, height() / 2, COLOR_TEXT_DIM);
             return;
         }
 
         // 歌曲信息
         int topY = 40;
-        String songName = truncate(currentSong.name(), 30);
-        g.drawCenteredString(font(), songName, cx, topY, COLOR_TEXT);
+        g.drawCenteredString(font(), view.title(), cx, topY, COLOR_TEXT);
+        g.drawCenteredString(font(), view.artist(), cx, topY + 15, COLOR_TEXT_DIM);
+
+        // 封面（按实际像素尺寸加载，未就绪时显示占位）
+        int coverPx = COVER_SIZE * (int) Math.ceil(Minecraft.getInstance().getWindow().getGuiScale());
+        String coverUrl = view.coverUrl();
+        var cover = coverUrl == null || coverUrl.isEmpty() ? null : ImageCache.get(coverUrl, coverPx);
+        if (cover != null) {
+            cover.blit(g, contentL, topY - 2, COVER_SIZE, COVER_SIZE);
+        } else {
+            g.fill(contentL, topY - 2, contentL + COVER_SIZE, topY - 2 + COVER_SIZE, COLOR_PANEL);
+        }
 
-        String artistName = truncate(currentSong.artist(), 25);
-        g.drawCenteredString(font(), artistName, cx, topY + 15, COLOR_TEXT_DIM);
+        // 歌词校准偏移，非 0 时显示在按钮左侧
+        int lyricOffset = ModConfig.COMMON.lyricOffsetMs.get();
+        if (lyricOffset != 0) {
+            if (lyricOffset != offsetLabelValue) {
+                offsetLabelValue = lyricOffset;
+                offsetLabel = (lyricOffset > 0 ? "+" : "") + lyricOffset + "ms";
+            }
+            String label = offsetLabel;
+            g.drawString(font(), label, lyricLaterBtn.getX() - 4 - font().width(label),
+                    lyricLaterBtn.getY() + 4, COLOR_TEXT_DIM);
+        }
 
         // 歌词区域
         int lyricTop = topY + 45;
@@ -151,7 +211,7 @@ public class NowPlayingTab extends AbstractTab {
 
     private void renderLyrics(GuiGraphics g, int cx, int lyricTop, int lyricHeight, int contentW) {
         var lyrics = LyricManager.getCurrentLyrics();
-        long currentTime = MusicController.getPlayedMs();
+        long currentTime = MusicController.getHeardPositionMs();
 
         // 歌词最大宽度 = 内容宽度 - 左右各10像素边距
         int maxWidth = contentW - 20;
@@ -165,67 +225,101 @@ public class NowPlayingTab extends AbstractTab {
             return;
         }
 
-        int currentIndex = LrcParser.getCurrentLineIndex(lyrics, currentTime);
-        int lineHeight = 18;
-        int visibleLines = lyricHeight / lineHeight;
+        int currentIndex = LyricManager.getCurrentLineIndex(currentTime);
+        lyricLayout.update(lyrics, maxWidth, ModConfig.COMMON.lyricSecondary.get());
+
+        // 有翻译 / 音译时每行下方多一行附加文本
+        boolean showSecondary = lyricLayout.showSecondary();
+        int lineHeight = showSecondary ? 28 : 18;
         int centerY = lyricTop + lyricHeight / 2;
+        int lyricBottom = lyricTop + lyricHeight;
 
-        int startLine = Math.max(0, currentIndex - visibleLines / 2);
-        int endLine = Math.min(lyrics.size(), startLine + visibleLines);
+        // 滚动位置（以行为单位）拆成整数像素和小数部分，小数部分用矩阵平移
+        float scrollPx = scrollPosition(lyrics, currentIndex, currentTime) * lineHeight;
+        int scrollBase = (int) Math.floor(scrollPx);
+        int startLine = Math.max(0, Math.floorDiv(scrollBase - (centerY - lyricTop), lineHeight) - 1);
+        int endLine = Math.min(lyrics.size(), Math.floorDiv(scrollBase + (lyricBottom - centerY), lineHeight) + 2);
 
+        // 平移后再反向平移，不用 pushPose（每次都会复制矩阵）
+        float shift = scrollBase - scrollPx;
+        g.pose().translate(0, shift, 0);
         for (int i = startLine; i < endLine; i++) {
-            var line = lyrics.get(i);
-            int offsetFromCenter = i - currentIndex;
-            int y = centerY + offsetFromCenter * lineHeight;
+            int y = centerY + i * lineHeight - scrollBase;
+            // 只画与歌词区域相交的行
+            if (y + lineHeight <= lyricTop || y - 1 >= lyricBottom) continue;
 
             boolean isCurrent = (i == currentIndex);
+            if (showSecondary) {
+                FormattedCharSequence extra = lyricLayout.extra(font(), i);
+                if (extra != null) {
+                    g.drawString(font(), extra, cx - lyricLayout.extraWidth(font(), i) / 2, y + 11,
+                            isCurrent ? COLOR_TEXT : COLOR_TEXT_DIM);
+                }
+            }
+            if (isCurrent && drawKaraokeLine(g, lyrics, i, cx, y, currentTime)) {
+                continue;
+            }
             int color = isCurrent ? COLOR_ACCENT : COLOR_TEXT_DIM;
-
-            // 使用像素宽度截断歌词
-            String text = truncateByWidth(line.text(), maxWidth);
-            g.drawCenteredString(font(), text, cx, y, color);
+            g.drawString(font(), lyricLayout.line(font(), i), cx - lyricLayout.lineWidth(font(), i) / 2, y, color);
         }
+        g.pose().translate(0, -shift, 0);
     }
 
     /**
-     * 根据像素宽度截断文本
+     * 当前滚动位置（以行为单位）：换行后在 {@link #SCROLL_ANIM_MS} 内从上一行缓动到当前行
+     * 只由播放时间决定，跳转、暂停时自然停在对应位置
      */
-    private String truncateByWidth(String text, int maxWidth) {
-        if (text == null || text.isEmpty()) return "";
+    private static float scrollPosition(LyricTimeline lyrics, int index, long timeMs) {
+        if (index < 0) return -1;
 
-        int textWidth = font().width(text);
-        if (textWidth <= maxWidth) {
-            return text;
+        long start = lyrics.timeAt(index);
+        long span = SCROLL_ANIM_MS;
+        if (index > 0) {
+            span = Math.min(span, start - lyrics.timeAt(index - 1));
         }
+        if (span <= 0) return index;
 
-        // 需要截断
-        String ellipsis = "...";
-        int ellipsisWidth = font().width(ellipsis);
-        int targetWidth = maxWidth - ellipsisWidth;
-
-        StringBuilder sb = new StringBuilder();
-        int currentWidth = 0;
+        float p = Math.min(1f, Math.max(0f, (timeMs - start) / (float) span));
+        float eased = 1f - (1f - p) * (1f - p) * (1f - p);
+        return index - 1 + eased;
+    }
 
-        for (int i = 0; i < text.length(); i++) {
-            char c = text.charAt(i);
-            int charWidth = font().width(String.valueOf(c));
-            if (currentWidth + charWidth > targetWidth) {
-                break;
-            }
-            sb.append(c);
-            currentWidth += charWidth;
+    /**
+     * 逐字高亮当前行：先画整行，再用裁剪区域叠加已唱部分（正在唱的字按进度部分高亮）
+     * 排版和字宽来自 {@link LyricLayout} 缓存，每帧不分配字符串
+     *
+     * @return 该行没有逐字时间或被截断时返回 false，由调用方按普通行绘制
+     */
+    private boolean drawKaraokeLine(GuiGraphics g, LyricTimeline lyrics, int line, int cx, int y, long timeMs) {
+        int from = lyrics.firstWord(line);
+        int to = lyrics.endWord(line);
+        if (from >= to || lyricLayout.isTruncated(font(), line)) return false;
+
+        FormattedCharSequence text = lyricLayout.line(font(), line);
+        int x = cx - lyricLayout.lineWidth(font(), line) / 2;
+        g.drawString(font(), text, x, y, COLOR_TEXT);
+
+        int w = lyrics.wordAt(line, timeMs);
+        if (w < from) return true;
+
+        int before = w > from ? lyricLayout.wordEndPx(font(), line, w - 1) : 0;
+        int after = lyricLayout.wordEndPx(font(), line, w);
+        int duration = lyrics.wordDuration(w);
+        float progress = duration <= 0 ? 1f
+                : Math.min(1f, (timeMs - lyrics.wordStart(w)) / (float) duration);
+        int litWidth = before + Math.round((after - before) * progress);
+
+        if (litWidth > 0) {
+            g.enableScissor(x, y - 1, x + litWidth, y + font().lineHeight + 1);
+            g.drawString(font(), text, x, y, COLOR_ACCENT);
+            g.disableScissor();
         }
-
-        return sb + ellipsis;
+        return true;
     }
 
     private void drawProgressBar(GuiGraphics g, int mouseX, int mouseY) {
-        var state = MusicController.getState();
-        long durationMs = MusicController.getDurationMs();
-
-        boolean hasPlayback = (state == StreamingMp3Player.State.PLAYING ||
-                state == StreamingMp3Player.State.BUFFERING ||
-                state == StreamingMp3Player.State.PAUSED) && durationMs > 0;
+        long durationMs = view.durationMs;
+        boolean hasPlayback = view.active && durationMs > 0;
 
         g.fill(progressBarX, progressBarY, progressBarX + progressBarW, progressBarY + progressBarH, COLOR_SLIDER_BG);
 
@@ -241,15 +335,15 @@ public class NowPlayingTab extends AbstractTab {
             progress = dragProgress;
             playedMs = (long) (durationMs * dragProgress);
         } else {
-            progress = MusicController.getProgress();
+            progress = view.progress;
         }
 
-        String played = MusicController.formatTime(playedMs);
-        String total = MusicController.formatTime(durationMs);
+        String played = view.playedText(playedMs);
+        String total = view.totalText();
         g.drawString(font(), played, progressBarX - 28, progressBarY - 2, COLOR_TEXT_DIM);
         g.drawString(font(), total, progressBarX + progressBarW + 3, progressBarY - 2, COLOR_TEXT_DIM);
 
-        int filledW = (int) (progressBarW * Math.min(1f, Math.max(0f, progress)));
+        int filledW = (int) (progressBarW * progress);
         g.fill(progressBarX, progressBarY, progressBarX + filledW, progressBarY + progressBarH, COLOR_ACCENT);
 
         int handleX = progressBarX + filledW - 3;
@@ -259,8 +353,7 @@ public class NowPlayingTab extends AbstractTab {
 
     private void drawVolumeSlider(GuiGraphics g) {
         g.fill(volumeSliderX, volumeSliderY, volumeSliderX + volumeSliderW, volumeSliderY + volumeSliderH, COLOR_SLIDER_BG);
-        float vol = MusicController.getVolume();
-        int filledW = (int) (volumeSliderW * vol);
+        int filledW = (int) (volumeSliderW * view.volume);
         g.fill(volumeSliderX, volumeSliderY, volumeSliderX + filledW, volumeSliderY + volumeSliderH, COLOR_ACCENT);
 
         int handleX = volumeSliderX + filledW - 2;
@@ -268,31 +361,30 @@ public class NowPlayingTab extends AbstractTab {
     }
 
     private void drawModeIndicators(GuiGraphics g) {
-        if (Playlist.isShuffle()) {
+        if (view.shuffle) {
             int dotX = shuffleBtn.getX() + shuffleBtn.getWidth() / 2 - 2;
             int dotY = shuffleBtn.getY() + shuffleBtn.getHeight() + 2;
             g.fill(dotX, dotY, dotX + 4, dotY + 3, COLOR_ACCENT);
         }
 
-        if (Playlist.getRepeatMode() != Playlist.RepeatMode.NONE) {
+        if (view.repeatMode != Playlist.RepeatMode.NONE) {
             int dotX = repeatBtn.getX() + repeatBtn.getWidth() / 2 - 2;
             int dotY = repeatBtn.getY() + repeatBtn.getHeight() + 2;
-            int color = Playlist.getRepeatMode() == Playlist.RepeatMode.ONE ? 0xFF00FFFF : COLOR_ACCENT;
+            int color = view.repeatMode == Playlist.RepeatMode.ONE ? 0xFF00FFFF : COLOR_ACCENT;
             g.fill(dotX, dotY, dotX + 4, dotY + 3, color);
         }
     }
 
+    /**
+     * 图标是共享的 Component 常量，只在状态变化时替换
+     */
     private void updateButtons() {
-        var state = MusicController.getState();
-        String icon = (state == StreamingMp3Player.State.PLAYING || state == StreamingMp3Player.State.BUFFERING) ? "⏸" : "▶";
-        playPauseBtn.setMessage(Component.literal(icon));
-
-        String repeatIcon = switch (Playlist.getRepeatMode()) {
-            case NONE -> "🔁";
-            case ALL -> "🔁";
-            case ONE -> "🔂";
-        };
-        repeatBtn.setMessage(Component.literal(repeatIcon));
+        if (playPauseBtn.getMessage() != view.playPauseIcon()) {
+            playPauseBtn.setMessage(view.playPauseIcon());
+        }
+        if (repeatBtn.getMessage() != view.repeatIcon()) {
+            repeatBtn.setMessage(view.repeatIcon());
+        }
     }
 
     private void togglePlayPause() {
@@ -368,14 +460,6 @@ public class NowPlayingTab extends AbstractTab {
 
     @Override
     public List<AbstractWidget> getWidgets() {
-        List<AbstractWidget> widgets = new ArrayList<>();
-        widgets.add(backBtn);
-        widgets.add(playlistBtn);
-        widgets.add(shuffleBtn);
-        widgets.add(prevBtn);
-        widgets.add(playPauseBtn);
-        widgets.add(nextBtn);
-        widgets.add(repeatBtn);
         return widgets;
     }
 }
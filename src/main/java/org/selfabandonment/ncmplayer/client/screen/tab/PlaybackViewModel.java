@@ -0,0 +1,138 @@
+package org.selfabandonment.ncmplayer.client.screen.tab;
+
+import net.minecraft.network.chat.Component;
+import org.selfabandonment.ncmplayer.client.audio.MusicController;
+import org.selfabandonment.ncmplayer.client.audio.Playlist;
+import org.selfabandonment.ncmplayer.client.audio.StreamingMp3Player;
+import org.selfabandonment.ncmplayer.client.image.CoverArt;
+import org.selfabandonment.ncmplayer.ncm.NcmApiClient;
+
+import static org.selfabandonment.ncmplayer.client.screen.UIConstants.truncate;
+
+/**
+ * 播放页面的视图模型
+ *
+ * 每帧开始时调用 {@link #update()} 一次性读取播放器状态，页面只读这里的字段。
+ * 派生的文本按输入变化重建：时间文本按秒、按钮图标按状态、截断后的歌名按歌曲，
+ * 输入不变时渲染过程不分配对象。仅在渲染线程使用。
+ *
+ * @author SelfAbandonment
+ */
+final class PlaybackViewModel {
+
+    private static final Component ICON_PLAY = Component.literal("▶");
+    private static final Component ICON_PAUSE = Component.literal("⏸");
+    private static final Component ICON_REPEAT = Component.literal("🔁");
+    private static final Component ICON_REPEAT_ONE = Component.literal("🔂");
+
+    // 每帧快照
+    StreamingMp3Player.State state = StreamingMp3Player.State.IDLE;
+    /** 正在播放、缓冲或暂停 */
+    boolean active;
+    /** 正在播放或缓冲 */
+    boolean playing;
+    long durationMs;
+    float progress;
+    float volume;
+    boolean shuffle;
+    Playlist.RepeatMode repeatMode = Playlist.RepeatMode.NONE;
+    NcmApiClient.SearchSong song;
+
+    // 按歌曲缓存
+    private long labelSongId = Long.MIN_VALUE;
+    private String songLine = "";
+    private String title = "";
+    private String artist = "";
+    private String coverUrl;
+
+    private final TimeText played = new TimeText();
+    private final TimeText total = new TimeText();
+
+    /**
+     * 读取本帧的播放状态
+     */
+    void update() {
+        state = MusicController.getState();
+        playing = state == StreamingMp3Player.State.PLAYING || state == StreamingMp3Player.State.BUFFERING;
+        active = playing || state == StreamingMp3Player.State.PAUSED;
+        durationMs = MusicController.getDurationMs();
+        progress = Math.min(1f, Math.max(0f, MusicController.getProgress()));
+        volume = MusicController.getVolume();
+        // 播放列表的状态取自同一个快照，互相一致
+        var playlist = Playlist.snapshot();
+        shuffle = playlist.isShuffle();
+        repeatMode = playlist.repeatMode();
+        song = playlist.currentSong();
+
+        long songId = song == null ? Long.MIN_VALUE : song.id();
+        if (songId != labelSongId) {
+            labelSongId = songId;
+            coverUrl = null;
+            if (song != null) {
+                songLine = truncate(song.name() + " - " + song.artist(), 40);
+                title = truncate(song.name(), 30);
+                artist = truncate(song.artist(), 25);
+            } else {
+                songLine = title = artist = "";
+            }
+        }
+    }
+
+    /**
+     * "歌名 - 歌手"（截断到 40 字）
+     */
+    String songLine() {
+        return songLine;
+    }
+
+    String title() {
+        return title;
+    }
+
+    String artist() {
+        return artist;
+    }
+
+    /**
+     * 当前歌曲的封面地址，未知时返回 null（查到后不再访问 {@link CoverArt}）
+     */
+    String coverUrl() {
+        if (coverUrl == null && song != null) {
+            coverUrl = CoverArt.urlFor(song.id());
+        }
+        return coverUrl;
+    }
+
+    String playedText(long ms) {
+        return played.format(ms);
+    }
+
+    String totalText() {
+        return total.format(durationMs);
+    }
+
+    Component playPauseIcon() {
+        return playing ? ICON_PAUSE : ICON_PLAY;
+    }
+
+    Component repeatIcon() {
+        return repeatMode == Playlist.RepeatMode.ONE ? ICON_REPEAT_ONE : ICON_REPEAT;
+    }
+
+    /**
+     * 按秒缓存的 m:ss 文本
+     */
+    private static final class TimeText {
+        private long second = Long.MIN_VALUE;
+        private String text = "";
+
+        String format(long ms) {
+            long s = Math.max(0, ms) / 1000;
+            if (s != second) {
+                second = s;
+                text = MusicController.formatTime(ms);
+            }
+            return text;
+        }
+    }
+}
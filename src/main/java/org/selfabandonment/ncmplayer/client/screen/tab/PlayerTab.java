@@ -10,10 +10,12 @@ import org.selfabandonment.ncmplayer.client.audio.MusicController;
 import org.selfabandonment.ncmplayer.client.audio.Playlist;
 import org.selfabandonment.ncmplayer.client.audio.StreamingMp3Player;
 import org.selfabandonment.ncmplayer.client.screen.UIConstants;
+import org.selfabandonment.ncmplayer.client.screen.VirtualList;
 import org.selfabandonment.ncmplayer.config.ModConfig;
 import org.selfabandonment.ncmplayer.ncm.CookieSanitizer;
 import org.selfabandonment.ncmplayer.ncm.NcmApiClient;
 import org.selfabandonment.ncmplayer.ncm.SessionStore;
+import org.selfabandonment.ncmplayer.ncm.SongMetaStore;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -35,9 +37,8 @@ public class PlayerTab extends AbstractTab {
     private Button loginBtn;
     private Button userBtn;
     private Button playlistBtn;
-    private final List<Button> searchResultButtons = new ArrayList<>();
+    private VirtualList<NcmApiClient.SearchSong> searchList;
     private List<NcmApiClient.SearchSong> searchResults = new ArrayList<>();
-    private int searchScrollOffset = 0;
 
     // 播放控制
     private Button prevBtn;
@@ -53,25 +54,18 @@ public class PlayerTab extends AbstractTab {
     private int volumeSliderX, volumeSliderY, volumeSliderW, volumeSliderH;
     private int progressBarX, progressBarY, progressBarW, progressBarH;
 
-    // 搜索列表区域
-    private int listX, listY, listW, listH;
-
-    // API 状态
+    // API 状态（apiError 为截断后的显示文本）
     private volatile boolean apiAvailable = true;
     private volatile String apiError = null;
 
+    // 播放状态和派生文本
+    private final PlaybackViewModel view = new PlaybackViewModel();
+    private List<AbstractWidget> widgets = List.of();
+
     public PlayerTab(MusicScreenContext ctx) {
         super(ctx);
     }
 
-    @Override
-    public void onDeactivate() {
-        // 切换 Tab 时隐藏所有搜索结果按钮
-        for (Button btn : searchResultButtons) {
-            btn.visible = false;
-        }
-    }
-
     @Override
     public void init() {
         int cx = width() / 2;
@@ -104,11 +98,27 @@ public class PlayerTab extends AbstractTab {
         searchBtn = ctx.addWidget(Button.builder(Component.literal("🔍"), b -> doSearchAsync())
                 .bounds(contentL + boxW + 5, searchY, 45, 18).build());
 
-        // 搜索列表区域
-        listX = contentL;
-        listY = searchY + 28;
-        listW = contentW;
-        listH = height() - HEADER_HEIGHT - FOOTER_HEIGHT - 50;
+        // 搜索列表
+        int listY = searchY + 28;
+        int listH = height() - HEADER_HEIGHT - FOOTER_HEIGHT - 50;
+        searchList = ctx.addWidget(new VirtualList<NcmApiClient.SearchSong>(contentL, listY, contentW, listH, 22,
+                new VirtualList.Source<NcmApiClient.SearchSong>() {
+                    @Override
+                    public int size() {
+                        return searchResults.size();
+                    }
+
+                    @Override
+                    public NcmApiClient.SearchSong get(int index) {
+                        return searchResults.get(index);
+                    }
+                },
+                (i, song) -> song.name() + " - " + song.artist(),
+                i -> {
+                    var song = searchResults.get(i);
+                    Playlist.add(song);
+                    Playlist.play(song);
+                }));
 
         // 进度条
         progressBarW = contentW - 80;
@@ -156,6 +166,9 @@ public class PlayerTab extends AbstractTab {
         volumeSliderX = startX + (btnW + gap) * 6;
         volumeSliderY = btnY + 8;
 
+        widgets = List.of(keywordBox, searchBtn, loginBtn, userBtn, playlistBtn, prevBtn, playPauseBtn,
+                nextBtn, shuffleBtn, repeatBtn, searchList);
+
         // 检查 API
         checkApiHealth();
     }
@@ -165,6 +178,7 @@ public class PlayerTab extends AbstractTab {
         int cx = width() / 2;
         int contentW = Math.min(360, width() - 30);
         int contentL = cx - contentW / 2;
+        view.update();
 
         // 标题
         g.drawCenteredString(font(), "♪ 网易云音乐", cx, 12, COLOR_TEXT);
@@ -174,8 +188,7 @@ public class PlayerTab extends AbstractTab {
             int warnY = HEADER_HEIGHT + 35;
             g.fill(contentL, warnY, contentL + contentW, warnY + 35, 0xCC442222);
             g.drawCenteredString(font(), "⚠ API 服务器不可用", cx, warnY + 5, 0xFFFF6666);
-            String errMsg = apiError.length() > 35 ? apiError.substring(0, 35) + "..." : apiError;
-            g.drawCenteredString(font(), errMsg, cx, warnY + 18, COLOR_TEXT_DIM);
+            g.drawCenteredString(font(), apiError, cx, warnY + 18, COLOR_TEXT_DIM);
         }
 
         // 底部面板
@@ -199,27 +212,15 @@ public class PlayerTab extends AbstractTab {
     }
 
     private void drawSongInfo(GuiGraphics g, int cx, int footerTop) {
-        var state = MusicController.getState();
-        boolean isPlaying = (state == StreamingMp3Player.State.PLAYING ||
-                state == StreamingMp3Player.State.BUFFERING ||
-                state == StreamingMp3Player.State.PAUSED);
-
-        var currentSong = Playlist.getCurrentSong();
-        if (!isPlaying || currentSong == null) {
+        if (!view.active || view.song == null) {
             return;
         }
-
-        String songInfo = truncate(currentSong.name() + " - " + currentSong.artist(), 40);
-        g.drawCenteredString(font(), songInfo, cx, footerTop + 3, COLOR_TEXT_DIM);
+        g.drawCenteredString(font(), view.songLine(), cx, footerTop + 3, COLOR_TEXT_DIM);
     }
 
     private void drawProgressBar(GuiGraphics g, int mouseX, int mouseY) {
-        var state = MusicController.getState();
-        long durationMs = MusicController.getDurationMs();
-
-        boolean hasPlayback = (state == StreamingMp3Player.State.PLAYING ||
-                state == StreamingMp3Player.State.BUFFERING ||
-                state == StreamingMp3Player.State.PAUSED) && durationMs > 0;
+        long durationMs = view.durationMs;
+        boolean hasPlayback = view.active && durationMs > 0;
 
         g.fill(progressBarX, progressBarY, progressBarX + progressBarW, progressBarY + progressBarH, COLOR_SLIDER_BG);
 
@@ -235,15 +236,15 @@ public class PlayerTab extends AbstractTab {
             progress = dragProgress;
             playedMs = (long) (durationMs * dragProgress);
         } else {
-            progress = MusicController.getProgress();
+            progress = view.progress;
         }
 
-        String played = MusicController.formatTime(playedMs);
-        String total = MusicController.formatTime(durationMs);
+        String played = view.playedText(playedMs);
+        String total = view.totalText();
         g.drawString(font(), played, progressBarX - 28, progressBarY - 2, COLOR_TEXT_DIM);
         g.drawString(font(), total, progressBarX + progressBarW + 3, progressBarY - 2, COLOR_TEXT_DIM);
 
-        int filledW = (int) (progressBarW * Math.min(1f, Math.max(0f, progress)));
+        int filledW = (int) (progressBarW * progress);
         g.fill(progressBarX, progressBarY, progressBarX + filledW, progressBarY + progressBarH, COLOR_ACCENT);
 
         int handleX = progressBarX + filledW - 3;
@@ -253,8 +254,7 @@ public class PlayerTab extends AbstractTab {
 
     private void drawVolumeSlider(GuiGraphics g) {
         g.fill(volumeSliderX, volumeSliderY, volumeSliderX + volumeSliderW, volumeSliderY + volumeSliderH, COLOR_SLIDER_BG);
-        float vol = MusicController.getVolume();
-        int filledW = (int) (volumeSliderW * vol);
+        int filledW = (int) (volumeSliderW * view.volume);
         g.fill(volumeSliderX, volumeSliderY, volumeSliderX + filledW, volumeSliderY + volumeSliderH, COLOR_ACCENT);
 
         int handleX = volumeSliderX + filledW - 2;
@@ -262,32 +262,30 @@ public class PlayerTab extends AbstractTab {
     }
 
     private void drawModeIndicators(GuiGraphics g) {
-        if (Playlist.isShuffle()) {
+        if (view.shuffle) {
             int dotX = shuffleBtn.getX() + shuffleBtn.getWidth() / 2 - 2;
             int dotY = shuffleBtn.getY() + shuffleBtn.getHeight() + 2;
             g.fill(dotX, dotY, dotX + 4, dotY + 3, COLOR_ACCENT);
         }
 
-        if (Playlist.getRepeatMode() != Playlist.RepeatMode.NONE) {
+        if (view.repeatMode != Playlist.RepeatMode.NONE) {
             int dotX = repeatBtn.getX() + repeatBtn.getWidth() / 2 - 2;
             int dotY = repeatBtn.getY() + repeatBtn.getHeight() + 2;
-            int color = Playlist.getRepeatMode() == Playlist.RepeatMode.ONE ? 0xFF00FFFF : COLOR_ACCENT;
+            int color = view.repeatMode == Playlist.RepeatMode.ONE ? 0xFF00FFFF : COLOR_ACCENT;
             g.fill(dotX, dotY, dotX + 4, dotY + 3, color);
         }
     }
 
+    /**
+     * 图标是共享的 Component 常量，只在状态变化时替换
+     */
     private void updateButtons() {
-        var state = MusicController.getState();
-        String icon = (state == StreamingMp3Player.State.PLAYING || state == StreamingMp3Player.State.BUFFERING) ? "⏸" : "▶";
-        playPauseBtn.setMessage(Component.literal(icon));
-
-        shuffleBtn.setMessage(Component.literal("🔀"));
-        String repeatIcon = switch (Playlist.getRepeatMode()) {
-            case NONE -> "🔁";
-            case ALL -> "🔁";
-            case ONE -> "🔂";
-        };
-        repeatBtn.setMessage(Component.literal(repeatIcon));
+        if (playPauseBtn.getMessage() != view.playPauseIcon()) {
+            playPauseBtn.setMessage(view.playPauseIcon());
+        }
+        if (repeatBtn.getMessage() != view.repeatIcon()) {
+            repeatBtn.setMessage(view.repeatIcon());
+        }
     }
 
     private void togglePlayPause() {
@@ -363,16 +361,6 @@ public class PlayerTab extends AbstractTab {
         return false;
     }
 
-    @Override
-    public boolean mouseScrolled(double mouseX, double mouseY, double scrollX, double scrollY) {
-        if (mouseY >= listY && mouseY <= listY + listH) {
-            searchScrollOffset -= (int) scrollY;
-            rebuildSearchButtons();
-            return true;
-        }
-        return false;
-    }
-
     private void updateProgressFromMouse(double mouseX) {
         float p = (float) (mouseX - progressBarX) / progressBarW;
         dragProgress = Math.max(0f, Math.min(1f, p));
@@ -386,24 +374,12 @@ public class PlayerTab extends AbstractTab {
 
     @Override
     public List<AbstractWidget> getWidgets() {
-        List<AbstractWidget> widgets = new ArrayList<>();
-        widgets.add(keywordBox);
-        widgets.add(searchBtn);
-        widgets.add(loginBtn);
-        widgets.add(userBtn);
-        widgets.add(playlistBtn);
-        widgets.add(prevBtn);
-        widgets.add(playPauseBtn);
-        widgets.add(nextBtn);
-        widgets.add(shuffleBtn);
-        widgets.add(repeatBtn);
-        widgets.addAll(searchResultButtons);
         return widgets;
     }
 
     // 搜索相关方法
     private void doSearchAsync() {
-        clearSearchButtons();
+        showSearchResults(List.of());
 
         SessionStore.Session session = SessionStore.loadOrNull();
         if (session == null || !CookieSanitizer.hasMusicU(session.cookieForApi())) {
@@ -426,39 +402,15 @@ public class PlayerTab extends AbstractTab {
             }
         }, exec()).whenComplete((songs, err) -> Minecraft.getInstance().execute(() -> {
             if (err != null || songs == null || songs.isEmpty()) return;
-            searchResults = new ArrayList<>(songs);
-            searchScrollOffset = 0;
-            rebuildSearchButtons();
+            SongMetaStore.putSongs(songs);
+            showSearchResults(new ArrayList<>(songs));
         }));
     }
 
-    private void clearSearchButtons() {
-        // 先让所有按钮不可见
-        for (Button btn : searchResultButtons) {
-            btn.visible = false;
-        }
-        searchResultButtons.clear();
-    }
-
-    private void rebuildSearchButtons() {
-        clearSearchButtons();
-        if (searchResults.isEmpty()) return;
-
-        int visibleCount = 5;
-        searchScrollOffset = Math.max(0, Math.min(searchScrollOffset, searchResults.size() - visibleCount));
-
-        for (int i = 0; i < visibleCount && i + searchScrollOffset < searchResults.size(); i++) {
-            int idx = i + searchScrollOffset;
-            var song = searchResults.get(idx);
-            String label = truncate(song.name() + " - " + song.artist(), 35);
-
-            Button btn = Button.builder(Component.literal(label), b -> {
-                Playlist.add(song);
-                Playlist.play(song);
-            }).bounds(listX, listY + i * 22, listW, 20).build();
-
-            searchResultButtons.add(ctx.addWidget(btn));
-        }
+    private void showSearchResults(List<NcmApiClient.SearchSong> songs) {
+        searchResults = songs;
+        searchList.invalidate();
+        searchList.scrollToTop();
     }
 
     private void checkApiHealth() {
@@ -466,7 +418,7 @@ public class PlayerTab extends AbstractTab {
             NcmApiClient client = new NcmApiClient(baseUrl());
             String error = client.getHealthError();
             apiAvailable = (error == null);
-            apiError = error;
+            apiError = error == null || error.length() <= 35 ? error : error.substring(0, 35) + "...";
         }, exec());
     }
 }
@@ -6,9 +6,9 @@ import net.minecraft.client.gui.components.Button;
 import net.minecraft.network.chat.Component;
 import org.selfabandonment.ncmplayer.client.audio.Playlist;
 import org.selfabandonment.ncmplayer.client.screen.UIConstants;
+import org.selfabandonment.ncmplayer.client.screen.VirtualList;
 import org.selfabandonment.ncmplayer.ncm.NcmApiClient;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -18,11 +18,13 @@ import java.util.List;
  */
 public class PlaylistTab extends AbstractTab {
 
+    private static final int ROW_HEIGHT = 25;
+
     private Button backBtn;
-    private final List<Button> playlistButtons = new ArrayList<>();
-    private int playlistScrollOffset = 0;
+    private VirtualList<NcmApiClient.SearchSong> playlistList;
 
-    private int listX, listY, listW, listH;
+    // 本帧绘制列表用的快照，大小和各行内容取自同一版本
+    private Playlist.Snapshot frame = Playlist.snapshot();
 
     public PlaylistTab(MusicScreenContext ctx) {
         super(ctx);
@@ -38,23 +40,34 @@ public class PlaylistTab extends AbstractTab {
                 b -> ctx.switchTab(MusicScreenContext.TabType.PLAYER))
                 .bounds(contentL, 10, 60, 20).build());
 
-        listX = contentL;
-        listY = 45;
-        listW = contentW;
-        listH = height() - 80;
+        playlistList = ctx.addWidget(new VirtualList<NcmApiClient.SearchSong>(contentL, 45, contentW, height() - 80, ROW_HEIGHT,
+                new VirtualList.Source<NcmApiClient.SearchSong>() {
+                    @Override
+                    public int size() {
+                        // 列表每帧先取大小，在这里换用最新快照；内容变过时重新生成各行文本
+                        Playlist.Snapshot latest = Playlist.snapshot();
+                        if (latest.version() != frame.version()) {
+                            frame = latest;
+                            playlistList.invalidate();
+                        }
+                        return frame.size();
+                    }
+
+                    @Override
+                    public NcmApiClient.SearchSong get(int index) {
+                        return frame.get(index);
+                    }
+                },
+                (i, song) -> song.name() + " - " + song.artist(),
+                Playlist::playAt)
+                .withAction("×", Playlist::remove)
+                .withMarker(i -> i == frame.currentIndex()));
     }
 
     @Override
     public void onActivate() {
-        rebuildPlaylistButtons();
-    }
-
-    @Override
-    public void onDeactivate() {
-        // 切换 Tab 时隐藏所有播放列表按钮
-        for (Button btn : playlistButtons) {
-            btn.visible = false;
-        }
+        // 播放列表可能在其他页面被修改过
+        playlistList.invalidate();
     }
 
     @Override
@@ -67,59 +80,8 @@ public class PlaylistTab extends AbstractTab {
         }
     }
 
-    @Override
-    public boolean mouseScrolled(double mouseX, double mouseY, double scrollX, double scrollY) {
-        playlistScrollOffset -= (int) scrollY;
-        rebuildPlaylistButtons();
-        return true;
-    }
-
     @Override
     public List<AbstractWidget> getWidgets() {
-        List<AbstractWidget> widgets = new ArrayList<>();
-        widgets.add(backBtn);
-        widgets.addAll(playlistButtons);
-        return widgets;
-    }
-
-    private void rebuildPlaylistButtons() {
-        // 先让所有按钮不可见
-        for (Button btn : playlistButtons) {
-            btn.visible = false;
-        }
-        playlistButtons.clear();
-
-        List<NcmApiClient.SearchSong> songs = Playlist.getSongs();
-        if (songs.isEmpty()) return;
-
-        int visibleCount = listH / 25;
-        playlistScrollOffset = Math.max(0, Math.min(playlistScrollOffset, songs.size() - visibleCount));
-
-        int currentIndex = Playlist.getCurrentIndex();
-
-        for (int i = 0; i < visibleCount && i + playlistScrollOffset < songs.size(); i++) {
-            int idx = i + playlistScrollOffset;
-            var song = songs.get(idx);
-            boolean isCurrent = (idx == currentIndex);
-
-            String prefix = isCurrent ? "▶ " : "   ";
-            String label = UIConstants.truncate(prefix + song.name() + " - " + song.artist(), 30);
-
-            final int finalIdx = idx;
-
-            // 播放按钮
-            Button playBtn = Button.builder(Component.literal(label), b -> {
-                Playlist.playAt(finalIdx);
-            }).bounds(listX, listY + i * 25, listW - 25, 22).build();
-            playlistButtons.add(ctx.addWidget(playBtn));
-
-            // 删除按钮
-            Button delBtn = Button.builder(Component.literal("×"), b -> {
-                Playlist.remove(finalIdx);
-                rebuildPlaylistButtons();
-            }).bounds(listX + listW - 22, listY + i * 25, 20, 22).build();
-            playlistButtons.add(ctx.addWidget(delBtn));
-        }
+        return List.of(backBtn, playlistList);
     }
 }
-
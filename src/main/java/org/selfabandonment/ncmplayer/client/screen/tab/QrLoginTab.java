@@ -249,17 +249,14 @@ public class QrLoginTab extends AbstractTab {
     }
 
     private void saveSession(String cookie) {
-        try {
-            SessionStore.Session session = new SessionStore.Session(
-                    baseUrl(), cookie, System.currentTimeMillis(),
-                    0L, null, null, 0
-            );
-            SessionStore.save(session);
-            qrStatus = I18n.translateString(I18n.MUSIC_QR_SAVED_OK);
-            Minecraft.getInstance().execute(ctx::updateLoginStatus);
-        } catch (Exception e) {
-            qrStatus = I18n.translateString(I18n.MUSIC_QR_SAVE_FAILED_SHORT);
-        }
+        SessionStore.Session session = new SessionStore.Session(
+                baseUrl(), cookie, System.currentTimeMillis(),
+                0L, null, null, 0
+        );
+        // 会话立即生效，文件写入完成后再提示结果
+        SessionStore.save(session).whenComplete((ok, err) -> qrStatus = I18n.translateString(
+                err == null ? I18n.MUSIC_QR_SAVED_OK : I18n.MUSIC_QR_SAVE_FAILED_SHORT));
+        Minecraft.getInstance().execute(ctx::updateLoginStatus);
     }
 
     private void deleteQrTexture() {
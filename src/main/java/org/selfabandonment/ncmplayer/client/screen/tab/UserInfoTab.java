@@ -5,9 +5,11 @@ import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.AbstractWidget;
 import net.minecraft.client.gui.components.Button;
 import net.minecraft.network.chat.Component;
+import org.selfabandonment.ncmplayer.client.image.ImageCache;
 import org.selfabandonment.ncmplayer.ncm.CookieSanitizer;
 import org.selfabandonment.ncmplayer.ncm.NcmApiClient;
 import org.selfabandonment.ncmplayer.ncm.SessionStore;
+import org.selfabandonment.ncmplayer.util.I18n;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -22,6 +24,9 @@ import static org.selfabandonment.ncmplayer.client.screen.UIConstants.*;
  */
 public class UserInfoTab extends AbstractTab {
 
+    /** 头像边长（GUI 坐标） */
+    private static final int AVATAR_SIZE = 32;
+
     private Button backBtn;
     private Button logoutBtn;
 
@@ -72,6 +77,14 @@ public class UserInfoTab extends AbstractTab {
         int lineH = 18;
 
         if (userDetail != null) {
+            // 头像（按实际像素尺寸加载，未就绪时留空）
+            int avatarPx = AVATAR_SIZE * (int) Math.ceil(Minecraft.getInstance().getWindow().getGuiScale());
+            var avatar = ImageCache.get(userDetail.avatarUrl(), avatarPx);
+            if (avatar != null) {
+                avatar.blit(g, cx - AVATAR_SIZE / 2, y, AVATAR_SIZE, AVATAR_SIZE);
+            }
+            y += AVATAR_SIZE + 6;
+
             String nickname = userDetail.nickname();
             String vip = userDetail.vipTypeString();
             int vipColor = userDetail.vipType() > 0 ? 0xFFD700 : COLOR_TEXT_DIM;
@@ -156,7 +169,17 @@ public class UserInfoTab extends AbstractTab {
     }
 
     private void logout() {
-        SessionStore.clear();
+        // 会话文件没删掉时下次启动仍是登录状态，需要告诉玩家
+        SessionStore.clear().whenComplete((ok, err) -> {
+            if (err == null) return;
+            Minecraft mc = Minecraft.getInstance();
+            mc.execute(() -> {
+                if (mc.player != null) {
+                    mc.player.displayClientMessage(Component.literal("[NCM Player] "
+                            + I18n.translateString(I18n.MSG_MUSIC_LOGOUT_FAILED, err.getMessage())), false);
+                }
+            });
+        });
         userDetail = null;
         userSubcount = null;
         ctx.updateLoginStatus();
@@ -27,6 +27,15 @@ public final class ModConfig {
     private ModConfig() {
     }
 
+    /**
+     * 歌词附加文本
+     */
+    public enum LyricSecondary {
+        NONE,
+        TRANSLATION,
+        ROMANIZATION
+    }
+
     /**
      * 通用配置
      */
@@ -41,6 +50,21 @@ public final class ModConfig {
         /** 搜索结果数量限制 */
         public final ModConfigSpec.IntValue musicSearchLimit;
 
+        /** 解码后 PCM 缓存大小（MB，0 为禁用） */
+        public final ModConfigSpec.IntValue pcmCacheSizeMb;
+
+        /** 下一首音频开头预取大小（KB，0 为禁用） */
+        public final ModConfigSpec.IntValue audioPrefetchKb;
+
+        /** 歌词下方显示的附加文本 */
+        public final ModConfigSpec.EnumValue<LyricSecondary> lyricSecondary;
+
+        /** 歌词校准偏移（毫秒，正数表示歌词提前） */
+        public final ModConfigSpec.IntValue lyricOffsetMs;
+
+        /** 是否在游戏画面左上角显示正在播放和歌词 */
+        public final ModConfigSpec.BooleanValue hudEnabled;
+
         /**
          * 构造函数
          *
@@ -62,6 +86,26 @@ public final class ModConfig {
                     .comment("搜索结果数量限制")
                     .defineInRange("searchLimit", 30, 5, 100);
 
+            pcmCacheSizeMb = builder
+                    .comment("解码后 PCM 缓存大小 (MB)，用于单曲循环和向后跳转时免下载免解码回放，0 为禁用")
+                    .defineInRange("pcmCacheSizeMb", 64, 0, 512);
+
+            audioPrefetchKb = builder
+                    .comment("当前歌曲快结束时预取下一首开头的大小 (KB)，切歌时可立即开始播放，0 为禁用")
+                    .defineInRange("audioPrefetchKb", 512, 0, 4096);
+
+            lyricSecondary = builder
+                    .comment("歌词下方显示的附加文本: NONE 不显示, TRANSLATION 翻译, ROMANIZATION 音译")
+                    .defineEnum("lyricSecondary", LyricSecondary.TRANSLATION);
+
+            lyricOffsetMs = builder
+                    .comment("歌词校准偏移 (毫秒)，正数表示歌词提前显示，用于补偿蓝牙耳机等额外延迟；可在歌词页用 +/- 调整")
+                    .defineInRange("lyricOffsetMs", 0, -5000, 5000);
+
+            hudEnabled = builder
+                    .comment("是否在游戏画面左上角显示正在播放的歌曲、进度和歌词")
+                    .define("hudEnabled", true);
+
             builder.pop();
         }
     }
@@ -12,6 +12,8 @@ import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * 网易云音乐 API 客户端
@@ -95,45 +97,47 @@ public final class NcmApiClient {
         return GSON.fromJson(resp.body(), JsonObject.class);
     }
 
-    // ==================== 歌词 ====================
-
     /**
-     * 获取歌词
-     *
-     * @param songId 歌曲 ID
-     * @return LRC 格式歌词内容，如果没有歌词返回 null
+     * 异步版本的 {@link #getJson(String)}，用于并发发起多个请求
      */
-    public String getLyric(long songId) throws IOException, InterruptedException {
-        long ts = System.currentTimeMillis();
-        JsonObject obj = getJson("/lyric?id=" + songId + "&timestamp=" + ts);
-
-        // 优先获取翻译歌词，如果没有则获取原版歌词
-        if (obj.has("lrc") && !obj.get("lrc").isJsonNull()) {
-            JsonObject lrc = obj.getAsJsonObject("lrc");
-            if (lrc.has("lyric") && !lrc.get("lyric").isJsonNull()) {
-                return lrc.get("lyric").getAsString();
-            }
-        }
-        return null;
+    public CompletableFuture<JsonObject> getJsonAsync(String pathAndQuery) {
+        URI uri = URI.create(baseUrl + pathAndQuery);
+        HttpRequest req = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(30))
+                .header("User-Agent", "Mozilla/5.0 (NCM Player NeoForge Mod)")
+                .GET()
+                .build();
+        return http.sendAsync(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+                .thenApply(resp -> {
+                    if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
+                        throw new CompletionException(new IOException(
+                                "HTTP " + resp.statusCode() + " " + uri + " body=" + resp.body()));
+                    }
+                    return GSON.fromJson(resp.body(), JsonObject.class);
+                });
     }
 
+    // ==================== 歌词 ====================
+
     /**
-     * 获取翻译歌词
+     * 获取歌词（/lyric/new），一次请求同时返回原文、逐字、翻译和音译
      *
      * @param songId 歌曲 ID
-     * @return 翻译歌词内容，如果没有返回 null
+     * @return 歌词，没有的部分为空字符串
      */
-    public String getTranslatedLyric(long songId) throws IOException, InterruptedException {
+    public Lyrics getLyrics(long songId) throws IOException, InterruptedException {
         long ts = System.currentTimeMillis();
-        JsonObject obj = getJson("/lyric?id=" + songId + "&timestamp=" + ts);
+        JsonObject obj = getJson("/lyric/new?id=" + songId + "&timestamp=" + ts);
+        return new Lyrics(lyricText(obj, "lrc"), lyricText(obj, "yrc"),
+                lyricText(obj, "tlyric"), lyricText(obj, "romalrc"));
+    }
 
-        if (obj.has("tlyric") && !obj.get("tlyric").isJsonNull()) {
-            JsonObject tlyric = obj.getAsJsonObject("tlyric");
-            if (tlyric.has("lyric") && !tlyric.get("lyric").isJsonNull()) {
-                return tlyric.get("lyric").getAsString();
-            }
-        }
-        return null;
+    private static String lyricText(JsonObject obj, String key) {
+        if (!obj.has(key) || !obj.get(key).isJsonObject()) return "";
+        JsonObject block = obj.getAsJsonObject(key);
+        if (!block.has("lyric") || block.get("lyric").isJsonNull()) return "";
+        String text = block.get("lyric").getAsString();
+        return text.isBlank() ? "" : text;
     }
 
     // ==================== 扫码登录 ====================
@@ -265,13 +269,26 @@ public final class NcmApiClient {
     // ==================== 歌曲 URL ====================
 
     public SongUrlResult songUrlV1(long id, String level, String cookieForApi) throws IOException, InterruptedException {
+        return parseSongUrl(id, level, getJson(songUrlQuery(id, level, cookieForApi)));
+    }
+
+    /**
+     * 异步获取歌曲 URL，多个音质可同时请求
+     */
+    public CompletableFuture<SongUrlResult> songUrlV1Async(long id, String level, String cookieForApi) {
+        return getJsonAsync(songUrlQuery(id, level, cookieForApi))
+                .thenApply(obj -> parseSongUrl(id, level, obj));
+    }
+
+    private static String songUrlQuery(long id, String level, String cookieForApi) {
         long ts = System.currentTimeMillis();
-        String q = "/song/url/v1?id=" + id
+        return "/song/url/v1?id=" + id
                 + "&level=" + url(level)
                 + "&cookie=" + url(cookieForApi)
                 + "&timestamp=" + ts;
+    }
 
-        JsonObject obj = getJson(q);
+    private static SongUrlResult parseSongUrl(long id, String level, JsonObject obj) {
         var dataArr = obj.getAsJsonArray("data");
         if (dataArr == null || dataArr.isEmpty()) {
             return new SongUrlResult(id, level, null, 0, 0, 0, 0, "no data");
@@ -344,7 +361,7 @@ public final class NcmApiClient {
     }
 
     /**
-     * 获取歌曲详情（包含时长）
+     * 获取歌曲详情（包含时长和专辑封面）
      */
     public SongDetail getSongDetail(long songId, String cookieForApi) throws IOException, InterruptedException {
         long ts = System.currentTimeMillis();
@@ -355,7 +372,7 @@ public final class NcmApiClient {
         JsonObject obj = getJson(q);
         JsonArray songs = obj.has("songs") && obj.get("songs").isJsonArray() ? obj.getAsJsonArray("songs") : null;
         if (songs == null || songs.isEmpty()) {
-            return new SongDetail(songId, "", "", 0);
+            return new SongDetail(songId, "", "", 0, "");
         }
 
         JsonObject s = songs.get(0).getAsJsonObject();
@@ -371,7 +388,13 @@ public final class NcmApiClient {
             }
         }
 
-        return new SongDetail(songId, name, artist, duration);
+        String coverUrl = "";
+        if (s.has("al") && s.get("al").isJsonObject()) {
+            JsonObject al = s.getAsJsonObject("al");
+            if (al.has("picUrl") && !al.get("picUrl").isJsonNull()) coverUrl = al.get("picUrl").getAsString();
+        }
+
+        return new SongDetail(songId, name, artist, duration, coverUrl);
     }
 
     /**
@@ -382,7 +405,23 @@ public final class NcmApiClient {
     /**
      * 歌曲详情
      */
-    public record SongDetail(long id, String name, String artist, long durationMs) {}
+    public record SongDetail(long id, String name, String artist, long durationMs, String coverUrl) {}
+
+    /**
+     * 歌词
+     *
+     * @param lrc        逐行歌词（LRC），空字符串表示无
+     * @param yrc        逐字歌词（YRC），空字符串表示无
+     * @param translated 翻译（LRC），空字符串表示无
+     * @param romanized  音译（LRC），空字符串表示无
+     */
+    public record Lyrics(String lrc, String yrc, String translated, String romanized) {
+        public static final Lyrics NONE = new Lyrics("", "", "", "");
+
+        public boolean isEmpty() {
+            return lrc.isEmpty() && yrc.isEmpty();
+        }
+    }
 
     private static String url(String s) {
         return URLEncoder.encode(s == null ? "" : s, StandardCharsets.UTF_8);
@@ -3,20 +3,46 @@ package org.selfabandonment.ncmplayer.ncm;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import net.minecraft.client.Minecraft;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 会话存储
  *
+ * 内存中保存不可变的会话快照，读取不访问磁盘；保存和清除时整体替换快照，
+ * 文件在后台线程写入（先写临时文件再原子替换），连续多次修改只写最后一次；
+ * 保存和清除返回该次写入的结果，需要提示写入失败的调用方可以等待它。
+ * 文件只在启动后读取一次（{@link #preload()}，或第一次读取时）。
+ *
  * @author SelfAbandonment
  */
 public final class SessionStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger("ncmplayer");
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ncm-session-store");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final Object LOAD_LOCK = new Object();
+    private static volatile boolean loaded = false;
+    private static volatile Session current = null;
+
+    // 已排队、尚未开始的写入；期间的修改合并到这一次（由 WRITE_LOCK 保护）
+    private static final Object WRITE_LOCK = new Object();
+    private static CompletableFuture<Void> pendingWrite = null;
+
     /**
      * 会话信息
      */
@@ -73,12 +99,55 @@ public final class SessionStore {
         return filePath();
     }
 
-    public static void save(Session session) throws IOException {
-        Files.createDirectories(filePath().getParent());
-        Files.writeString(filePath(), GSON.toJson(session), StandardCharsets.UTF_8);
+    /**
+     * 在后台线程读取会话文件，避免第一次读取时阻塞调用方
+     */
+    public static void preload() {
+        if (!loaded) {
+            WRITER.execute(SessionStore::ensureLoaded);
+        }
+    }
+
+    /**
+     * 保存会话：立即替换内存快照，文件异步写入
+     *
+     * @return 写入完成（包含本次修改）时完成，写入失败时异常完成
+     */
+    public static CompletableFuture<Void> save(Session session) {
+        ensureLoaded();
+        current = session;
+        return scheduleWrite();
     }
 
+    /**
+     * 当前会话，未登录时返回 null
+     */
     public static Session loadOrNull() {
+        ensureLoaded();
+        return current;
+    }
+
+    /**
+     * 清除会话（退出登录）
+     *
+     * @return 会话文件删除后完成，失败时异常完成
+     */
+    public static CompletableFuture<Void> clear() {
+        ensureLoaded();
+        current = null;
+        return scheduleWrite();
+    }
+
+    private static void ensureLoaded() {
+        if (loaded) return;
+        synchronized (LOAD_LOCK) {
+            if (loaded) return;
+            current = readFile();
+            loaded = true;
+        }
+    }
+
+    private static Session readFile() {
         try {
             Path p = filePath();
             if (!Files.exists(p)) return null;
@@ -89,17 +158,41 @@ public final class SessionStore {
         }
     }
 
+    private static CompletableFuture<Void> scheduleWrite() {
+        synchronized (WRITE_LOCK) {
+            if (pendingWrite == null) {
+                CompletableFuture<Void> write = new CompletableFuture<>();
+                pendingWrite = write;
+                WRITER.execute(() -> {
+                    // 从这里开始的修改会排入下一次写入
+                    synchronized (WRITE_LOCK) {
+                        pendingWrite = null;
+                    }
+                    try {
+                        writeFile(current);
+                        write.complete(null);
+                    } catch (IOException e) {
+                        LOGGER.warn("Failed to write session file: {}", e.getMessage());
+                        write.completeExceptionally(e);
+                    }
+                });
+            }
+            return pendingWrite;
+        }
+    }
+
     /**
-     * 清除会话（退出登录）
+     * 写入（或删除）会话文件：先写临时文件再原子替换，中途退出不会留下半个文件
      */
-    public static void clear() {
-        try {
-            Path p = filePath();
-            if (Files.exists(p)) {
-                Files.delete(p);
-            }
-        } catch (Exception ignored) {
+    private static void writeFile(Session session) throws IOException {
+        Path p = filePath();
+        if (session == null) {
+            Files.deleteIfExists(p);
+            return;
         }
+        Files.createDirectories(p.getParent());
+        Path tmp = p.resolveSibling(p.getFileName() + ".tmp");
+        Files.writeString(tmp, GSON.toJson(session), StandardCharsets.UTF_8);
+        Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 }
-
@@ -0,0 +1,573 @@
+package org.selfabandonment.ncmplayer.ncm;
+
+import net.minecraft.client.Minecraft;
+import org.selfabandonment.ncmplayer.util.LongIntHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.UnaryOperator;
+
+/**
+ * 离线歌曲元数据存储
+ *
+ * 文件: config/ncmplayer_meta.dat，追加写日志
+ * - 每条记录是某首歌的完整快照，后写覆盖先写
+ * - 内存中保留 songId -> 记录位置的索引，歌词等大字段读取时按位置读盘
+ * - 时长、音质这些小字段常驻内存，客户端线程查询不读盘，也不等待写线程
+ * - 失效记录超过一半时压缩重写
+ * - 无法识别的文件改名为 .bak 保留；更新版本写的文件本次运行不读写
+ *
+ * 记录格式: [int 长度][long songId][long 更新时间]{[byte 标签][int 长度][数据]}*
+ *
+ * @author SelfAbandonment
+ */
+public final class SongMetaStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("ncmplayer");
+
+    private static final int MAGIC = 0x4E434D4D;  // "NCMM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 4 * 1024 * 1024;
+    private static final long COMPACT_MIN_BYTES = 256 * 1024;
+
+    private static final byte TAG_NAME = 1;
+    private static final byte TAG_ARTIST = 2;
+    private static final byte TAG_DURATION = 3;
+    private static final byte TAG_LYRIC = 4;
+    private static final byte TAG_LEVEL = 5;
+    private static final byte TAG_YRC = 6;
+    private static final byte TAG_TLYRIC = 7;
+    private static final byte TAG_ROMALRC = 8;
+    private static final byte TAG_COVER = 9;
+    private static final byte TAG_LEVEL_USER = 10;
+
+    /**
+     * 歌曲元数据
+     *
+     * @param lyrics 歌词；null 表示未知，{@link NcmApiClient.Lyrics#NONE} 表示确认无歌词
+     * @param level 上次成功播放的音质
+     * @param levelUserId 音质对应的账号（不同账号可用的音质不同），0 表示未知
+     * @param coverUrl 专辑封面地址；null 表示未知，空字符串表示没有封面
+     */
+    public record SongMeta(long id, String name, String artist, long durationMs,
+                           NcmApiClient.Lyrics lyrics, String level, long levelUserId, String coverUrl,
+                           long updatedAtEpochMs) {
+
+        static SongMeta empty(long id) {
+            return new SongMeta(id, null, null, 0, null, null, 0, null, 0);
+        }
+
+        /**
+         * 该账号上次成功的音质，其它账号记录的不算
+         */
+        public String levelFor(long userId) {
+            return levelUserId == userId ? level : null;
+        }
+
+        SongMeta withSong(String name, String artist, long durationMs) {
+            return new SongMeta(id, name, artist, durationMs > 0 ? durationMs : this.durationMs, lyrics, level, levelUserId, coverUrl, updatedAtEpochMs);
+        }
+
+        SongMeta withLyrics(NcmApiClient.Lyrics lyrics) {
+            return new SongMeta(id, name, artist, durationMs, lyrics, level, levelUserId, coverUrl, updatedAtEpochMs);
+        }
+
+        SongMeta withLevel(long userId, String level) {
+            return new SongMeta(id, name, artist, durationMs, lyrics, level, userId, coverUrl, updatedAtEpochMs);
+        }
+
+        SongMeta withCoverUrl(String coverUrl) {
+            return new SongMeta(id, name, artist, durationMs, lyrics, level, levelUserId, coverUrl, updatedAtEpochMs);
+        }
+    }
+
+    private static final Object LOCK = new Object();
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ncm-meta-store");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // 以下字段由 LOCK 保护
+    private static boolean opened = false;
+    private static FileChannel channel;
+    private static final LongIntHashMap INDEX = new LongIntHashMap(256);
+    private static long[] offsets = new long[256];
+    private static int[] lengths = new int[256];
+    private static int slotCount = 0;
+    private static long fileSize = 0;
+    private static long liveBytes = 0;
+
+    private static final SmallFields FIELDS = new SmallFields();
+
+    private SongMetaStore() {}
+
+    private static Path filePath() {
+        return Minecraft.getInstance().gameDirectory.toPath()
+                .resolve("config")
+                .resolve("ncmplayer_meta.dat");
+    }
+
+    /**
+     * 在后台线程打开并建立索引，避免首次读取时阻塞调用方
+     */
+    public static void preload() {
+        WRITER.execute(() -> {
+            synchronized (LOCK) {
+                ensureOpen();
+            }
+        });
+    }
+
+    /**
+     * 记录的时长，未知时为 0
+     * 只查内存，可在客户端线程调用；后台建立索引之前总是未知
+     */
+    public static long durationMs(long songId) {
+        return FIELDS.durationMs(songId);
+    }
+
+    /**
+     * 该账号上次成功的音质，未知时为 null
+     * 只查内存，可在客户端线程调用；后台建立索引之前总是未知
+     */
+    public static String levelFor(long songId, long userId) {
+        return FIELDS.levelFor(songId, userId);
+    }
+
+    /**
+     * 读取完整元数据（含歌词），不存在时返回 null
+     * 会读盘并等待写线程，只在后台线程调用
+     */
+    public static SongMeta get(long songId) {
+        synchronized (LOCK) {
+            if (!ensureOpen()) return null;
+            int slot = INDEX.get(songId);
+            if (slot == LongIntHashMap.MISSING) return null;
+            try {
+                return readRecord(offsets[slot], lengths[slot]);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to read song meta for songId={}: {}", songId, e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 记录搜索结果等歌曲基本信息（异步写入）
+     */
+    public static void putSongs(List<NcmApiClient.SearchSong> songs) {
+        List<NcmApiClient.SearchSong> copy = List.copyOf(songs);
+        WRITER.execute(() -> {
+            for (var song : copy) {
+                updateNow(song.id(), m -> m.withSong(song.name(), song.artist(), song.durationMs()), false);
+            }
+        });
+    }
+
+    /**
+     * 记录歌词（异步写入），null 视为无歌词
+     * 内容未变时也会刷新更新时间，作为重新校验的依据
+     */
+    public static void putLyrics(long songId, NcmApiClient.Lyrics lyrics) {
+        NcmApiClient.Lyrics value = lyrics == null ? NcmApiClient.Lyrics.NONE : lyrics;
+        WRITER.execute(() -> updateNow(songId, m -> m.withLyrics(value), true));
+    }
+
+    /**
+     * 记录该账号上次成功的音质（异步写入）
+     */
+    public static void putLevel(long songId, long userId, String level) {
+        update(songId, m -> level.equals(m.levelFor(userId)) ? m : m.withLevel(userId, level));
+    }
+
+    /**
+     * 记录歌曲详情（异步写入）：基本信息和专辑封面地址，空封面地址表示没有封面
+     */
+    public static void putSongDetail(NcmApiClient.SongDetail detail) {
+        String cover = detail.coverUrl() == null ? "" : detail.coverUrl();
+        update(detail.id(), m -> {
+            SongMeta next = cover.equals(m.coverUrl()) ? m : m.withCoverUrl(cover);
+            // 查询不到歌曲时名称为空，保留原有信息
+            if (detail.name() != null && !detail.name().isEmpty()) {
+                next = next.withSong(detail.name(), detail.artist(), detail.durationMs());
+            }
+            return next;
+        });
+    }
+
+    private static void update(long songId, UnaryOperator<SongMeta> change) {
+        WRITER.execute(() -> updateNow(songId, change, false));
+    }
+
+    private static void updateNow(long songId, UnaryOperator<SongMeta> change, boolean touch) {
+        synchronized (LOCK) {
+            if (!ensureOpen()) return;
+            SongMeta old = get(songId);
+            SongMeta base = old != null ? old : SongMeta.empty(songId);
+            SongMeta next = change.apply(base);
+            if (!touch && next.equals(old)) return;
+
+            try {
+                append(new SongMeta(next.id(), next.name(), next.artist(), next.durationMs(),
+                        next.lyrics(), next.level(), next.levelUserId(), next.coverUrl(), System.currentTimeMillis()));
+                if (fileSize > COMPACT_MIN_BYTES && fileSize > liveBytes * 2) {
+                    compact();
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to write song meta for songId={}: {}", songId, e.getMessage());
+            }
+        }
+    }
+
+    // ==================== 文件操作（调用方持有 LOCK） ====================
+
+    private static boolean ensureOpen() {
+        if (opened) return channel != null;
+        opened = true;
+
+        try {
+            Path p = filePath();
+            Files.createDirectories(p.getParent());
+            channel = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (!loadIndex()) {
+                closeQuietly();
+                return false;
+            }
+            LOGGER.debug("Song meta store opened: {} songs, {} bytes", slotCount, fileSize);
+            if (fileSize > COMPACT_MIN_BYTES && fileSize > liveBytes * 2) {
+                compact();
+            }
+            return true;
+        } catch (Exception e) {
+            LOGGER.warn("Song meta store unavailable: {}", e.getMessage());
+            closeQuietly();
+            return false;
+        }
+    }
+
+    /**
+     * 建立索引；文件来自更新的版本时返回 false，本次运行不读写它
+     */
+    private static boolean loadIndex() throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        boolean recognized = size >= HEADER_SIZE && channel.read(header, 0) == HEADER_SIZE
+                && header.getInt(0) == MAGIC;
+        if (recognized && header.getInt(4) > VERSION) {
+            LOGGER.warn("Song meta store was written by a newer version ({}), not using it this session", header.getInt(4));
+            return false;
+        }
+        if (!recognized || header.getInt(4) != VERSION) {
+            // 无法识别的文件改名为 .bak 保留，然后重新开始
+            if (size > 0) {
+                LOGGER.warn("Unrecognized song meta store, moving it aside");
+                moveAside();
+            }
+            header.clear();
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            channel.write(header, 0);
+            fileSize = HEADER_SIZE;
+            return true;
+        }
+
+        // 顺序读取所有记录：建立位置索引，同时取出常驻内存的小字段
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(HEADER_SIZE)), 64 * 1024));
+        byte[] record = new byte[4096];
+        long pos = HEADER_SIZE;
+        while (pos + 12 <= size) {
+            int len = in.readInt();
+            if (len < 16 || len > MAX_RECORD_SIZE || pos + 4 + len > size) break;
+            if (record.length < len) record = new byte[Math.max(len, record.length * 2)];
+            in.readFully(record, 0, len);
+            ByteBuffer buf = ByteBuffer.wrap(record, 0, len);
+            indexRecord(buf.getLong(0), pos, 4 + len);
+            indexFields(buf);
+            pos += 4 + len;
+        }
+
+        // 末尾不完整的记录（写入中断）直接截掉
+        if (pos < size) {
+            LOGGER.warn("Truncating damaged song meta tail at {} (size {})", pos, size);
+            channel.truncate(pos);
+        }
+        fileSize = pos;
+        return true;
+    }
+
+    private static void moveAside() throws IOException {
+        Path p = filePath();
+        closeQuietly();
+        Files.move(p, p.resolveSibling(p.getFileName() + ".bak"), StandardCopyOption.REPLACE_EXISTING);
+        channel = FileChannel.open(p, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static void indexRecord(long songId, long offset, int length) {
+        int slot = INDEX.get(songId);
+        if (slot == LongIntHashMap.MISSING) {
+            slot = slotCount++;
+            if (slot == offsets.length) {
+                offsets = Arrays.copyOf(offsets, slot * 2);
+                lengths = Arrays.copyOf(lengths, slot * 2);
+            }
+            INDEX.put(songId, slot);
+        } else {
+            liveBytes -= lengths[slot];
+        }
+        offsets[slot] = offset;
+        lengths[slot] = length;
+        liveBytes += length;
+    }
+
+    private static void append(SongMeta meta) throws IOException {
+        byte[] record = encode(meta);
+        ByteBuffer buf = ByteBuffer.wrap(record);
+        long pos = fileSize;
+        while (buf.hasRemaining()) {
+            pos += channel.write(buf, pos);
+        }
+        indexRecord(meta.id(), fileSize, record.length);
+        FIELDS.put(meta.id(), meta.durationMs(), meta.level(), meta.levelUserId());
+        fileSize = pos;
+    }
+
+    private static SongMeta readRecord(long offset, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, offset + buf.position()) < 0) {
+                throw new IOException("Unexpected end of song meta file");
+            }
+        }
+        buf.flip();
+        buf.getInt();
+        return decode(buf);
+    }
+
+    private static void compact() throws IOException {
+        Path p = filePath();
+        Path tmp = p.resolveSibling(p.getFileName() + ".tmp");
+        long[] newOffsets = new long[offsets.length];
+
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+            out.write(header);
+            long pos = HEADER_SIZE;
+            for (int slot = 0; slot < slotCount; slot++) {
+                newOffsets[slot] = pos;
+                // transferTo 一次不一定拷完
+                long copied = 0;
+                while (copied < lengths[slot]) {
+                    long n = channel.transferTo(offsets[slot] + copied, lengths[slot] - copied, out);
+                    if (n <= 0) throw new IOException("Short copy while compacting song meta");
+                    copied += n;
+                }
+                pos += copied;
+            }
+            out.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        closeQuietly();
+        try {
+            Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // 旧文件没有被替换，索引仍然有效，重新打开继续使用
+            Files.deleteIfExists(tmp);
+            channel = FileChannel.open(p, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            throw e;
+        }
+        channel = FileChannel.open(p, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        offsets = newOffsets;
+        fileSize = channel.size();
+        liveBytes = fileSize - HEADER_SIZE;
+        LOGGER.debug("Song meta store compacted to {} bytes", fileSize);
+    }
+
+    private static void closeQuietly() {
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+    // ==================== 编解码 ====================
+
+    private static byte[] encode(SongMeta meta) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);  // 长度占位
+        out.writeLong(meta.id());
+        out.writeLong(meta.updatedAtEpochMs());
+        writeString(out, TAG_NAME, meta.name());
+        writeString(out, TAG_ARTIST, meta.artist());
+        if (meta.durationMs() > 0) {
+            out.writeByte(TAG_DURATION);
+            out.writeInt(8);
+            out.writeLong(meta.durationMs());
+        }
+        if (meta.lyrics() != null) {
+            // 原文始终写入（空字符串表示无歌词），其它部分有时才写
+            writeString(out, TAG_LYRIC, meta.lyrics().lrc());
+            writeNonEmpty(out, TAG_YRC, meta.lyrics().yrc());
+            writeNonEmpty(out, TAG_TLYRIC, meta.lyrics().translated());
+            writeNonEmpty(out, TAG_ROMALRC, meta.lyrics().romanized());
+        }
+        writeString(out, TAG_LEVEL, meta.level());
+        if (meta.levelUserId() != 0) {
+            out.writeByte(TAG_LEVEL_USER);
+            out.writeInt(8);
+            out.writeLong(meta.levelUserId());
+        }
+        writeString(out, TAG_COVER, meta.coverUrl());
+        out.flush();
+
+        byte[] record = bytes.toByteArray();
+        ByteBuffer.wrap(record).putInt(0, record.length - 4);
+        return record;
+    }
+
+    private static void writeString(DataOutputStream out, byte tag, String value) throws IOException {
+        if (value == null) return;
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(tag);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private static void writeNonEmpty(DataOutputStream out, byte tag, String value) throws IOException {
+        if (value != null && !value.isEmpty()) {
+            writeString(out, tag, value);
+        }
+    }
+
+    private static SongMeta decode(ByteBuffer buf) {
+        long id = buf.getLong();
+        long updatedAt = buf.getLong();
+        String name = null, artist = null, level = null, coverUrl = null;
+        String lyric = null, yrc = null, tlyric = null, romalrc = null;
+        long duration = 0;
+        long levelUserId = 0;
+
+        while (buf.remaining() >= 5) {
+            byte tag = buf.get();
+            int len = buf.getInt();
+            if (len < 0 || len > buf.remaining()) break;
+            switch (tag) {
+                case TAG_NAME -> name = readString(buf, len);
+                case TAG_ARTIST -> artist = readString(buf, len);
+                case TAG_DURATION -> duration = len == 8 ? buf.getLong() : skip(buf, len);
+                case TAG_LYRIC -> lyric = readString(buf, len);
+                case TAG_LEVEL -> level = readString(buf, len);
+                case TAG_YRC -> yrc = readString(buf, len);
+                case TAG_TLYRIC -> tlyric = readString(buf, len);
+                case TAG_ROMALRC -> romalrc = readString(buf, len);
+                case TAG_COVER -> coverUrl = readString(buf, len);
+                case TAG_LEVEL_USER -> levelUserId = len == 8 ? buf.getLong() : skip(buf, len);
+                default -> skip(buf, len);  // 未知字段（新版本写入）
+            }
+        }
+        NcmApiClient.Lyrics lyrics = lyric == null && yrc == null ? null
+                : new NcmApiClient.Lyrics(orEmpty(lyric), orEmpty(yrc), orEmpty(tlyric), orEmpty(romalrc));
+        return new SongMeta(id, name, artist, duration, lyrics, level, levelUserId, coverUrl, updatedAt);
+    }
+
+    /**
+     * 只解出常驻内存的小字段，跳过歌词
+     */
+    private static void indexFields(ByteBuffer buf) {
+        long id = buf.getLong();
+        buf.getLong();  // 更新时间
+        long duration = 0;
+        String level = null;
+        long levelUserId = 0;
+
+        while (buf.remaining() >= 5) {
+            byte tag = buf.get();
+            int len = buf.getInt();
+            if (len < 0 || len > buf.remaining()) break;
+            switch (tag) {
+                case TAG_DURATION -> duration = len == 8 ? buf.getLong() : skip(buf, len);
+                case TAG_LEVEL -> level = readString(buf, len).intern();
+                case TAG_LEVEL_USER -> levelUserId = len == 8 ? buf.getLong() : skip(buf, len);
+                default -> skip(buf, len);
+            }
+        }
+        FIELDS.put(id, duration, level, levelUserId);
+    }
+
+    private static String orEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    private static String readString(ByteBuffer buf, int len) {
+        String s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+        buf.position(buf.position() + len);
+        return s;
+    }
+
+    private static long skip(ByteBuffer buf, int len) {
+        buf.position(buf.position() + len);
+        return 0;
+    }
+
+    /**
+     * 常驻内存的小字段，按 songId 分配槽位
+     * 自身加锁，锁内只做内存操作，不会被读盘、压缩、刷盘拖住
+     */
+    private static final class SmallFields {
+        private final LongIntHashMap index = new LongIntHashMap(256);
+        private long[] durations = new long[256];
+        private String[] levels = new String[256];
+        private long[] levelUsers = new long[256];
+        private int count = 0;
+
+        synchronized void put(long songId, long durationMs, String level, long levelUserId) {
+            int slot = index.get(songId);
+            if (slot == LongIntHashMap.MISSING) {
+                slot = count++;
+                if (slot == durations.length) {
+                    durations = Arrays.copyOf(durations, slot * 2);
+                    levels = Arrays.copyOf(levels, slot * 2);
+                    levelUsers = Arrays.copyOf(levelUsers, slot * 2);
+                }
+                index.put(songId, slot);
+            }
+            durations[slot] = durationMs;
+            levels[slot] = level;
+            levelUsers[slot] = levelUserId;
+        }
+
+        synchronized long durationMs(long songId) {
+            int slot = index.get(songId);
+            return slot == LongIntHashMap.MISSING ? 0 : durations[slot];
+        }
+
+        synchronized String levelFor(long songId, long userId) {
+            int slot = index.get(songId);
+            return slot == LongIntHashMap.MISSING || levelUsers[slot] != userId ? null : levels[slot];
+        }
+    }
+}
@@ -1,56 +1,257 @@
 package org.selfabandonment.ncmplayer.ncm;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 歌曲 URL 提供者
  *
+ * - LRU 缓存已解析的 URL，按 expi 过期
+ * - 后台预取即将播放的歌曲 URL，同一首歌的并发请求合并
+ * - 记住每首歌在当前账号下上次成功的音质（同时写入 SongMetaStore）以及账号可用的最高音质，
+ *   以此为下限：并发请求该音质及更高的音质，取最高的可用结果，都不可用时再请求更低的音质。
+ *   一个 provider 只对应一个账号，换账号时重新创建
+ *
  * @author SelfAbandonment
  */
 public final class SongUrlProvider {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger("ncmplayer");
+
     private static final List<String> LEVELS = List.of("lossless", "exhigh", "higher", "standard");
 
+    /** 缓存条目上限 */
+    private static final int CACHE_CAPACITY = 64;
+
+    /** 距离过期不足该时间的 URL 视为已过期（毫秒） */
+    private static final long EXPIRY_MARGIN_MS = 5000;
+
+    /** 记住音质的歌曲数量上限 */
+    private static final int LEVEL_MEMORY_CAPACITY = 1024;
+
     private final NcmApiClient api;
     private final String cookieForApi;
+    private final long userId;
 
-    private long cachedSongId = -1;
-    private String cachedUrl = null;
-    private long cachedExpiresAt = 0;
+    // songId -> URL（访问顺序，超出容量淘汰最久未用）
+    private final Map<Long, CachedUrl> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedUrl> eldest) {
+            return size() > CACHE_CAPACITY;
+        }
+    };
 
-    public SongUrlProvider(NcmApiClient api, String cookieForApi) {
+    // songId -> 上次成功的音质
+    private final Map<Long, String> songLevels = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > LEVEL_MEMORY_CAPACITY;
+        }
+    };
+
+    // 当前账号成功过的最高音质在 LEVELS 中的下标，未知时为 -1
+    private volatile int accountLevel = -1;
+
+    // 正在解析中的请求（songId -> future）
+    private final Map<Long, CompletableFuture<String>> inFlight = new HashMap<>();
+    private boolean closed = false;
+
+    private final ExecutorService prefetchExec = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ncm-url-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * @param userId 账号 ID，用于区分本地记住的音质；未知时为 0
+     */
+    public SongUrlProvider(NcmApiClient api, String cookieForApi, long userId) {
         this.api = api;
         this.cookieForApi = cookieForApi;
+        this.userId = userId;
     }
 
-    public synchronized String getPlayableMp3Url(long songId) throws Exception {
-        long now = System.currentTimeMillis();
+    /**
+     * 是否属于该账号（cookie 或账号变了需要重新创建）
+     */
+    public boolean isFor(String cookieForApi, long userId) {
+        return this.userId == userId && this.cookieForApi.equals(cookieForApi);
+    }
 
-        if (songId == cachedSongId && cachedUrl != null && now < (cachedExpiresAt - 5000)) {
-            return cachedUrl;
+    /**
+     * 获取可播放的 MP3 地址
+     * 命中缓存直接返回；已有预取在进行时等待其结果
+     */
+    public String getPlayableMp3Url(long songId) throws Exception {
+        CompletableFuture<String> pending;
+        synchronized (this) {
+            String cached = cachedUrl(songId, System.currentTimeMillis());
+            if (cached != null) {
+                return cached;
+            }
+            pending = inFlight.get(songId);
         }
 
-        Exception last = null;
-        for (String level : LEVELS) {
+        if (pending != null) {
             try {
-                var r = api.songUrlV1(songId, level, cookieForApi);
-                if (!r.ok()) continue;
+                return pending.get(30, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                // 预取失败，下面重新解析
+            }
+        }
+        return resolve(songId);
+    }
 
-                if (r.type() != null && !r.type().equalsIgnoreCase("mp3")) {
+    /**
+     * 后台预取一组歌曲的 URL（已缓存或正在解析的会跳过）
+     */
+    public void prefetch(List<Long> songIds) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (closed) return;
+            for (long songId : songIds) {
+                if (cachedUrl(songId, now) != null || inFlight.containsKey(songId)) {
                     continue;
                 }
 
-                cachedSongId = songId;
-                cachedUrl = r.url();
-                cachedExpiresAt = r.expiresAtEpochMs(now);
-                return cachedUrl;
-            } catch (Exception e) {
-                last = e;
+                CompletableFuture<String> future = new CompletableFuture<>();
+                inFlight.put(songId, future);
+                prefetchExec.execute(() -> {
+                    try {
+                        future.complete(resolve(songId));
+                    } catch (Exception e) {
+                        LOGGER.debug("Prefetch url failed for songId={}: {}", songId, e.getMessage());
+                        future.completeExceptionally(e);
+                    } finally {
+                        synchronized (this) {
+                            inFlight.remove(songId, future);
+                        }
+                    }
+                });
             }
         }
+    }
+
+    /**
+     * 停止使用：取消进行中的预取并关闭预取线程（换账号、退出登录时调用）
+     */
+    public void close() {
+        List<CompletableFuture<String>> pending;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            pending = List.copyOf(inFlight.values());
+            inFlight.clear();
+        }
+        prefetchExec.shutdownNow();
+        pending.forEach(f -> f.cancel(true));
+    }
+
+    /**
+     * 清除缓存的 URL
+     */
+    public synchronized void invalidate(long songId) {
+        cache.remove(songId);
+    }
+
+    private String cachedUrl(long songId, long now) {
+        CachedUrl entry = cache.get(songId);
+        if (entry == null) return null;
+        if (now >= entry.expiresAt() - EXPIRY_MARGIN_MS) {
+            cache.remove(songId);
+            return null;
+        }
+        return entry.url();
+    }
+
+    private String resolve(long songId) throws Exception {
+        long now = System.currentTimeMillis();
+
+        // 记住的音质只作为下限，更高的音质仍然一起请求（可能换了会员或歌曲恢复了高音质）
+        String known;
+        synchronized (this) {
+            known = songLevels.get(songId);
+        }
+        if (known == null) {
+            known = SongMetaStore.levelFor(songId, userId);
+        }
+        int floor = known != null ? LEVELS.indexOf(known) : accountLevel;
+        if (floor < 0) floor = LEVELS.size() - 1;
 
-        if (last != null) throw last;
+        // 1. 并发请求下限及更高的音质；2. 都不可用时再请求更低的音质
+        Exception[] last = new Exception[1];
+        NcmApiClient.SongUrlResult r = bestPlayable(songId, 0, floor + 1, last);
+        if (r == null && floor + 1 < LEVELS.size()) {
+            r = bestPlayable(songId, floor + 1, LEVELS.size(), last);
+        }
+        if (r != null) {
+            return remember(songId, r, now);
+        }
+
+        if (last[0] != null) throw last[0];
         throw new IllegalStateException("No playable URL for songId=" + songId);
     }
-}
 
+    /**
+     * 并发请求 LEVELS[from, to)，按优先级取第一个可用结果；都不可用时返回 null，错误写入 last[0]
+     */
+    private NcmApiClient.SongUrlResult bestPlayable(long songId, int from, int to, Exception[] last)
+            throws InterruptedException {
+        List<CompletableFuture<NcmApiClient.SongUrlResult>> futures = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            futures.add(api.songUrlV1Async(songId, LEVELS.get(i), cookieForApi));
+        }
+
+        try {
+            for (var future : futures) {
+                try {
+                    var r = future.get(30, TimeUnit.SECONDS);
+                    if (isPlayable(r)) {
+                        return r;
+                    }
+                } catch (ExecutionException e) {
+                    last[0] = e.getCause() instanceof Exception cause ? cause : e;
+                } catch (TimeoutException e) {
+                    last[0] = e;
+                }
+            }
+            return null;
+        } finally {
+            for (var future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static boolean isPlayable(NcmApiClient.SongUrlResult r) {
+        if (!r.ok()) return false;
+        return r.type() == null || r.type().equalsIgnoreCase("mp3");
+    }
+
+    private String remember(long songId, NcmApiClient.SongUrlResult r, long now) {
+        synchronized (this) {
+            cache.put(songId, new CachedUrl(r.url(), r.expiresAtEpochMs(now)));
+            songLevels.put(songId, r.requestedLevel());
+        }
+        int level = LEVELS.indexOf(r.requestedLevel());
+        if (level >= 0 && (accountLevel < 0 || level < accountLevel)) {
+            accountLevel = level;
+        }
+        SongMetaStore.putLevel(songId, userId, r.requestedLevel());
+        return r.url();
+    }
+
+    private record CachedUrl(String url, long expiresAt) {}
+}
@@ -85,6 +85,7 @@ public final class I18n {
 
     public static final String MSG_MUSIC_PLAYING = "message.ncmplayer.music.playing";
     public static final String MSG_MUSIC_PLAY_FAILED = "message.ncmplayer.music.play_failed";
+    public static final String MSG_MUSIC_LOGOUT_FAILED = "message.ncmplayer.music.logout_failed";
 
     // API 状态
     public static final String API_UNAVAILABLE = "gui.ncmplayer.api.unavailable";
@@ -0,0 +1,150 @@
+package org.selfabandonment.ncmplayer.util;
+
+import java.util.Arrays;
+
+/**
+ * long -> int 开放寻址哈希表
+ *
+ * 线性探测，删除时回移后续元素，不使用墓碑；无装箱。
+ * 非线程安全。
+ *
+ * @author SelfAbandonment
+ */
+public final class LongIntHashMap {
+
+    /** 键不存在时 {@link #get(long)} 的返回值 */
+    public static final int MISSING = -1;
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int cap = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(cap);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return slotOf(key) >= 0;
+    }
+
+    /**
+     * 获取值，不存在时返回 {@link #MISSING}
+     */
+    public int get(long key) {
+        int slot = slotOf(key);
+        return slot >= 0 ? values[slot] : MISSING;
+    }
+
+    /**
+     * 写入键值，返回旧值（不存在时返回 {@link #MISSING}）
+     */
+    public int put(long key, int value) {
+        int slot = mix(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                int old = values[slot];
+                values[slot] = value;
+                return old;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size >= resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return MISSING;
+    }
+
+    /**
+     * 删除键，返回旧值（不存在时返回 {@link #MISSING}）
+     */
+    public int remove(long key) {
+        int slot = slotOf(key);
+        if (slot < 0) return MISSING;
+
+        int old = values[slot];
+        size--;
+
+        // 回移：把后续探测链上的元素前移，保持查找不中断
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (used[next]) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[gap] = false;
+        return old;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private int slotOf(long key) {
+        int slot = mix(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(int newCap) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(newCap);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = mix(oldKeys[i]) & mask;
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int cap) {
+        keys = new long[cap];
+        values = new int[cap];
+        used = new boolean[cap];
+        mask = cap - 1;
+        resizeAt = (int) (cap * LOAD_FACTOR);
+        // size 由调用方维护（rehash 时不变）
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
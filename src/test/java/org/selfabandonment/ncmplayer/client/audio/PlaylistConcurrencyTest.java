@@ -0,0 +1,160 @@
+package org.selfabandonment.ncmplayer.client.audio;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.selfabandonment.ncmplayer.ncm.NcmApiClient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 播放列表并发测试
+ *
+ * 多个线程同时修改 {@link Playlist}，另有多个线程不停读取快照并校验：
+ * - 每行的各列属于同一首歌（歌名、歌手、时长都由 songId 推出），不会读到拼接出的行
+ * - 当前索引在范围内，当前歌曲与该行一致
+ * - 同一快照内没有重复歌曲，按 ID 查找与下标一致，版本号对每个读线程单调递增
+ * “界面”线程负责切歌、删除、清空（和游戏里一样只有它会改当前歌曲），其余线程添加歌曲、
+ * 切换模式、查询接下来的歌曲。不删除当前歌曲，不开始播放；未调用恢复，不写播放队列文件。
+ *
+ * @author SelfAbandonment
+ */
+class PlaylistConcurrencyTest {
+
+    private static final long RUN_MS = 2000;
+    private static final int WRITERS = 2;
+    private static final int READERS = 3;
+    private static final int MAX_SIZE = 2000;
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void snapshotsStayConsistentUnderConcurrentWrites() throws InterruptedException {
+        Playlist.setCurrentIndex(-1);
+        Playlist.clear();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+
+        threads.add(thread("ui-writer", running, failures, () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Playlist.Snapshot s = Playlist.snapshot();
+            int op = random.nextInt(100);
+            if (s.size() > MAX_SIZE) {
+                Playlist.setCurrentIndex(-1);
+                Playlist.clear();
+            } else if (op < 40 && s.size() > 0) {
+                Playlist.setCurrentIndex(random.nextInt(s.size()));
+            } else if (op < 50 && s.size() > 0) {
+                // 删除正在播放的歌曲会停止播放器，这里跳过
+                int index = random.nextInt(s.size());
+                if (index != s.currentIndex()) Playlist.remove(index);
+            } else if (op < 52) {
+                Playlist.setCurrentIndex(-1);
+            } else {
+                Playlist.hasPrevious();
+            }
+        }));
+
+        for (int w = 0; w < WRITERS; w++) {
+            threads.add(thread("writer-" + w, running, failures, () -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int op = random.nextInt(100);
+                if (op < 60) {
+                    Playlist.add(song(1 + random.nextInt(MAX_SIZE * 4)));
+                } else if (op < 75) {
+                    List<NcmApiClient.SearchSong> batch = new ArrayList<>();
+                    for (int i = 0; i < 20; i++) batch.add(song(1 + random.nextInt(MAX_SIZE * 4)));
+                    Playlist.addAll(batch);
+                } else if (op < 80) {
+                    Playlist.toggleShuffle();
+                } else if (op < 85) {
+                    Playlist.toggleRepeatMode();
+                } else if (op < 95) {
+                    for (var s : Playlist.peekUpcoming(3)) {
+                        if (!s.equals(song(s.id()))) failures.add("upcoming row mismatch: " + s);
+                    }
+                } else {
+                    Playlist.hasNext();
+                }
+            }));
+        }
+
+        for (int r = 0; r < READERS; r++) {
+            long[] lastVersion = {-1};
+            Set<Long> seen = new HashSet<>();
+            threads.add(thread("reader-" + r, running, failures, () -> {
+                Playlist.Snapshot s = Playlist.snapshot();
+                if (s.version() < lastVersion[0]) {
+                    failures.add("version went backwards: " + lastVersion[0] + " -> " + s.version());
+                }
+                lastVersion[0] = s.version();
+
+                int size = s.size();
+                int current = s.currentIndex();
+                if (current < -1 || current >= size) {
+                    failures.add("current index " + current + " out of range, size " + size);
+                } else if ((current >= 0) != (s.currentSong() != null)) {
+                    failures.add("current song presence mismatch at index " + current);
+                } else if (current >= 0 && !s.currentSong().equals(s.get(current))) {
+                    failures.add("current song does not match row " + current);
+                }
+
+                seen.clear();
+                List<NcmApiClient.SearchSong> rows = s.asList();
+                for (int i = 0; i < rows.size(); i++) {
+                    var song = rows.get(i);
+                    if (!song.equals(song(song.id()))) failures.add("torn row: " + song);
+                    if (!seen.add(song.id())) failures.add("duplicate song " + song.id());
+                    if (s.indexOf(song.id()) != i) failures.add("indexOf(" + song.id() + ") != " + i);
+                }
+                reads.incrementAndGet();
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        Thread.sleep(RUN_MS);
+        running.set(false);
+        for (Thread t : threads) t.join();
+
+        assertTrue(reads.get() > 0, "readers made no progress");
+        assertTrue(failures.isEmpty(), () -> failures.size() + " failures, first: "
+                + failures.subList(0, Math.min(10, failures.size())));
+    }
+
+    /**
+     * 歌曲的各列都由 ID 推出，读者据此发现拼接错误的行
+     */
+    private static NcmApiClient.SearchSong song(long id) {
+        return new NcmApiClient.SearchSong(id, "song-" + id, "artist-" + (id % 97), id * 1000);
+    }
+
+    /**
+     * 循环执行 step 直到 running 变为 false；异常或失败过多时提前结束
+     */
+    private static Thread thread(String name, AtomicBoolean running, List<String> failures, Runnable step) {
+        Thread t = new Thread(() -> {
+            try {
+                while (running.get()) {
+                    step.run();
+                    if (failures.size() > 20) running.set(false);
+                }
+            } catch (Throwable e) {
+                failures.add(name + " threw " + e);
+                running.set(false);
+            }
+        }, "playlist-test-" + name);
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,668 @@
+package org.selfabandonment.ncmplayer.dev;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 本地假 NeteaseCloudMusicApi 服务器（开发 / 离线测试用）
+ *
+ * 基于 JDK HttpServer，提供插件用到的接口：
+ * /search、/song/url/v1、/lyric、/lyric/new、/song/detail、/user/*、/login/qr/*，
+ * 以及支持 Range 的 MP3 下载（/audio/{id}.mp3）。
+ * 可注入延迟、限速、错误响应和中途断流，用于在无网络时测量客户端行为。
+ *
+ * 用法: java ... FakeNcmApiServer [--port 3000] [--latency 50] [--bandwidth 32768]
+ *                               [--error-rate 0.05] [--abort-rate 0.1] [--mp3-dir 目录]
+ * 然后把 musicApiUrl 配置为 http://127.0.0.1:3000
+ *
+ * @author SelfAbandonment
+ */
+public final class FakeNcmApiServer implements AutoCloseable {
+
+    private static final Gson GSON = new Gson();
+
+    private static final List<String> LEVELS = List.of("lossless", "exhigh", "higher", "standard");
+
+    /** 1x1 PNG，作为二维码图片 */
+    private static final String QR_PNG_BASE64 =
+            "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mP8/x8AAwMCAO+ip1sAAAAASUVORK5CYII=";
+
+    /** 限速时每次写出的时间片（毫秒） */
+    private static final int PACE_SLICE_MS = 50;
+
+    /**
+     * 假歌曲
+     *
+     * @param levels 可用音质，请求其它音质时返回 404
+     * @param lyric  LRC 原文，null 表示无歌词
+     * @param yrc    YRC 逐字歌词，null 表示无
+     */
+    public record Song(long id, String name, String artist, byte[] mp3, long durationMs,
+                       Set<String> levels, String lyric, String translatedLyric, String romaLyric, String yrc) {}
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<Long, Song> songs = new ConcurrentHashMap<>();
+    private final Map<String, String> fixtures = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> qrPolls = new ConcurrentHashMap<>();
+
+    private final Map<String, LongAdder> requestCounts = new ConcurrentHashMap<>();
+    private final AtomicLong audioBytesServed = new AtomicLong();
+
+    private volatile int latencyMs = 0;
+    private volatile int jitterMs = 0;
+    private volatile long bandwidthBytesPerSec = 0;
+    private volatile double errorRate = 0;
+    private volatile int errorStatus = 502;
+    private volatile double abortRate = 0;
+    private volatile int urlExpirySeconds = 1200;
+
+    private FakeNcmApiServer(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 64);
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "fake-ncm-api");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * 启动服务器，port 为 0 时使用随机端口
+     */
+    public static FakeNcmApiServer start(int port) throws IOException {
+        FakeNcmApiServer s = new FakeNcmApiServer(port);
+        s.server.start();
+        return s;
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // ==================== 数据 ====================
+
+    public FakeNcmApiServer addSong(Song song) {
+        songs.put(song.id(), song);
+        return this;
+    }
+
+    /**
+     * 添加一首静音歌曲（所有音质可用，带简单的逐行、逐字和翻译歌词）
+     */
+    public FakeNcmApiServer addSilentSong(long id, String name, String artist, int seconds) {
+        StringBuilder lrc = new StringBuilder();
+        StringBuilder tlyric = new StringBuilder();
+        StringBuilder yrc = new StringBuilder();
+        for (int s = 0; s < seconds; s += 5) {
+            String line = name + " 第 " + s + " 秒";
+            String time = String.format(Locale.ROOT, "[%02d:%02d.00]", s / 60, s % 60);
+            lrc.append(time).append(line).append('\n');
+            tlyric.append(time).append(name).append(" second ").append(s).append('\n');
+
+            // 每个字平分 4 秒，留 1 秒间隔
+            long start = s * 1000L;
+            int wordMs = 4000 / line.length();
+            yrc.append('[').append(start).append(',').append(4000).append(']');
+            for (int i = 0; i < line.length(); i++) {
+                yrc.append('(').append(start + (long) i * wordMs).append(',').append(wordMs).append(",0)")
+                        .append(line.charAt(i));
+            }
+            yrc.append('\n');
+        }
+        return addSong(new Song(id, name, artist, silentMp3(seconds), seconds * 1000L,
+                Set.copyOf(LEVELS), lrc.toString(), tlyric.toString(), null, yrc.toString()));
+    }
+
+    /**
+     * 覆盖某个接口的响应（路径不含查询参数，如 "/search"）
+     */
+    public FakeNcmApiServer setFixture(String path, String json) {
+        fixtures.put(path, json);
+        return this;
+    }
+
+    // ==================== 故障注入 ====================
+
+    public FakeNcmApiServer setLatency(int latencyMs, int jitterMs) {
+        this.latencyMs = Math.max(0, latencyMs);
+        this.jitterMs = Math.max(0, jitterMs);
+        return this;
+    }
+
+    /**
+     * 音频下载限速（字节/秒），0 表示不限
+     */
+    public FakeNcmApiServer setBandwidth(long bytesPerSec) {
+        this.bandwidthBytesPerSec = Math.max(0, bytesPerSec);
+        return this;
+    }
+
+    /**
+     * 以给定概率返回错误状态码
+     */
+    public FakeNcmApiServer setErrorRate(double rate, int status) {
+        this.errorRate = rate;
+        this.errorStatus = status;
+        return this;
+    }
+
+    /**
+     * 以给定概率在音频传输中途断开连接
+     */
+    public FakeNcmApiServer setAbortRate(double rate) {
+        this.abortRate = rate;
+        return this;
+    }
+
+    public FakeNcmApiServer setUrlExpirySeconds(int seconds) {
+        this.urlExpirySeconds = seconds;
+        return this;
+    }
+
+    // ==================== 统计 ====================
+
+    /**
+     * 某个路径收到的请求数（音频统一计为 "/audio"）
+     */
+    public long requestCount(String path) {
+        LongAdder n = requestCounts.get(path);
+        return n == null ? 0 : n.sum();
+    }
+
+    public long audioBytesServed() {
+        return audioBytesServed.get();
+    }
+
+    public void resetStats() {
+        requestCounts.clear();
+        audioBytesServed.set(0);
+    }
+
+    // ==================== 请求处理 ====================
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            String path = ex.getRequestURI().getPath();
+            boolean audio = path.startsWith("/audio/");
+            requestCounts.computeIfAbsent(audio ? "/audio" : path, k -> new LongAdder()).increment();
+
+            sleepLatency();
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            if (errorRate > 0 && rnd.nextDouble() < errorRate) {
+                ex.sendResponseHeaders(errorStatus, -1);
+                return;
+            }
+
+            if (audio) {
+                serveAudio(ex, path);
+                return;
+            }
+
+            String fixture = fixtures.get(path);
+            if (fixture != null) {
+                sendJson(ex, 200, fixture);
+                return;
+            }
+
+            Map<String, String> q = query(ex.getRequestURI().getRawQuery());
+            JsonObject body = switch (path) {
+                case "/" -> ok();
+                case "/search" -> search(q);
+                case "/song/url/v1" -> songUrl(q);
+                case "/song/detail" -> songDetail(q);
+                case "/lyric" -> lyric(q);
+                case "/lyric/new" -> lyricNew(q);
+                case "/user/account" -> userAccount();
+                case "/user/detail" -> userDetail(q);
+                case "/user/subcount" -> userSubcount();
+                case "/login/qr/key" -> qrKey();
+                case "/login/qr/create" -> qrCreate(q);
+                case "/login/qr/check" -> qrCheck(q);
+                default -> null;
+            };
+
+            if (body == null) {
+                JsonObject err = new JsonObject();
+                err.addProperty("code", 404);
+                err.addProperty("msg", "Not Found");
+                sendJson(ex, 404, GSON.toJson(err));
+            } else {
+                sendJson(ex, 200, GSON.toJson(body));
+            }
+        } catch (IOException ignored) {
+            // 客户端提前断开
+        }
+    }
+
+    private JsonObject search(Map<String, String> q) {
+        String keywords = q.getOrDefault("keywords", "").toLowerCase(Locale.ROOT);
+        int limit = parseInt(q.get("limit"), 30);
+
+        JsonArray arr = new JsonArray();
+        songs.values().stream()
+                .filter(s -> keywords.isEmpty()
+                        || s.name().toLowerCase(Locale.ROOT).contains(keywords)
+                        || s.artist().toLowerCase(Locale.ROOT).contains(keywords))
+                .sorted((a, b) -> Long.compare(a.id(), b.id()))
+                .limit(limit)
+                .forEach(s -> {
+                    JsonObject o = new JsonObject();
+                    o.addProperty("id", s.id());
+                    o.addProperty("name", s.name());
+                    o.addProperty("duration", s.durationMs());
+                    o.add("artists", artists(s));
+                    arr.add(o);
+                });
+
+        JsonObject result = new JsonObject();
+        result.add("songs", arr);
+        result.addProperty("songCount", arr.size());
+        JsonObject obj = ok();
+        obj.add("result", result);
+        return obj;
+    }
+
+    private JsonObject songUrl(Map<String, String> q) {
+        long id = parseLong(q.get("id"), -1);
+        String level = q.getOrDefault("level", "standard");
+        Song s = songs.get(id);
+
+        JsonObject item = new JsonObject();
+        item.addProperty("id", id);
+        if (s != null && s.levels().contains(level)) {
+            item.addProperty("url", baseUrl() + "/audio/" + id + ".mp3?level=" + level);
+            item.addProperty("code", 200);
+            item.addProperty("expi", urlExpirySeconds);
+            item.addProperty("br", 128000);
+            item.addProperty("size", s.mp3().length);
+            item.addProperty("type", "mp3");
+        } else {
+            item.add("url", null);
+            item.addProperty("code", 404);
+            item.addProperty("expi", 0);
+            item.addProperty("br", 0);
+            item.addProperty("size", 0);
+            item.add("type", null);
+        }
+
+        JsonArray data = new JsonArray();
+        data.add(item);
+        JsonObject obj = ok();
+        obj.add("data", data);
+        return obj;
+    }
+
+    private JsonObject songDetail(Map<String, String> q) {
+        JsonArray arr = new JsonArray();
+        for (String part : q.getOrDefault("ids", "").split(",")) {
+            Song s = songs.get(parseLong(part.trim(), -1));
+            if (s == null) continue;
+            JsonObject o = new JsonObject();
+            o.addProperty("id", s.id());
+            o.addProperty("name", s.name());
+            o.addProperty("dt", s.durationMs());
+            o.add("ar", artists(s));
+            arr.add(o);
+        }
+        JsonObject obj = ok();
+        obj.add("songs", arr);
+        return obj;
+    }
+
+    private JsonObject lyric(Map<String, String> q) {
+        Song s = songs.get(parseLong(q.get("id"), -1));
+        JsonObject obj = ok();
+        if (s == null) return obj;
+
+        if (s.lyric() != null) {
+            obj.add("lrc", lyricBlock(s.lyric()));
+        } else {
+            obj.addProperty("nolyric", true);
+        }
+        if (s.translatedLyric() != null) {
+            obj.add("tlyric", lyricBlock(s.translatedLyric()));
+        }
+        if (s.romaLyric() != null) {
+            obj.add("romalrc", lyricBlock(s.romaLyric()));
+        }
+        return obj;
+    }
+
+    private JsonObject lyricNew(Map<String, String> q) {
+        JsonObject obj = lyric(q);
+        Song s = songs.get(parseLong(q.get("id"), -1));
+        if (s != null && s.yrc() != null) {
+            obj.add("yrc", lyricBlock(s.yrc()));
+        }
+        return obj;
+    }
+
+    private JsonObject userAccount() {
+        JsonObject obj = ok();
+        obj.add("profile", profile());
+        return obj;
+    }
+
+    private JsonObject userDetail(Map<String, String> q) {
+        JsonObject obj = ok();
+        obj.addProperty("level", 9);
+        obj.addProperty("listenSongs", 12345);
+        JsonObject profile = profile();
+        profile.addProperty("userId", parseLong(q.get("uid"), 10001));
+        obj.add("profile", profile);
+        return obj;
+    }
+
+    private JsonObject userSubcount() {
+        JsonObject obj = ok();
+        obj.addProperty("createdPlaylistCount", 3);
+        obj.addProperty("subPlaylistCount", 2);
+        obj.addProperty("artistCount", 5);
+        obj.addProperty("mvCount", 0);
+        obj.addProperty("djRadioCount", 0);
+        return obj;
+    }
+
+    private JsonObject qrKey() {
+        String key = "fake-" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+        qrPolls.put(key, new AtomicInteger());
+        JsonObject data = new JsonObject();
+        data.addProperty("code", 200);
+        data.addProperty("unikey", key);
+        JsonObject obj = ok();
+        obj.add("data", data);
+        return obj;
+    }
+
+    private JsonObject qrCreate(Map<String, String> q) {
+        JsonObject data = new JsonObject();
+        data.addProperty("qrurl", "https://music.163.com/login?codekey=" + q.getOrDefault("key", ""));
+        if ("1".equals(q.get("qrimg"))) {
+            data.addProperty("qrimg", "data:image/png;base64," + QR_PNG_BASE64);
+        }
+        JsonObject obj = ok();
+        obj.add("data", data);
+        return obj;
+    }
+
+    /**
+     * 依次返回 801（等待扫码）、802（待确认）、803（登录成功）
+     */
+    private JsonObject qrCheck(Map<String, String> q) {
+        AtomicInteger polls = qrPolls.get(q.getOrDefault("key", ""));
+        JsonObject obj = new JsonObject();
+        if (polls == null) {
+            obj.addProperty("code", 800);
+            obj.addProperty("message", "二维码不存在或已过期");
+            return obj;
+        }
+
+        int n = polls.incrementAndGet();
+        if (n <= 1) {
+            obj.addProperty("code", 801);
+            obj.addProperty("message", "等待扫码");
+        } else if (n == 2) {
+            obj.addProperty("code", 802);
+            obj.addProperty("message", "待确认");
+        } else {
+            obj.addProperty("code", 803);
+            obj.addProperty("message", "授权登陆成功");
+            obj.addProperty("cookie", "MUSIC_U=fake-music-u; Max-Age=1296000; Path=/; __csrf=fake-csrf; Path=/");
+        }
+        return obj;
+    }
+
+    private void serveAudio(HttpExchange ex, String path) throws IOException {
+        String name = path.substring("/audio/".length());
+        int dot = name.indexOf('.');
+        Song s = songs.get(parseLong(dot < 0 ? name : name.substring(0, dot), -1));
+        if (s == null) {
+            ex.sendResponseHeaders(404, -1);
+            return;
+        }
+
+        byte[] data = s.mp3();
+        long start = 0;
+        long end = data.length - 1;
+        boolean partial = false;
+
+        String range = ex.getRequestHeaders().getFirst("Range");
+        if (range != null && range.startsWith("bytes=")) {
+            String spec = range.substring(6);
+            int dash = spec.indexOf('-');
+            if (dash > 0) {
+                start = parseLong(spec.substring(0, dash), 0);
+                if (dash < spec.length() - 1) {
+                    end = Math.min(end, parseLong(spec.substring(dash + 1), end));
+                }
+                partial = true;
+            }
+            if (start >= data.length || start > end) {
+                ex.getResponseHeaders().set("Content-Range", "bytes */" + data.length);
+                ex.sendResponseHeaders(416, -1);
+                return;
+            }
+        }
+
+        long length = end - start + 1;
+        ex.getResponseHeaders().set("Content-Type", "audio/mpeg");
+        ex.getResponseHeaders().set("Accept-Ranges", "bytes");
+        if (partial) {
+            ex.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+        }
+        ex.sendResponseHeaders(partial ? 206 : 200, length);
+
+        // 断流：在随机位置停止写出并关闭连接
+        long abortAt = abortRate > 0 && ThreadLocalRandom.current().nextDouble() < abortRate
+                ? ThreadLocalRandom.current().nextLong(length)
+                : length;
+
+        OutputStream out = ex.getResponseBody();
+        long pos = start;
+        long remaining = abortAt;
+        while (remaining > 0) {
+            long bw = bandwidthBytesPerSec;
+            int slice = (int) Math.min(remaining, bw > 0 ? Math.max(1, bw * PACE_SLICE_MS / 1000) : 64 * 1024);
+            long t0 = System.nanoTime();
+            out.write(data, (int) pos, slice);
+            out.flush();
+            pos += slice;
+            remaining -= slice;
+            audioBytesServed.addAndGet(slice);
+
+            if (bw > 0) {
+                long spentMs = (System.nanoTime() - t0) / 1_000_000L;
+                long targetMs = slice * 1000L / bw;
+                sleepQuietly(targetMs - spentMs);
+            }
+        }
+        if (abortAt < length) {
+            throw new IOException("Injected abort");
+        }
+    }
+
+    // ==================== 工具 ====================
+
+    private void sleepLatency() {
+        int base = latencyMs;
+        int jitter = jitterMs;
+        if (base <= 0 && jitter <= 0) return;
+        sleepQuietly(base + (jitter > 0 ? ThreadLocalRandom.current().nextInt(jitter + 1) : 0));
+    }
+
+    private static void sleepQuietly(long ms) {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sendJson(HttpExchange ex, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        ex.getResponseBody().write(bytes);
+    }
+
+    private static JsonObject ok() {
+        JsonObject obj = new JsonObject();
+        obj.addProperty("code", 200);
+        return obj;
+    }
+
+    private static JsonObject profile() {
+        JsonObject profile = new JsonObject();
+        profile.addProperty("userId", 10001);
+        profile.addProperty("nickname", "离线测试用户");
+        profile.addProperty("avatarUrl", "");
+        profile.addProperty("signature", "fake");
+        profile.addProperty("vipType", 11);
+        profile.addProperty("createTime", 1500000000000L);
+        return profile;
+    }
+
+    private static JsonArray artists(Song s) {
+        JsonObject a = new JsonObject();
+        a.addProperty("name", s.artist());
+        JsonArray arr = new JsonArray();
+        arr.add(a);
+        return arr;
+    }
+
+    private static JsonObject lyricBlock(String text) {
+        JsonObject o = new JsonObject();
+        o.addProperty("version", 1);
+        o.addProperty("lyric", text);
+        return o;
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> out = new HashMap<>();
+        if (raw == null || raw.isEmpty()) return out;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String k = eq < 0 ? pair : pair.substring(0, eq);
+            String v = eq < 0 ? "" : pair.substring(eq + 1);
+            out.put(URLDecoder.decode(k, StandardCharsets.UTF_8), URLDecoder.decode(v, StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+
+    private static int parseInt(String s, int def) {
+        try {
+            return s == null ? def : Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    private static long parseLong(String s, long def) {
+        try {
+            return s == null ? def : Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    /**
+     * 生成静音 MP3（MPEG-1 Layer III，128kbps，44.1kHz，单声道）
+     * 帧体全零即 main_data_begin=0、part2_3_length=0，解码为静音
+     */
+    public static byte[] silentMp3(int seconds) {
+        int frameLen = 144 * 128000 / 44100;   // 417 字节，无填充
+        int frames = (int) Math.ceil(seconds * 44100.0 / 1152);
+        byte[] out = new byte[frames * frameLen];
+        for (int f = 0; f < frames; f++) {
+            int off = f * frameLen;
+            out[off] = (byte) 0xFF;
+            out[off + 1] = (byte) 0xFB;  // MPEG-1, Layer III, 无 CRC
+            out[off + 2] = (byte) 0x90;  // 128kbps, 44.1kHz
+            out[off + 3] = (byte) 0xC0;  // 单声道
+        }
+        return out;
+    }
+
+    // ==================== 独立运行 ====================
+
+    public static void main(String[] args) throws Exception {
+        int port = 3000;
+        Path mp3Dir = null;
+        int latency = 0;
+        long bandwidth = 0;
+        double errorRate = 0;
+        double abortRate = 0;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[i + 1]);
+                case "--latency" -> latency = Integer.parseInt(args[i + 1]);
+                case "--bandwidth" -> bandwidth = Long.parseLong(args[i + 1]);
+                case "--error-rate" -> errorRate = Double.parseDouble(args[i + 1]);
+                case "--abort-rate" -> abortRate = Double.parseDouble(args[i + 1]);
+                case "--mp3-dir" -> mp3Dir = Path.of(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        FakeNcmApiServer server = start(port)
+                .setLatency(latency, latency / 4)
+                .setBandwidth(bandwidth)
+                .setErrorRate(errorRate, 502)
+                .setAbortRate(abortRate);
+
+        long id = 1;
+        if (mp3Dir != null) {
+            List<Path> files = new ArrayList<>();
+            try (Stream<Path> list = Files.list(mp3Dir)) {
+                list.filter(p -> p.toString().toLowerCase(Locale.ROOT).endsWith(".mp3")).sorted().forEach(files::add);
+            }
+            for (Path p : files) {
+                String name = p.getFileName().toString();
+                byte[] mp3 = Files.readAllBytes(p);
+                server.addSong(new Song(id++, name.substring(0, name.length() - 4), "本地文件", mp3,
+                        mp3.length * 8L / 128, Set.copyOf(LEVELS), null, null, null, null));
+            }
+        }
+        for (int i = 0; i < 5; i++) {
+            server.addSilentSong(id++, "静音测试 " + (i + 1), "Fake Artist", 30 + i * 15);
+        }
+
+        System.out.println("Fake NCM API listening on " + server.baseUrl() + " with " + server.songs.size() + " songs");
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,154 @@
+package org.selfabandonment.ncmplayer.dev;
+
+import org.selfabandonment.ncmplayer.client.lyric.LrcParser;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * LRC 解析基准测试（开发用）
+ *
+ * 对比 {@link LrcParser} 与旧版正则解析器在大歌词文件上的耗时和分配字节数。
+ * 分配量通过 com.sun.management.ThreadMXBean 统计当前线程。
+ * 用法: java ... LrcParseBenchmark [--lines 5000] [--rounds 200]
+ *
+ * @author SelfAbandonment
+ */
+public final class LrcParseBenchmark {
+
+    private LrcParseBenchmark() {}
+
+    public static void main(String[] args) {
+        int lines = 5000;
+        int rounds = 200;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--lines" -> lines = Integer.parseInt(args[i + 1]);
+                case "--rounds" -> rounds = Integer.parseInt(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        String lrc = generate(lines, 42);
+        int legacyCount = LegacyParser.parse(lrc).size();
+        int newCount = LrcParser.parse(lrc).size();
+        if (legacyCount != newCount) {
+            throw new IllegalStateException("Line count mismatch: legacy=" + legacyCount + " new=" + newCount);
+        }
+
+        System.out.printf(Locale.ROOT, "input: %d chars, %d source lines, %d timeline lines%n",
+                lrc.length(), lines, newCount);
+        System.out.printf(Locale.ROOT, "%-8s %12s %14s%n", "parser", "us/op", "bytes/op");
+
+        // 交替预热，减少 JIT 顺序带来的偏差
+        for (int i = 0; i < 3; i++) {
+            measure(LegacyParser::parse, lrc, rounds / 2);
+            measure(LrcParser::parse, lrc, rounds / 2);
+        }
+        print("legacy", measure(LegacyParser::parse, lrc, rounds));
+        print("scanner", measure(LrcParser::parse, lrc, rounds));
+    }
+
+    private static long[] measure(Function<String, ?> parser, String lrc, int rounds) {
+        var mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().threadId();
+        Object sink = null;
+
+        long alloc0 = mx.getThreadAllocatedBytes(tid);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink = parser.apply(lrc);
+        }
+        long t1 = System.nanoTime();
+        long alloc1 = mx.getThreadAllocatedBytes(tid);
+
+        if (sink == null) throw new IllegalStateException();
+        return new long[]{(t1 - t0) / rounds, (alloc1 - alloc0) / rounds};
+    }
+
+    private static void print(String name, long[] r) {
+        System.out.printf(Locale.ROOT, "%-8s %12.1f %14d%n", name, r[0] / 1000.0, r[1]);
+    }
+
+    /**
+     * 生成带信息标签、多时间标签和异常标签的大歌词
+     */
+    static String generate(int lines, long seed) {
+        Random rnd = new Random(seed);
+        StringBuilder sb = new StringBuilder(lines * 40);
+        sb.append("[ti:Benchmark]\n[ar:Fake Artist]\n[al:Fake Album]\n[by:bench]\n");
+        long t = 0;
+        for (int i = 0; i < lines; i++) {
+            t += 200 + rnd.nextInt(1000);
+            appendTime(sb, t);
+            if (rnd.nextInt(10) == 0) {
+                appendTime(sb, t + 60_000);  // 副歌重复
+            }
+            if (rnd.nextInt(50) == 0) {
+                sb.append("[xx:yy]");        // 异常标签
+            }
+            sb.append("第 ").append(i).append(" 行歌词 lyric line ").append(i).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void appendTime(StringBuilder sb, long t) {
+        sb.append(String.format(Locale.ROOT, "[%02d:%02d.%02d]", t / 60_000, (t / 1000) % 60, (t % 1000) / 10));
+    }
+
+    /**
+     * 旧版解析器（逐行正则、装箱时间、排序记录列表），仅作为基准
+     */
+    static final class LegacyParser {
+        private static final Pattern TIME_PATTERN = Pattern.compile("\\[(\\d{1,2}):(\\d{2})([.:]?(\\d{1,3}))?]");
+
+        record Line(long timeMs, String text) implements Comparable<Line> {
+            @Override
+            public int compareTo(Line other) {
+                return Long.compare(timeMs, other.timeMs);
+            }
+        }
+
+        static List<Line> parse(String lrcContent) {
+            List<Line> lines = new ArrayList<>();
+            for (String rawLine : lrcContent.split("\n")) {
+                rawLine = rawLine.trim();
+                if (rawLine.isEmpty()) continue;
+
+                Matcher matcher = TIME_PATTERN.matcher(rawLine);
+                List<Long> times = new ArrayList<>();
+                int lastMatchEnd = 0;
+                while (matcher.find()) {
+                    int minutes = Integer.parseInt(matcher.group(1));
+                    int seconds = Integer.parseInt(matcher.group(2));
+                    int millis = 0;
+                    String millisStr = matcher.group(4);
+                    if (millisStr != null && !millisStr.isEmpty()) {
+                        millis = Integer.parseInt(millisStr);
+                        if (millisStr.length() == 2) millis *= 10;
+                        else if (millisStr.length() == 1) millis *= 100;
+                    }
+                    times.add(minutes * 60 * 1000L + seconds * 1000L + millis);
+                    lastMatchEnd = matcher.end();
+                }
+
+                String text = "";
+                if (lastMatchEnd > 0 && lastMatchEnd < rawLine.length()) {
+                    text = rawLine.substring(lastMatchEnd).trim();
+                }
+                for (Long time : times) {
+                    if (!text.isEmpty()) lines.add(new Line(time, text));
+                }
+            }
+            Collections.sort(lines);
+            return lines;
+        }
+    }
+}
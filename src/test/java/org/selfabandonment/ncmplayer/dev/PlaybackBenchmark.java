@@ -0,0 +1,163 @@
+package org.selfabandonment.ncmplayer.dev;
+
+import org.selfabandonment.ncmplayer.client.audio.AudioSink;
+import org.selfabandonment.ncmplayer.client.audio.NullSink;
+import org.selfabandonment.ncmplayer.client.audio.StreamingMp3Player;
+import org.selfabandonment.ncmplayer.client.audio.WavFileSink;
+import org.selfabandonment.ncmplayer.ncm.NcmApiClient;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 弱网播放基准测试（开发用）
+ *
+ * 启动 FakeNcmApiServer，前面挂 ThrottlingProxy，按场景播放静音测试曲目，
+ * 中途跳转一次，输出每个场景的首次出声时间、卡顿次数/占比、跳转延迟和浪费字节。
+ *
+ * 使用实时消耗的 NullSink 输出，无需声卡；--wav 时把解码结果写入该目录下的 WAV 文件。
+ * 用法: java ... PlaybackBenchmark [--seconds 20] [--only 场景名] [--wav 目录]
+ *
+ * @author SelfAbandonment
+ */
+public final class PlaybackBenchmark {
+
+    /** 模拟客户端 tick 间隔（毫秒） */
+    private static final int TICK_MS = 20;
+
+    private static final long SONG_ID = 1;
+
+    /**
+     * 网络场景
+     *
+     * @param bandwidth   下行带宽（字节/秒），0 表示不限
+     * @param resetPerMb  平均每 MB 的连接重置次数
+     */
+    record Scenario(String name, long bandwidth, int latencyMs, int jitterMs, int firstByteDelayMs, double resetPerMb) {}
+
+    record Result(Scenario scenario, StreamingMp3Player.PlaybackStats stats, int bitRate,
+                  long resets, String outcome) {}
+
+    private static final List<Scenario> SCENARIOS = List.of(
+            new Scenario("loopback", 0, 0, 0, 0, 0),
+            new Scenario("broadband", 1_000_000, 30, 5, 0, 0),
+            new Scenario("3g", 48_000, 150, 40, 0, 0),
+            new Scenario("edge-of-bitrate", 17_000, 80, 20, 0, 0),
+            new Scenario("jittery", 200_000, 60, 120, 0, 0),
+            new Scenario("slow-first-byte", 200_000, 50, 0, 2500, 0),
+            new Scenario("flaky", 200_000, 50, 10, 0, 2.0)
+    );
+
+    private PlaybackBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        int seconds = 20;
+        String only = null;
+        Path wavDir = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--seconds" -> seconds = Integer.parseInt(args[i + 1]);
+                case "--only" -> only = args[i + 1];
+                case "--wav" -> wavDir = Path.of(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        List<Result> results = new ArrayList<>();
+        try (FakeNcmApiServer server = FakeNcmApiServer.start(0)) {
+            server.addSilentSong(SONG_ID, "Benchmark", "Fake Artist", seconds);
+            URI api = URI.create(server.baseUrl());
+
+            for (Scenario sc : SCENARIOS) {
+                if (only != null && !only.equals(sc.name())) continue;
+                try (ThrottlingProxy proxy = ThrottlingProxy.start(api.getHost(), api.getPort())) {
+                    proxy.setBandwidth(sc.bandwidth())
+                            .setLatency(sc.latencyMs(), sc.jitterMs())
+                            .setFirstByteDelay(sc.firstByteDelayMs())
+                            .setResetRate(sc.resetPerMb());
+                    AudioSink sink = wavDir != null
+                            ? new WavFileSink(wavDir.resolve(sc.name()), true)
+                            : new NullSink(true);
+                    results.add(run(sc, proxy, sink, seconds * 1000L));
+                }
+            }
+        }
+
+        printTable(results);
+    }
+
+    private static Result run(Scenario sc, ThrottlingProxy proxy, AudioSink sink, long durationMs) throws Exception {
+        NcmApiClient client = new NcmApiClient("http://127.0.0.1:" + proxy.port());
+        String url;
+        try {
+            url = proxy.rewrite(client.songUrlV1(SONG_ID, "exhigh", "").url());
+        } catch (Exception e) {
+            return new Result(sc, null, 0, proxy.resets(), "url: " + e.getMessage());
+        }
+
+        StreamingMp3Player player = new StreamingMp3Player(sink);
+        player.setPcmCacheBudget(0);
+        player.play(URI.create(url), SONG_ID);
+        player.setKnownDuration(durationMs);
+
+        long seekAtMs = durationMs / 3;
+        long seekToMs = durationMs * 2 / 3;
+        boolean seeked = false;
+        long deadline = System.currentTimeMillis() + durationMs * 3 + 30_000;
+        String outcome = "timeout";
+
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                player.tick();
+                var state = player.getState();
+                if (state == StreamingMp3Player.State.ERROR) {
+                    outcome = "error: " + player.getLastError();
+                    break;
+                }
+                if (state == StreamingMp3Player.State.STOPPED) {
+                    outcome = "ok";
+                    break;
+                }
+                if (!seeked && player.getPlayedMs() >= seekAtMs && player.canSeek()) {
+                    player.seek(seekToMs);
+                    seeked = true;
+                }
+                Thread.sleep(TICK_MS);
+            }
+            return new Result(sc, player.getStats(), player.getBitRate(), proxy.resets(), outcome);
+        } finally {
+            player.close();
+        }
+    }
+
+    private static void printTable(List<Result> results) {
+        String header = String.format(Locale.ROOT, "%-16s %8s %6s %9s %7s %8s %8s %9s %9s %6s  %s",
+                "scenario", "ttfa_ms", "rebuf", "rebuf_ms", "ratio%", "seek_ms", "seek_mx",
+                "down_kb", "waste_kb", "resets", "outcome");
+        System.out.println(header);
+        System.out.println("-".repeat(header.length()));
+
+        for (Result r : results) {
+            var s = r.stats();
+            if (s == null) {
+                System.out.printf(Locale.ROOT, "%-16s %s%n", r.scenario().name(), r.outcome());
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "%-16s %8d %6d %9d %7.2f %8d %8d %9d %9d %6d  %s%n",
+                    r.scenario().name(),
+                    s.timeToFirstAudioMs(),
+                    s.rebufferCount(),
+                    s.rebufferMs(),
+                    s.rebufferRatio() * 100,
+                    s.seekLatencyAvgMs(),
+                    s.seekLatencyMaxMs(),
+                    s.downloadedBytes() / 1024,
+                    s.wastedBytes(r.bitRate()) / 1024,
+                    r.resets(),
+                    r.outcome());
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package org.selfabandonment.ncmplayer.dev;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地 TCP 限流代理（开发 / 基准测试用）
+ *
+ * 把连接转发到上游地址，对下行数据（上游 -> 客户端）施加：
+ * - 带宽上限（每个连接）
+ * - 固定延迟（每个请求的首个响应块）与抖动（每个数据块随机等待）
+ * - 首字节额外延迟（每个请求）
+ * - 随机连接重置（RST）
+ *
+ * 参数可在运行时修改，对新写出的数据块立即生效。
+ *
+ * @author SelfAbandonment
+ */
+public final class ThrottlingProxy implements AutoCloseable {
+
+    /** 每次转发的数据块大小上限 */
+    private static final int CHUNK_BYTES = 4096;
+
+    private final ServerSocket listener;
+    private final String upstreamHost;
+    private final int upstreamPort;
+    private volatile boolean closed = false;
+
+    private volatile long bandwidthBytesPerSec = 0;
+    private volatile int latencyMs = 0;
+    private volatile int jitterMs = 0;
+    private volatile int firstByteDelayMs = 0;
+    private volatile double resetPerMb = 0;
+
+    private final AtomicLong bytesForwarded = new AtomicLong();
+    private final AtomicLong resets = new AtomicLong();
+
+    private ThrottlingProxy(String upstreamHost, int upstreamPort) throws IOException {
+        this.upstreamHost = upstreamHost;
+        this.upstreamPort = upstreamPort;
+        this.listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * 启动代理，监听随机端口
+     */
+    public static ThrottlingProxy start(String upstreamHost, int upstreamPort) throws IOException {
+        ThrottlingProxy proxy = new ThrottlingProxy(upstreamHost, upstreamPort);
+        Thread acceptor = new Thread(proxy::acceptLoop, "throttling-proxy-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return proxy;
+    }
+
+    public int port() {
+        return listener.getLocalPort();
+    }
+
+    /**
+     * 把上游 URL 改写为经过代理的 URL（只替换主机和端口）
+     */
+    public String rewrite(String url) {
+        String prefix = "http://" + upstreamHost + ":" + upstreamPort;
+        if (!url.startsWith(prefix)) return url;
+        return "http://127.0.0.1:" + port() + url.substring(prefix.length());
+    }
+
+    // ==================== 参数 ====================
+
+    /**
+     * 每个连接的下行带宽（字节/秒），0 表示不限
+     */
+    public ThrottlingProxy setBandwidth(long bytesPerSec) {
+        this.bandwidthBytesPerSec = Math.max(0, bytesPerSec);
+        return this;
+    }
+
+    public ThrottlingProxy setLatency(int latencyMs, int jitterMs) {
+        this.latencyMs = Math.max(0, latencyMs);
+        this.jitterMs = Math.max(0, jitterMs);
+        return this;
+    }
+
+    /**
+     * 每个请求的首个响应字节之前的额外等待
+     */
+    public ThrottlingProxy setFirstByteDelay(int ms) {
+        this.firstByteDelayMs = Math.max(0, ms);
+        return this;
+    }
+
+    /**
+     * 平均每转发 1MB 下行数据发生的连接重置次数
+     */
+    public ThrottlingProxy setResetRate(double perMb) {
+        this.resetPerMb = Math.max(0, perMb);
+        return this;
+    }
+
+    public long bytesForwarded() {
+        return bytesForwarded.get();
+    }
+
+    public long resets() {
+        return resets.get();
+    }
+
+    public void resetCounters() {
+        bytesForwarded.set(0);
+        resets.set(0);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            listener.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // ==================== 转发 ====================
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket client = listener.accept();
+                Socket upstream = new Socket();
+                try {
+                    upstream.connect(new InetSocketAddress(upstreamHost, upstreamPort), 5000);
+                } catch (IOException e) {
+                    closeQuietly(client);
+                    continue;
+                }
+                client.setTcpNoDelay(true);
+                upstream.setTcpNoDelay(true);
+
+                AtomicBoolean awaitingResponse = new AtomicBoolean(false);
+                startPump(() -> pumpUp(client, upstream, awaitingResponse), "throttling-proxy-up");
+                startPump(() -> pumpDown(upstream, client, awaitingResponse), "throttling-proxy-down");
+            } catch (IOException e) {
+                if (!closed) {
+                    sleepQuietly(10);
+                }
+            }
+        }
+    }
+
+    private static void startPump(Runnable task, String name) {
+        Thread t = new Thread(task, name);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * 上行（请求）原样转发
+     */
+    private void pumpUp(Socket client, Socket upstream, AtomicBoolean awaitingResponse) {
+        byte[] buf = new byte[CHUNK_BYTES];
+        try (InputStream in = client.getInputStream(); OutputStream out = upstream.getOutputStream()) {
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                out.write(buf, 0, n);
+                out.flush();
+                awaitingResponse.set(true);
+            }
+        } catch (IOException ignored) {
+        } finally {
+            closeQuietly(upstream);
+        }
+    }
+
+    /**
+     * 下行（响应）施加延迟、限速和重置
+     */
+    private void pumpDown(Socket upstream, Socket client, AtomicBoolean awaitingResponse) {
+        byte[] buf = new byte[CHUNK_BYTES];
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+
+        try (InputStream in = upstream.getInputStream(); OutputStream out = client.getOutputStream()) {
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                // 新请求的首个响应块：模拟往返延迟和慢首字节
+                if (awaitingResponse.getAndSet(false)) {
+                    sleepQuietly(latencyMs + firstByteDelayMs);
+                }
+                int jitter = jitterMs;
+                if (jitter > 0) {
+                    sleepQuietly(rnd.nextInt(jitter + 1));
+                }
+
+                // 按 1MB 的平均重置次数换算为每个数据块的概率
+                double perMb = resetPerMb;
+                if (perMb > 0 && rnd.nextDouble() < perMb * n / (1024.0 * 1024.0)) {
+                    resets.incrementAndGet();
+                    client.setSoLinger(true, 0);
+                    closeQuietly(client);
+                    return;
+                }
+
+                long t0 = System.nanoTime();
+                out.write(buf, 0, n);
+                out.flush();
+                bytesForwarded.addAndGet(n);
+
+                long bw = bandwidthBytesPerSec;
+                if (bw > 0) {
+                    long spentMs = (System.nanoTime() - t0) / 1_000_000L;
+                    sleepQuietly(n * 1000L / bw - spentMs);
+                }
+            }
+        } catch (IOException ignored) {
+        } finally {
+            closeQuietly(client);
+            closeQuietly(upstream);
+        }
+    }
+
+    private static void sleepQuietly(long ms) {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void closeQuietly(Socket s) {
+        try {
+            s.close();
+        } catch (IOException ignored) {
+        }
+    }
+}